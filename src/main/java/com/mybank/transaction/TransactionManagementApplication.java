@@ -4,6 +4,7 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 /**
@@ -13,6 +14,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @MapperScan("com.mybank.transaction.**.dao")
 @EnableCaching
 @EnableTransactionManagement
+@EnableScheduling
 public class TransactionManagementApplication {
     public static void main(String[] args) {
         SpringApplication.run(TransactionManagementApplication.class, args);
@@ -0,0 +1,84 @@
+package com.mybank.transaction.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mybank.transaction.domain.ApiResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求准入限流
+ * <p>
+ * 用公平信号量限制同时处理的请求数，许可数默认等于连接池大小；拿不到许可的请求按到达顺序排队，
+ * 等待超过 maxWaitMillis 返回 503 和 Retry-After: retryAfterSeconds。
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final Semaphore semaphore;
+    private final long maxWaitMillis;
+    private final int retryAfterSeconds;
+    private final ObjectMapper objectMapper;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public AdmissionFilter(int permits, long maxWaitMillis, int retryAfterSeconds, ObjectMapper objectMapper) {
+        if (permits < 1 || maxWaitMillis < 0 || retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("invalid mybank.threads.admission settings");
+        }
+        this.semaphore = new Semaphore(permits, true);
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.objectMapper = objectMapper;
+        this.waitTimer = Timer.builder("mybank.admission.wait")
+                .description("time requests waited for an admission permit")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+        this.rejected = Counter.builder("mybank.admission.rejected")
+                .description("requests rejected after waiting max-wait-ms for a permit")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("mybank.admission.queue", semaphore, Semaphore::getQueueLength)
+                .description("requests waiting for an admission permit")
+                .register(Metrics.globalRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), ApiResponse.error("server busy, retry later"));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            semaphore.release();
+        }
+    }
+}
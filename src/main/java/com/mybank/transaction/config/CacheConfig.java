@@ -1,23 +1,47 @@
 package com.mybank.transaction.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-//import io.micrometer.core.instrument.util.TimeUtils;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.mybank.transaction.service.IdempotencyService;
+import com.mybank.transaction.service.TransactionCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NullValue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Cache configure
+ * <p>
+ * 每个缓存按 mybank.cache.&lt;缓存名&gt;.* 单独配置:
+ * maximum-weight-mb 大于0时按估算的内存大小限制(见 {@link CacheWeigher})，否则按 maximum-size 条数限制；
+ * expire-after-write-ms 写入后过期时间；negative-ttl-ms 查不到时缓存的空值(NullValue)的过期时间，默认同 expire-after-write-ms；
+ * refresh-after-write-ms 大于0时，写入超过该时间后再被读到的条目在后台重新加载(只对实现了 {@link Refreshable} 的值生效)，
+ * 热点页保持较新，冷的页到期淘汰。命中率和淘汰数由 Actuator 绑定到 Micrometer(cache.gets/cache.evictions 等)，
+ * 这里额外注册估算的内存占用 mybank.cache.weight。
  */
+@Slf4j
 @Configuration
 @EnableCaching
+@RequiredArgsConstructor
 public class CacheConfig {
 
+    private static final String PREFIX = "mybank.cache.";
+
+    private final Environment environment;
+
     @Bean
     public CacheManager cacheManager() {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
@@ -25,6 +49,95 @@ public class CacheConfig {
                 .maximumSize(1000)
                 .expireAfterWrite(Duration.ofMinutes(30))
                 .recordStats());
+        for (String name : new String[]{TransactionCache.PAGE_CACHE, TransactionCache.ENTITY_CACHE,
+                TransactionCache.ACCOUNT_PAGE_CACHE, IdempotencyService.CACHE}) {
+            cacheManager.registerCustomCache(name, buildCache(name));
+        }
         return cacheManager;
     }
+
+    private Cache<Object, Object> buildCache(String name) {
+        long maximumSize = property(name, "maximum-size", 1000L);
+        long maximumWeightMb = property(name, "maximum-weight-mb", 0L);
+        long expireMillis = property(name, "expire-after-write-ms", TimeUnit.MINUTES.toMillis(30));
+        long negativeTtlMillis = property(name, "negative-ttl-ms", expireMillis);
+        long refreshMillis = property(name, "refresh-after-write-ms", 0L);
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfter(new NegativeAwareExpiry(
+                        TimeUnit.MILLISECONDS.toNanos(expireMillis),
+                        TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis)))
+                .recordStats();
+        if (maximumWeightMb > 0) {
+            builder.maximumWeight(maximumWeightMb * 1024 * 1024).weigher(new CacheWeigher());
+        } else {
+            builder.maximumSize(maximumSize);
+        }
+        Cache<Object, Object> cache;
+        if (refreshMillis > 0) {
+            builder.refreshAfterWrite(Duration.ofMillis(refreshMillis));
+            cache = builder.build(new RefreshLoader());
+        } else {
+            cache = builder.build();
+        }
+
+        Gauge.builder("mybank.cache.weight", cache, c -> c.policy().eviction()
+                        .map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("estimated bytes held by the cache, 0 when limited by entry count")
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .register(Metrics.globalRegistry);
+        log.info("cache {}: maximumSize={}, maximumWeightMb={}, expireMs={}, negativeTtlMs={}, refreshMs={}",
+                name, maximumWeightMb > 0 ? "-" : maximumSize, maximumWeightMb, expireMillis, negativeTtlMillis, refreshMillis);
+        return cache;
+    }
+
+    private long property(String cacheName, String key, long defaultValue) {
+        return environment.getProperty(PREFIX + cacheName + "." + key, Long.class, defaultValue);
+    }
+
+    /**
+     * 可以在后台重新加载的缓存值
+     */
+    public interface Refreshable {
+        Object refresh();
+    }
+
+    /**
+     * 缓存都通过 get(key, loader) 读写，这里只负责 refreshAfterWrite 触发的重新加载
+     */
+    private static class RefreshLoader implements CacheLoader<Object, Object> {
+
+        @Override
+        public Object load(Object key) {
+            return null;
+        }
+
+        @Override
+        public Object reload(Object key, Object oldValue) {
+            // 不能重新加载的值直接移除，下次读取时再加载
+            return oldValue instanceof Refreshable refreshable ? refreshable.refresh() : null;
+        }
+    }
+
+    /**
+     * 写入后过期，空值使用较短的过期时间，读取不延长有效期
+     */
+    private record NegativeAwareExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<Object, Object> {
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return value instanceof NullValue ? negativeTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.mybank.transaction.config;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.mybank.transaction.domain.Transaction;
+import org.springframework.cache.support.NullValue;
+
+import java.util.Collection;
+
+/**
+ * 按估算的内存字节数给缓存条目计权，使缓存上限可以按MB配置
+ * <p>
+ * 只是粗略估算(压缩指针下的对象头、引用和字段)，一页100条交易的权重约是一条的100倍
+ */
+public class CacheWeigher implements Weigher<Object, Object> {
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long bytes = estimate(key) + estimate(value);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    public static long estimate(Object value) {
+        if (value == null || value instanceof NullValue) return OBJECT_HEADER;
+        if (value instanceof Sized sized) return sized.estimatedBytes();
+        if (value instanceof Transaction t) return estimate(t);
+        if (value instanceof String s) return estimate(s);
+        if (value instanceof Number) return 24;
+        if (value instanceof Collection<?> c) {
+            long bytes = OBJECT_HEADER + 16 + (long) REFERENCE * c.size();
+            for (Object o : c) bytes += estimate(o);
+            return bytes;
+        }
+        return 64;
+    }
+
+    private static long estimate(Transaction t) {
+        // 11个引用字段 + Long id + BigDecimal + 两个 LocalDateTime(各含 LocalDate/LocalTime)
+        long bytes = OBJECT_HEADER + 11 * REFERENCE + 16 + 40;
+        if (t.getCreatedAt() != null) bytes += 72;
+        if (t.getUpdatedAt() != null) bytes += 72;
+        return bytes + estimate(t.getTid()) + estimate(t.getAccountNumber()) + estimate(t.getTransactionType())
+                + estimate(t.getCurrency()) + estimate(t.getDescription()) + estimate(t.getCategory())
+                + estimate(t.getStatus());
+    }
+
+    private static long estimate(String s) {
+        // String 对象 + byte[](Latin1 紧凑存储)
+        return s == null ? 0 : 24 + 16 + s.length();
+    }
+
+    /**
+     * 自己估算大小的缓存值
+     */
+    public interface Sized {
+        long estimatedBytes();
+    }
+}
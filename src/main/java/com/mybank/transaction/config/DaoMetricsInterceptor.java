@@ -0,0 +1,80 @@
+package com.mybank.transaction.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis 语句耗时统计
+ * <p>
+ * 拦截 Executor，按 mapper 语句(如 TransactionDao.selectByPage)记录 mybank.dao.statement 计时，带 p50/p99 和直方图。
+ * BATCH 执行器的 update 只是加入批次，真正执行的耗时记在 flushStatements 上(statement=flushStatements)。
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {})
+})
+public class DaoMetricsInterceptor implements Interceptor {
+
+    private static final String FLUSH = "flushStatements";
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        String exception = "none";
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            String statement = statement(invocation);
+            // 非批量执行器在提交时也会调用 flushStatements，没有执行任何批次时不记录
+            if (!FLUSH.equals(statement) || !(result instanceof List<?> batches) || !batches.isEmpty()) {
+                timer(statement, exception).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static String statement(Invocation invocation) {
+        if (invocation.getArgs() == null || invocation.getArgs().length == 0) return FLUSH;
+        String id = ((MappedStatement) invocation.getArgs()[0]).getId();
+        int dot = id.lastIndexOf('.', id.lastIndexOf('.') - 1);
+        return dot < 0 ? id : id.substring(dot + 1);
+    }
+
+    private Timer timer(String statement, String exception) {
+        return timers.computeIfAbsent(statement + '|' + exception, k -> Timer.builder("mybank.dao.statement")
+                .description("execution time of MyBatis mapper statements")
+                .tag("statement", statement)
+                .tag("exception", exception)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+}
@@ -0,0 +1,94 @@
+package com.mybank.transaction.config;
+
+import com.mybank.transaction.service.SnowflakeIdWorker;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Snowflake id worker configure
+ * <p>
+ * 机器id和数据中心id的来源优先级:
+ * 1. mybank.id-worker.worker-id / datacenter-id 显式配置
+ * 2. 节点名(默认取环境变量 HOSTNAME)以 "-序号" 结尾时(StatefulSet pod)，按序号分配
+ * 3. 节点名的hash，存在冲突的可能，启动时打印告警
+ * 取值越界时 {@link SnowflakeIdWorker#init} 抛出异常，应用启动失败
+ */
+@Slf4j
+@Configuration
+public class IdWorkerConfig {
+
+    private static final int MAX_NODE_ID = 1023;
+    private static final Pattern ORDINAL_PATTERN = Pattern.compile(".*-(\\d{1,9})$");
+
+    @Value("${mybank.id-worker.worker-id:-1}")
+    private long workerId;
+
+    @Value("${mybank.id-worker.datacenter-id:-1}")
+    private long datacenterId;
+
+    @Value("${mybank.id-worker.node-name:${HOSTNAME:}}")
+    private String nodeName;
+
+    @Value("${mybank.id-worker.block-size:1}")
+    private int blockSize;
+
+    @Value("${mybank.id-worker.clock-backward-borrow-ms:5}")
+    private long borrowMillis;
+
+    @Value("${mybank.id-worker.clock-backward-wait-ms:200}")
+    private long waitMillis;
+
+    @Bean
+    public SnowflakeIdWorker snowflakeIdWorker() {
+        long nodeId = workerId >= 0 && datacenterId >= 0 ? 0 : resolveNodeId(nodeName);
+        long worker = workerId >= 0 ? workerId : nodeId & 31;
+        long datacenter = datacenterId >= 0 ? datacenterId : nodeId >>> 5;
+
+        SnowflakeIdWorker idWorker = new SnowflakeIdWorker();
+        idWorker.init(worker, datacenter, blockSize);
+        idWorker.setClockBackwardTolerance(borrowMillis, waitMillis);
+        Timer sequenceWait = waitTimer("sequence");
+        Timer clockWait = waitTimer("clock");
+        idWorker.setWaitListener((clockBackward, nanos) ->
+                (clockBackward ? clockWait : sequenceWait).record(nanos, TimeUnit.NANOSECONDS));
+        log.info("snowflake id worker: node={}, workerId={}, datacenterId={}, blockSize={}, borrowMs={}, waitMs={}",
+                nodeName, worker, datacenter, blockSize, borrowMillis, waitMillis);
+        return idWorker;
+    }
+
+    private static Timer waitTimer(String reason) {
+        return Timer.builder("mybank.id.wait")
+                .description("time genNextId waited for the next millisecond or for the clock to catch up")
+                .tag("reason", reason)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 根据节点名计算10位节点id(0-1023)，高5位为数据中心id，低5位为机器id
+     */
+    public static long resolveNodeId(String nodeName) {
+        if (!StringUtils.hasText(nodeName)) {
+            return 0;
+        }
+        Matcher matcher = ORDINAL_PATTERN.matcher(nodeName);
+        if (matcher.matches()) {
+            long ordinal = Long.parseLong(matcher.group(1));
+            if (ordinal <= MAX_NODE_ID) {
+                return ordinal;
+            }
+        }
+        log.warn("node name {} has no usable ordinal suffix, falling back to hash; set mybank.id-worker.worker-id/datacenter-id to avoid collisions", nodeName);
+        return nodeName.hashCode() & MAX_NODE_ID;
+    }
+}
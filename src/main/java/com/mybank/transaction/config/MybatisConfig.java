@@ -0,0 +1,27 @@
+package com.mybank.transaction.config;
+
+import org.apache.ibatis.mapping.DatabaseIdProvider;
+import org.apache.ibatis.mapping.VendorDatabaseIdProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Properties;
+
+/**
+ * MyBatis configure
+ * <p>
+ * 写法因数据库而异的语句(如 upsert)在 mapper 里按 databaseId="h2" / "postgresql" 分别定义，没有 databaseId 的语句两者共用
+ */
+@Configuration
+public class MybatisConfig {
+
+    @Bean
+    public DatabaseIdProvider databaseIdProvider() {
+        Properties vendors = new Properties();
+        vendors.setProperty("H2", "h2");
+        vendors.setProperty("PostgreSQL", "postgresql");
+        VendorDatabaseIdProvider provider = new VendorDatabaseIdProvider();
+        provider.setProperties(vendors);
+        return provider;
+    }
+}
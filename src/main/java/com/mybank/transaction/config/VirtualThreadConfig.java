@@ -0,0 +1,64 @@
+package com.mybank.transaction.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程模式，mybank.threads.virtual=true 时开启，需要 JDK 21 及以上运行(编译目标仍是17，通过反射创建执行器)
+ * <p>
+ * Tomcat 每个请求使用一个虚拟线程处理，不再受200个平台线程的限制；
+ * 同时注册 {@link AdmissionFilter}，同时处理的请求数不超过连接池大小，多出的请求在公平信号量上排队，
+ * 虚拟线程在信号量上挂起时不占用载体线程，也不会堆到 Hikari 上等到 connectionTimeout 才失败。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "mybank.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Value("${mybank.threads.admission.permits:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int permits;
+
+    @Value("${mybank.threads.admission.max-wait-ms:10000}")
+    private long maxWaitMillis;
+
+    @Value("${mybank.threads.admission.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadExecutorCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("tomcat requests run on virtual threads, admission permits={}, maxWaitMs={}", permits, maxWaitMillis);
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(ObjectMapper objectMapper) {
+        FilterRegistrationBean<AdmissionFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionFilter(permits, maxWaitMillis, retryAfterSeconds, objectMapper));
+        registration.addUrlPatterns("/v1/*");
+        return registration;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor()，运行的JDK不支持虚拟线程时启动失败
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("mybank.threads.virtual=true requires Java 21 or later, running on " + Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("failed to create virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.AccountBalance;
+import com.mybank.transaction.domain.AccountPageRequest;
+import com.mybank.transaction.domain.ApiResponse;
+import com.mybank.transaction.domain.CursorPageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.service.AccountBalanceService;
+import com.mybank.transaction.service.TransactionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
+
+/**
+ * Account Controller
+ */
+@Slf4j
+@RestController
+@RequestMapping("/v1/mybank/accounts")
+@RequiredArgsConstructor
+@Validated
+public class AccountController {
+
+    private final TransactionService transactionService;
+    private final AccountBalanceService accountBalanceService;
+
+    /**
+     * 某个账户的交易，按id游标分页，可按创建时间范围过滤
+     */
+    @GetMapping("/{accountNumber}/transactions")
+    public ResponseEntity<ApiResponse<CursorPageResponse<Transaction>>> getAccountTransactions(
+            @PathVariable @Pattern(regexp = "^[0-9]{16,19}$", message = "accountNumber format error") String accountNumber,
+            @Valid AccountPageRequest pageRequest) {
+        CursorPageResponse<Transaction> response = transactionService.getAccountTransactions(accountNumber, pageRequest);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 账户当前余额
+     */
+    @GetMapping("/{accountNumber}/balance")
+    public ResponseEntity<ApiResponse<AccountBalance>> getAccountBalance(
+            @PathVariable @Pattern(regexp = "^[0-9]{16,19}$", message = "accountNumber format error") String accountNumber) {
+        return ResponseEntity.ok(ApiResponse.success(accountBalanceService.getBalance(accountNumber)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.ApiResponse;
+import com.mybank.transaction.domain.PageRequest;
+import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.service.AsyncTransactionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步 Transaction Controller，mybank.async.enabled=true 时开启
+ * <p>
+ * 和 /v1/mybank/transactions 的同名接口行为一致，处理在数据库执行器上完成，等待期间不占用请求线程；
+ * 执行器排队已满时返回 429 和 Retry-After。
+ */
+@RestController
+@RequestMapping("/v1/mybank/async/transactions")
+@RequiredArgsConstructor
+@Validated
+@ConditionalOnProperty(name = "mybank.async.enabled", havingValue = "true")
+public class AsyncTransactionController {
+
+    private final AsyncTransactionService asyncTransactionService;
+
+    /**
+     * 创建交易，Idempotency-Key 同 POST /transactions
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<ApiResponse<Transaction>>> createTransaction(
+            @RequestHeader(value = "Idempotency-Key", required = false)
+            @Size(max = 128, message = "Idempotency-Key can't exceed 128 characters") String idempotencyKey,
+            @Valid @RequestBody TransactionRequest request) {
+        return asyncTransactionService.createTransaction(request, idempotencyKey)
+                .thenApply(response -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(ApiResponse.success("create transaction success", response)));
+    }
+
+    /**
+     * 更新交易，If-Match 和 ETag 同 PUT /transactions/{id}
+     */
+    @PutMapping("/{id}")
+    public CompletableFuture<ResponseEntity<ApiResponse<Transaction>>> updateTransaction(
+            @PathVariable @Min(1) Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody TransactionRequest request) {
+        return asyncTransactionService.updateTransaction(id, request, TransactionController.parseVersion(id, ifMatch))
+                .thenApply(response -> TransactionController.withETag(ResponseEntity.ok(), response)
+                        .body(ApiResponse.success("update transaction success", response)));
+    }
+
+    /**
+     * 按id查询交易，ETag 和 If-None-Match 同 GET /transactions/{id}
+     */
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<ApiResponse<Transaction>>> getTransaction(@PathVariable @Min(1) Long id) {
+        return asyncTransactionService.getTransaction(id)
+                .thenApply(response -> TransactionController.withETag(ResponseEntity.ok(), response)
+                        .body(ApiResponse.success(response)));
+    }
+
+    /**
+     * 删除交易
+     */
+    @DeleteMapping("/{id}")
+    public CompletableFuture<ResponseEntity<ApiResponse<Void>>> deleteTransaction(@PathVariable @Min(1) Long id) {
+        return asyncTransactionService.deleteTransaction(id)
+                .thenApply(v -> ResponseEntity.ok(ApiResponse.success("delete transaction success", null)));
+    }
+
+    /**
+     * 分页查询所有交易
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<ApiResponse<PageResponse<Transaction>>>> getAllTransactions(
+            @Valid PageRequest pageRequest) {
+        return asyncTransactionService.getAllTransactions(pageRequest)
+                .thenApply(response -> ResponseEntity.ok(ApiResponse.success(response)));
+    }
+}
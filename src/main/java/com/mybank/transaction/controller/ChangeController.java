@@ -0,0 +1,53 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.ApiResponse;
+import com.mybank.transaction.domain.ChangeFeed;
+import com.mybank.transaction.service.TransactionChangeFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Change Controller，mybank.change-log.enabled=true 时开启
+ */
+@RestController
+@RequestMapping("/v1/mybank/changes")
+@RequiredArgsConstructor
+@Validated
+@ConditionalOnProperty(name = "mybank.change-log.enabled", havingValue = "true")
+public class ChangeController {
+
+    private final TransactionChangeFeed changeFeed;
+
+    /**
+     * 从 fromOffset 读交易变更，下次用响应里的 nextOffset 继续；waitMs 大于0且没有新变更时最多等待 waitMs 毫秒
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<ApiResponse<ChangeFeed>>> getChanges(
+            @RequestParam(defaultValue = "0") @Min(0) long fromOffset,
+            @RequestParam(defaultValue = "500") @Min(1) @Max(10000) int limit,
+            @RequestParam(defaultValue = "0") @Min(0) @Max(60000) long waitMs) {
+        return changeFeed.poll(fromOffset, limit, waitMs)
+                .thenApply(feed -> ResponseEntity.ok(ApiResponse.success(feed)));
+    }
+
+    /**
+     * 以 Server-Sent Events 推送交易变更，重连时 Last-Event-ID 优先于 fromOffset
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(defaultValue = "0") @Min(0) long fromOffset,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        changeFeed.stream(lastEventId != null ? lastEventId : fromOffset, emitter);
+        return emitter;
+    }
+}
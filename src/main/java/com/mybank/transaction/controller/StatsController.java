@@ -0,0 +1,46 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.ApiResponse;
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.TransactionStats;
+import com.mybank.transaction.service.TransactionStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.List;
+
+/**
+ * Stats Controller
+ */
+@Slf4j
+@RestController
+@RequestMapping("/v1/mybank/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final TransactionStatsService transactionStatsService;
+
+    /**
+     * 按日期范围汇总交易笔数和金额，按 groupBy 指定的维度分组
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<TransactionStats>>> getStats(@Valid StatsRequest request) {
+        return ResponseEntity.ok(ApiResponse.success(transactionStatsService.getStats(request)));
+    }
+
+    /**
+     * 从交易表重建汇总，返回汇总的交易笔数
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<ApiResponse<Long>> rebuild() {
+        long transactions = transactionStatsService.rebuild();
+        log.info("transaction stats rebuilt on request");
+        return ResponseEntity.ok(ApiResponse.success(transactions));
+    }
+}
@@ -2,16 +2,25 @@ package com.mybank.transaction.controller;
 
 import com.mybank.transaction.dao.TransactionDao;
 import com.mybank.transaction.domain.*;
+import com.mybank.transaction.exception.TransactionVersionMismatchException;
+import com.mybank.transaction.service.TransactionExporter;
 import com.mybank.transaction.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -26,23 +35,71 @@ public class TransactionController {
 
     private final TransactionService transactionService;
     private final TransactionDao transactionDao;
+    private final TransactionExporter transactionExporter;
 
+    /**
+     * 创建交易；带 Idempotency-Key 时，同一个 key 的重试返回第一次创建的交易
+     */
     @PostMapping
     public ResponseEntity<ApiResponse<Transaction>> createTransaction(
+            @RequestHeader(value = "Idempotency-Key", required = false)
+            @Size(max = 128, message = "Idempotency-Key can't exceed 128 characters") String idempotencyKey,
             @Valid @RequestBody TransactionRequest request) {        
-        Transaction response = transactionService.createTransaction(request);
+        Transaction response = idempotencyKey == null
+                ? transactionService.createTransaction(request)
+                : transactionService.createTransaction(request, idempotencyKey);
 
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(ApiResponse.success("create transaction success", response));
     }
 
 
+    /**
+     * 更新交易；带 If-Match 时只有交易仍是该版本才更新，否则返回 412，响应头带更新后的 ETag
+     */
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<Transaction>> updateTransaction(
             @PathVariable @Min(1) Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody TransactionRequest request) {
-        Transaction response = transactionService.updateTransaction(id, request);
-        return ResponseEntity.ok(ApiResponse.success("update transaction success", response));
+        Long expectedVersion = parseVersion(id, ifMatch);
+        Transaction response = expectedVersion == null
+                ? transactionService.updateTransaction(id, request)
+                : transactionService.updateTransaction(id, request, expectedVersion);
+        return withETag(ResponseEntity.ok(), response)
+                .body(ApiResponse.success("update transaction success", response));
+    }
+
+    /**
+     * 部分更新交易，请求体只需要要修改的字段；If-Match 和 ETag 同 PUT
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<ApiResponse<Transaction>> patchTransaction(
+            @PathVariable @Min(1) Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody TransactionPatch patch) {
+        Transaction response = transactionService.patchTransaction(id, patch, parseVersion(id, ifMatch));
+        return withETag(ResponseEntity.ok(), response)
+                .body(ApiResponse.success("patch transaction success", response));
+    }
+
+    /**
+     * 批量修改交易状态，逐个返回处理结果
+     */
+    @PatchMapping("/status")
+    public ResponseEntity<ApiResponse<List<BatchItemResult<Long>>>> updateStatus(
+            @Valid @RequestBody StatusUpdateRequest request) {
+        List<BatchItemResult<Long>> response = transactionService.updateStatus(request);
+        return ResponseEntity.ok(ApiResponse.success("batch status update finished", response));
+    }
+
+    /**
+     * 按id查询交易，响应头带 ETag(交易的版本)；If-None-Match 和当前版本一致时返回 304，不返回内容
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ApiResponse<Transaction>> getTransaction(@PathVariable @Min(1) Long id) {
+        Transaction response = transactionService.getTransaction(id);
+        return withETag(ResponseEntity.ok(), response).body(ApiResponse.success(response));
     }
 
     /**
@@ -57,15 +114,110 @@ public class TransactionController {
     /**
      * 分页查询所有交易
      */
-    @GetMapping
+    @GetMapping(params = "!after")
     public ResponseEntity<ApiResponse<PageResponse<Transaction>>> getAllTransactions(@Valid PageRequest pageRequest) {        
         PageResponse<Transaction> response = transactionService.getAllTransactions(pageRequest);        
         return ResponseEntity.ok(ApiResponse.success(response));
     }
     
+    /**
+     * 游标分页查询交易，after 为上一页返回的 nextCursor
+     */
+    @GetMapping(params = "after")
+    public ResponseEntity<ApiResponse<CursorPageResponse<Transaction>>> getTransactionsAfter(@Valid CursorPageRequest pageRequest) {
+        CursorPageResponse<Transaction> response = transactionService.getTransactionsAfter(pageRequest);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 按描述关键词、分类、状态、类型、币种、金额和创建时间范围搜索交易，按id游标分页
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ApiResponse<CursorPageResponse<Transaction>>> searchTransactions(@Valid SearchRequest request) {
+        CursorPageResponse<Transaction> response = transactionService.searchTransactions(request);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 从交易表重建搜索索引，返回索引的交易笔数
+     */
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<ApiResponse<Integer>> rebuildSearchIndex() {
+        return ResponseEntity.ok(ApiResponse.success("search index rebuilt", transactionService.rebuildSearchIndex()));
+    }
+
+    /**
+     * 批量创建交易，逐个返回处理结果
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<List<BatchItemResult<Transaction>>>> createTransactions(
+            @RequestBody List<TransactionRequest> requests) {
+        List<BatchItemResult<Transaction>> response = transactionService.createTransactions(requests);
+        return ResponseEntity.ok(ApiResponse.success("batch create transaction finished", response));
+    }
+
+    /**
+     * 批量更新交易，逐个返回处理结果
+     */
+    @PutMapping("/batch")
+    public ResponseEntity<ApiResponse<List<BatchItemResult<Transaction>>>> updateTransactions(
+            @RequestBody List<TransactionUpdateItem> items) {
+        List<BatchItemResult<Transaction>> response = transactionService.updateTransactions(items);
+        return ResponseEntity.ok(ApiResponse.success("batch update transaction finished", response));
+    }
+
+    /**
+     * 批量删除交易，逐个返回处理结果
+     */
+    @DeleteMapping("/batch")
+    public ResponseEntity<ApiResponse<List<BatchItemResult<Long>>>> deleteTransactions(@RequestBody List<Long> ids) {
+        List<BatchItemResult<Long>> response = transactionService.deleteTransactions(ids);
+        return ResponseEntity.ok(ApiResponse.success("batch delete transaction finished", response));
+    }
+
+    /**
+     * 流式导出全部交易，format 为 ndjson(每行一个JSON)或 csv，fields=id 时只导出id
+     * <p>
+     * 在 MVC 的异步线程里边查边写，不在内存里拼装结果，导出全量id也应使用本接口而不是 /all
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = TransactionExporter.NDJSON)
+            @Pattern(regexp = "ndjson|csv", message = "format must be ndjson or csv") String format,
+            @RequestParam(defaultValue = "all")
+            @Pattern(regexp = "all|id", message = "fields must be all or id") String fields) {
+        boolean idOnly = "id".equals(fields);
+        MediaType contentType = TransactionExporter.CSV.equals(format)
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON;
+        String filename = (idOnly ? "transaction-ids." : "transactions.") + format;
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> transactionExporter.export(format, idOnly, out));
+    }
+
     @GetMapping("/all")
     public ResponseEntity<ApiResponse<List<String>>> getAllTransactions() {
         var slist = transactionDao.listId().stream().map(String::valueOf).toList();
         return ResponseEntity.ok(ApiResponse.success(slist));
     }
+
+    static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, Transaction transaction) {
+        return transaction.getVersion() == null ? builder : builder.eTag("\"" + transaction.getVersion() + "\"");
+    }
+
+    /**
+     * If-Match 里的版本，没有或为 * 时返回 null；弱校验的 W/ 前缀忽略，不是本接口发出的 ETag 时视为不匹配
+     */
+    static Long parseVersion(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) return null;
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new TransactionVersionMismatchException("transaction version doesn't match: " + id);
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package com.mybank.transaction.dao;
+
+import com.mybank.transaction.domain.AccountBalance;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 账户余额Mapper接口
+ */
+@Component
+public interface AccountBalanceDao {
+
+    /**
+     * 查询账户余额
+     */
+    AccountBalance selectByAccount(String accountNumber);
+
+    /**
+     * 给账户加上 delta(可为负)，账户不存在时新建，返回变动后的余额和版本
+     */
+    AccountBalance addBalance(String accountNumber, BigDecimal delta, LocalDateTime updatedAt);
+
+    /**
+     * 余额表的行数
+     */
+    long countAccounts();
+
+    /**
+     * 按交易表汇总重建全部账户余额，只在余额表为空时使用
+     */
+    int insertFromTransactions(LocalDateTime updatedAt);
+}
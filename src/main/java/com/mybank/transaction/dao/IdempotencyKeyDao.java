@@ -0,0 +1,28 @@
+package com.mybank.transaction.dao;
+
+import com.mybank.transaction.domain.IdempotencyKey;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 幂等键Mapper接口
+ */
+@Component
+public interface IdempotencyKeyDao {
+
+    IdempotencyKey selectByKey(String key);
+
+    /**
+     * 写入幂等键，key 已存在时抛出 DuplicateKeyException；对方事务未提交时等待其结束
+     */
+    int insertKey(IdempotencyKey key);
+
+    int insertKeys(List<IdempotencyKey> keys);
+
+    /**
+     * 删除 createdAt 早于 before 的幂等键
+     */
+    int deleteBefore(LocalDateTime before);
+}
@@ -0,0 +1,64 @@
+package com.mybank.transaction.dao;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ExecutorType.BATCH 下的交易Mapper
+ * <p>
+ * 语句先在JDBC层攒批，{@link #flush()} 时一次发送并返回每条语句的影响行数。
+ * 同一个Spring事务内不能混用SIMPLE和BATCH两种执行器，调用方的事务里只能使用本类的mapper。
+ * 这里不把 SqlSessionTemplate 注册为bean，否则 @MapperScan 生成的mapper会全部改用BATCH执行器。
+ */
+@Component
+public class TransactionBatchDao {
+
+    private final SqlSessionTemplate sqlSession;
+    private final TransactionDao mapper;
+    private final AccountBalanceDao balanceMapper;
+    private final TransactionStatsDao statsMapper;
+
+    public TransactionBatchDao(SqlSessionFactory sqlSessionFactory) {
+        this.sqlSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.mapper = sqlSession.getMapper(TransactionDao.class);
+        this.balanceMapper = sqlSession.getMapper(AccountBalanceDao.class);
+        this.statsMapper = sqlSession.getMapper(TransactionStatsDao.class);
+    }
+
+    /**
+     * 攒批执行的mapper，返回值没有意义，影响行数以 flush 为准
+     */
+    public TransactionDao mapper() {
+        return mapper;
+    }
+
+    /**
+     * 同一执行器上的账户余额mapper，余额的增减是带返回值的查询，会先发送已攒的语句，应在 flush 之后调用
+     */
+    public AccountBalanceDao balanceMapper() {
+        return balanceMapper;
+    }
+
+    /**
+     * 同一执行器上的日汇总mapper，和交易语句一样攒批，由 TransactionStatsService 加入批次后立即发送
+     */
+    public TransactionStatsDao statsMapper() {
+        return statsMapper;
+    }
+
+    /**
+     * 发送攒下的语句，按执行顺序返回每条语句的影响行数
+     */
+    public int[] flush() {
+        List<BatchResult> results = sqlSession.flushStatements();
+        return results.stream()
+                .flatMapToInt(r -> Arrays.stream(r.getUpdateCounts()))
+                .toArray();
+    }
+}
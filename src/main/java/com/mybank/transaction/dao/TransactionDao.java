@@ -2,8 +2,10 @@ package com.mybank.transaction.dao;
 
 import com.mybank.transaction.domain.Transaction;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -16,6 +18,16 @@ public interface TransactionDao {
      * 插入交易记录
      */
     int insTran(Transaction transaction);
+
+    /**
+     * 多行插入交易记录
+     */
+    int insTranBatch(List<Transaction> transactions);
+
+    /**
+     * 多行插入交易记录，保留原有的 version，用于从持久化日志恢复
+     */
+    int restoreBatch(List<Transaction> transactions);
     
     /**
      * 根据ID查询交易
@@ -27,14 +39,29 @@ public interface TransactionDao {
      */
 
     /**
-     * 更新交易记录
+     * 更新交易记录，只在库里的 version 等于 transaction.version 时生效，并把 version 加一
      */
     int updTran(Transaction transaction);
 
+    /**
+     * 部分更新，只写 transaction 里不为空的字段，乐观锁同 updTran
+     */
+    int patchTran(Transaction transaction);
+
+    /**
+     * 把这些交易的状态改为 status(fromStatus 不为空时只改当前是该状态的)，一条语句完成，返回被修改的交易
+     */
+    List<Transaction> updateStatus(List<Long> ids, String fromStatus, String status, LocalDateTime updatedAt);
+
     /**
      * 删除交易记录
      */
     int deleteById(Long id);
+
+    /**
+     * 只在库里的 version 等于 version 时删除
+     */
+    int deleteByIdAndVersion(Long id, long version);
     
     /**
      * 分页查询交易列表
@@ -42,10 +69,51 @@ public interface TransactionDao {
 
     List<Transaction> selectByPage(int offset, int limit);
 
+    /**
+     * 游标分页，查询id大于 afterId 的前 limit 条交易
+     */
+    List<Transaction> selectAfter(long afterId, int limit);
+
+    /**
+     * 按账户游标分页，查询该账户id大于 afterId 的前 limit 条交易，from/to 不为空时按创建时间过滤(含 from，不含 to)
+     */
+    List<Transaction> selectByAccount(String accountNumber, long afterId, LocalDateTime from, LocalDateTime to, int limit);
+
+    /**
+     * 按id批量查询交易，按id升序，不存在的id不返回
+     */
+    List<Transaction> selectByIds(List<Long> ids);
+
+    /**
+     * 返回存在的交易的id、账户、类型、金额、币种、分类、创建时间和 version，不加锁；
+     * 更新或删除时按读到的 version 写入，并据此失效账户缓存、撤销原交易对余额和日汇总的影响
+     */
+    List<Transaction> selectVersions(List<Long> ids);
+
     /**
      * 统计总交易数
      */
     long countTotal();
 
     List<Long> listId();
+
+    /**
+     * 按id顺序流式读取全部交易，需要在事务内迭代，迭代完或关闭前占用一个连接
+     */
+    Cursor<Transaction> scanAll();
+
+    /**
+     * 按id顺序流式读取id不小于 fromId 的交易，需要在事务内迭代
+     */
+    Cursor<Transaction> scanFrom(long fromId);
+
+    /**
+     * 按id从大到小跳过 offset 笔后的交易id，交易不足时返回 null
+     */
+    Long selectLatestId(int offset);
+
+    /**
+     * 按id顺序流式读取全部交易id
+     */
+    Cursor<Long> scanIds();
 }
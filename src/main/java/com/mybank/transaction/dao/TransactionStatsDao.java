@@ -0,0 +1,54 @@
+package com.mybank.transaction.dao;
+
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.TransactionStats;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 交易日汇总Mapper接口
+ */
+@Component
+public interface TransactionStatsDao {
+
+    /**
+     * 给一个汇总行加上笔数和金额的增量(可为负)，行不存在时新建
+     */
+    int addStats(TransactionStats delta);
+
+    /**
+     * 按请求的维度和日期范围汇总
+     */
+    List<TransactionStats> selectStats(StatsRequest request);
+
+    /**
+     * 汇总表的行数
+     */
+    long countRows();
+
+    /**
+     * 交易表的最小id，表为空时返回null
+     */
+    Long selectMinId();
+
+    /**
+     * 交易表的最大id，表为空时返回null
+     */
+    Long selectMaxId();
+
+    /**
+     * 直接从交易表汇总 fromId(含) 到 toId(不含) 之间的交易，重建时按id区间并行调用
+     */
+    List<TransactionStats> aggregateIdRange(long fromId, long toId);
+
+    /**
+     * 清空汇总表
+     */
+    int deleteAll();
+
+    /**
+     * 批量写入汇总行
+     */
+    int insertBatch(List<TransactionStats> rows);
+}
@@ -0,0 +1,39 @@
+package com.mybank.transaction.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 账户余额
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class AccountBalance {
+
+    /**
+     * 账户号码
+     */
+    private String accountNumber;
+
+    /**
+     * 余额，收入类交易加、支出类交易减
+     */
+    private BigDecimal balance;
+
+    /**
+     * 每次变动加一，用来判断内存里的余额是否比数据库里的旧
+     */
+    @JsonIgnore
+    private long version;
+
+    /**
+     * 最后变动时间
+     */
+    private LocalDateTime updatedAt;
+}
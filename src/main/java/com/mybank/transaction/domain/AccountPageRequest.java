@@ -0,0 +1,50 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.time.LocalDateTime;
+
+
+/**
+ * 账户交易游标分页请求DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPageRequest {
+
+    /**
+     * 上一页返回的 nextCursor，为空时从该账户的第一条开始
+     */
+    private String after;
+
+    @Builder.Default
+    @Min(value = 1, message = "size must greater than 0")
+    @Max(value = 100, message = "size must less than 100")
+    private Integer size = 20;
+
+    /**
+     * 创建时间下限(含)，如 2024-01-01T00:00:00
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    /**
+     * 创建时间上限(不含)
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+
+    @AssertTrue(message = "from must be before to")
+    public boolean isRangeValid() {
+        return from == null || to == null || from.isBefore(to);
+    }
+}
@@ -0,0 +1,41 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 批量操作中单个元素的处理结果DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult<T> {
+
+    /**
+     * 元素在请求数组中的下标
+     */
+    private int index;
+    private boolean success;
+    private String message;
+    private T data;
+
+    public static <T> BatchItemResult<T> success(int index, T data) {
+        return BatchItemResult.<T>builder()
+                .index(index)
+                .success(true)
+                .message("success")
+                .data(data)
+                .build();
+    }
+
+    public static <T> BatchItemResult<T> failure(int index, String message) {
+        return BatchItemResult.<T>builder()
+                .index(index)
+                .success(false)
+                .message(message)
+                .build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.mybank.transaction.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 变更日志里的一条事件
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String DELETED = "DELETED";
+
+    /**
+     * 事件在日志里的偏移
+     */
+    private long offset;
+
+    /**
+     * 下一条事件的偏移，从这里继续读
+     */
+    private long nextOffset;
+
+    /**
+     * CREATED、UPDATED 或 DELETED
+     */
+    private String type;
+
+    private Long transactionId;
+
+    /**
+     * 这次变更之后交易的版本，删除算作删除前的版本 + 1；同一交易的事件在日志里不一定按版本排列，消费方按版本取最新的
+     */
+    private Long version;
+
+    /**
+     * 写入日志的时间(事务提交之后)
+     */
+    private LocalDateTime committedAt;
+
+    /**
+     * 创建或更新后的交易，删除时为null
+     */
+    private Transaction transaction;
+}
@@ -0,0 +1,30 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 变更日志的一批事件
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeFeed {
+
+    private List<ChangeEvent> events;
+
+    /**
+     * 下次请求带的 fromOffset，没有新事件时等于本次的 fromOffset
+     */
+    private long nextOffset;
+
+    /**
+     * 日志当前的末尾，nextOffset 小于它时还有事件没读
+     */
+    private long endOffset;
+}
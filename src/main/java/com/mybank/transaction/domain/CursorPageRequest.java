@@ -0,0 +1,30 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+
+/**
+ * 游标分页请求DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageRequest {
+
+    /**
+     * 上一页返回的 nextCursor，为空时从第一条开始
+     */
+    private String after;
+
+    @Builder.Default
+    @Min(value = 1, message = "size must greater than 0")
+    @Max(value = 100, message = "size must less than 100")
+    private Integer size = 20;
+}
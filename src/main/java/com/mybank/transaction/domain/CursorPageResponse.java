@@ -0,0 +1,26 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页响应DTO，不统计总数
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    /**
+     * 下一页的游标，没有下一页时为null
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,33 @@
+package com.mybank.transaction.domain;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 幂等键记录
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class IdempotencyKey {
+
+    /**
+     * 客户端传入的 Idempotency-Key
+     */
+    private String key;
+
+    /**
+     * 第一次请求创建的交易id
+     */
+    private Long transactionId;
+
+    /**
+     * 请求内容的SHA-256，用来识别同一个key被用于不同的请求
+     */
+    private String requestHash;
+
+    private LocalDateTime createdAt;
+}
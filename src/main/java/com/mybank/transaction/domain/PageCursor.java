@@ -0,0 +1,28 @@
+package com.mybank.transaction.domain;
+
+import com.mybank.transaction.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 分页游标编解码，游标对客户端不透明，内部是最后一条记录的id
+ */
+public final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    public static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static long decode(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("invalid cursor: " + cursor, e);
+        }
+    }
+}
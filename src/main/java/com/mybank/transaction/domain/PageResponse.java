@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 /**
@@ -15,12 +17,38 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PageResponse<T> {
+
+    /**
+     * 不统计总数时 totalElements 和 totalPages 的取值，序列化时省略
+     */
+    public static final int UNKNOWN = -1;
     
     private List<T> content;
     private int page;
     private int size;
+    @JsonInclude(value = JsonInclude.Include.CUSTOM, valueFilter = UnknownFilter.class)
     private long totalElements;
+    @JsonInclude(value = JsonInclude.Include.CUSTOM, valueFilter = UnknownFilter.class)
     private int totalPages;
     private boolean hasNext;
     private boolean hasPrevious;
+    /**
+     * 本页最后一条记录的游标，可以用它切换到游标分页继续往后翻
+     */
+    private String nextCursor;
+
+    /**
+     * Jackson 的 valueFilter，equals 返回true的值不输出
+     */
+    static class UnknownFilter {
+        @Override
+        public boolean equals(Object value) {
+            return value instanceof Number number && number.longValue() == UNKNOWN;
+        }
+
+        @Override
+        public int hashCode() {
+            return UNKNOWN;
+        }
+    }
 }
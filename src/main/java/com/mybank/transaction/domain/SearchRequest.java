@@ -0,0 +1,81 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+/**
+ * 交易搜索请求DTO，条件都是可选的，同时给出时取交集
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchRequest {
+
+    /**
+     * 描述里的关键词，空格分隔，需全部包含；中日韩文字按相邻两字匹配
+     */
+    @Size(max = 200, message = "q can't exceed 200 characters")
+    private String q;
+
+    private String category;
+
+    private String status;
+
+    private String transactionType;
+
+    private String currency;
+
+    /**
+     * 金额下限(含)
+     */
+    private BigDecimal minAmount;
+
+    /**
+     * 金额上限(含)
+     */
+    private BigDecimal maxAmount;
+
+    /**
+     * 创建时间下限(含)，如 2024-01-01T00:00:00
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    /**
+     * 创建时间上限(不含)
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+
+    /**
+     * 上一页返回的 nextCursor，为空时从第一条开始
+     */
+    private String after;
+
+    @Builder.Default
+    @Min(value = 1, message = "size must greater than 0")
+    @Max(value = 100, message = "size must less than 100")
+    private Integer size = 20;
+
+    @AssertTrue(message = "from must be before to")
+    public boolean isRangeValid() {
+        return from == null || to == null || from.isBefore(to);
+    }
+
+    @AssertTrue(message = "minAmount can't be greater than maxAmount")
+    public boolean isAmountRangeValid() {
+        return minAmount == null || maxAmount == null || minAmount.compareTo(maxAmount) <= 0;
+    }
+}
@@ -0,0 +1,70 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import java.time.LocalDate;
+import java.util.List;
+
+
+/**
+ * 交易汇总查询DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsRequest {
+
+    /**
+     * 起始日期(含)，如 2024-01-01
+     */
+    @NotNull(message = "from can't be empty")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    /**
+     * 结束日期(含)
+     */
+    @NotNull(message = "to can't be empty")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    /**
+     * 分组维度，逗号分隔，为空时汇总成一行
+     */
+    @Builder.Default
+    private List<@Pattern(regexp = "^(day|category|transactionType|currency)$", message = "groupBy must be day, category, transactionType or currency") String> groupBy =
+            List.of("day", "category", "transactionType", "currency");
+
+    /**
+     * 以下为可选的过滤条件
+     */
+    private String category;
+
+    private String transactionType;
+
+    private String currency;
+
+    /**
+     * 是否按该维度分组，供 mapper 拼接分组列
+     */
+    public boolean groupsBy(String dimension) {
+        return groupBy != null && groupBy.contains(dimension);
+    }
+
+    public boolean isGrouped() {
+        return groupBy != null && !groupBy.isEmpty();
+    }
+
+    @AssertTrue(message = "from must not be after to")
+    public boolean isRangeValid() {
+        return from == null || to == null || !from.isAfter(to);
+    }
+}
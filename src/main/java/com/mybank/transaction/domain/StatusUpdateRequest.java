@@ -0,0 +1,31 @@
+package com.mybank.transaction.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * 批量修改状态请求DTO，fromStatus 不为空时只修改当前是该状态的交易
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatusUpdateRequest {
+
+    @NotNull(message = "ids can't be empty")
+    private List<Long> ids;
+
+    @Size(max = 20, message = "fromStatus can't exceed 20 characters")
+    private String fromStatus;
+
+    @NotBlank(message = "status can't be empty")
+    @Size(max = 20, message = "status can't exceed 20 characters")
+    private String status;
+}
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
  * 交易实体类
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @ToString
@@ -65,4 +65,9 @@ public class Transaction {
      * 更新时间
      */
     private LocalDateTime updatedAt;
+
+    /**
+     * 版本号，每次更新加一，用于乐观锁和 ETag
+     */
+    private Long version;
 }
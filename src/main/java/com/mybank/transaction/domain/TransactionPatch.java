@@ -0,0 +1,42 @@
+package com.mybank.transaction.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.*;
+import java.math.BigDecimal;
+
+/**
+ * 部分更新请求DTO，只包含要修改的字段，没有给出(null)的字段保持不变；约束和 TransactionRequest 一致
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPatch {
+
+    @Pattern(regexp = "^[0-9]{16,19}$", message = "accountNumber format error")
+    private String accountNumber;
+
+    @Pattern(regexp = "^(DEPOSIT|WITHDRAWAL|TRANSFER|PAYMENT|REFUND|FEE|INTEREST)$",
+             message = "transaction type must be valid type")
+    private String transactionType;
+
+    @DecimalMin(value = "0.01", message = "amount must be greater than 0")
+    @DecimalMax(value = "999999999.99", message = "amount must less than 999999999.99")
+    private BigDecimal amount;
+
+    @Pattern(regexp = "^[A-Z]{3}$", message = "currency must be 3 uppercase letters")
+    private String currency;
+
+    @Size(max = 500, message = "description can't exceed 500 characters")
+    private String description;
+
+    @Pattern(regexp = "^[A-Z_]+$", message = "category format error")
+    private String category;
+
+    @Size(max = 20, message = "status can't exceed 20 characters")
+    private String status;
+}
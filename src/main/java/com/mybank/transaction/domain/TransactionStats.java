@@ -0,0 +1,40 @@
+package com.mybank.transaction.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 交易汇总行，未参与分组的维度为null，不输出
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionStats {
+
+    /**
+     * 交易创建日期
+     */
+    private LocalDate day;
+
+    private String category;
+
+    private String transactionType;
+
+    private String currency;
+
+    /**
+     * 交易笔数
+     */
+    private long count;
+
+    /**
+     * 金额合计，不区分收支
+     */
+    private BigDecimal totalAmount;
+}
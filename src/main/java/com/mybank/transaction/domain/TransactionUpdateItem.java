@@ -0,0 +1,28 @@
+package com.mybank.transaction.domain;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * 批量更新请求中的单个元素DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionUpdateItem {
+
+    @NotNull(message = "id can't be empty")
+    @Min(value = 1, message = "id must greater than 0")
+    private Long id;
+
+    @NotNull(message = "transaction can't be empty")
+    @Valid
+    private TransactionRequest transaction;
+}
@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 账户未找到异常
+ */
+public class AccountNotFoundException extends RuntimeException {
+
+    public AccountNotFoundException(String message) {
+        super(message);
+    }
+}
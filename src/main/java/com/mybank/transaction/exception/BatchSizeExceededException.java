@@ -0,0 +1,15 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 批量请求超过上限异常
+ */
+public class BatchSizeExceededException extends RuntimeException {
+
+    public BatchSizeExceededException(String message) {
+        super(message);
+    }
+
+    public BatchSizeExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 请求的变更日志偏移所在的段已经按保留策略删除
+ */
+public class ChangeOffsetExpiredException extends RuntimeException {
+
+    public ChangeOffsetExpiredException(String message) {
+        super(message);
+    }
+}
@@ -2,6 +2,7 @@ package com.mybank.transaction.exception;
 
 import com.mybank.transaction.domain.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
@@ -32,6 +33,26 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(e.getMessage()));
     }
 
+    /**
+     * 处理账户未找到异常
+     */
+    @ExceptionHandler(AccountNotFoundException.class)
+    public ResponseEntity<ApiResponse<Void>> handleAccountNotFoundException(AccountNotFoundException e) {
+        log.warn("账户未找到: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理搜索未开启异常
+     */
+    @ExceptionHandler(SearchDisabledException.class)
+    public ResponseEntity<ApiResponse<Void>> handleSearchDisabledException(SearchDisabledException e) {
+        log.warn("search disabled: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
     /**
      * 处理重复交易异常
      */
@@ -42,6 +63,87 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(e.getMessage()));
     }
 
+    /**
+     * 处理 If-Match 版本不一致异常
+     */
+    @ExceptionHandler(TransactionVersionMismatchException.class)
+    public ResponseEntity<ApiResponse<Void>> handleTransactionVersionMismatchException(TransactionVersionMismatchException e) {
+        log.warn("版本不一致: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理并发修改冲突异常
+     */
+    @ExceptionHandler(TransactionConflictException.class)
+    public ResponseEntity<ApiResponse<Void>> handleTransactionConflictException(TransactionConflictException e) {
+        log.warn("并发修改冲突: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理幂等键被不同请求复用异常
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ApiResponse<Void>> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException e) {
+        log.warn("幂等键复用: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理批量请求超限异常
+     */
+    @ExceptionHandler(BatchSizeExceededException.class)
+    public ResponseEntity<ApiResponse<Void>> handleBatchSizeExceededException(BatchSizeExceededException e) {
+        log.warn("batch size exceeded: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理分页游标非法异常
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiResponse<Void>> handleInvalidCursorException(InvalidCursorException e) {
+        log.warn("invalid cursor: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理变更日志偏移已过期异常
+     */
+    @ExceptionHandler(ChangeOffsetExpiredException.class)
+    public ResponseEntity<ApiResponse<Void>> handleChangeOffsetExpiredException(ChangeOffsetExpiredException e) {
+        log.warn("change offset expired: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理服务端繁忙异常
+     */
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<ApiResponse<Void>> handleServerBusyException(ServerBusyException e) {
+        log.warn("server busy: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
+    /**
+     * 处理持久化日志不可用异常
+     */
+    @ExceptionHandler(JournalUnavailableException.class)
+    public ResponseEntity<ApiResponse<Void>> handleJournalUnavailableException(JournalUnavailableException e) {
+        log.warn("journal unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error(e.getMessage()));
+    }
+
     /**
      * 处理参数验证异常
      */
@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 同一个 Idempotency-Key 用于内容不同的请求
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 分页游标非法异常
+ */
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 持久化日志追加失败后还没有恢复，拒绝写入
+ */
+public class JournalUnavailableException extends RuntimeException {
+
+    public JournalUnavailableException(String message) {
+        super(message);
+    }
+}
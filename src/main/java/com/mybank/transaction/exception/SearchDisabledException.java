@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 交易搜索没有开启(mybank.search.enabled=false)
+ */
+public class SearchDisabledException extends RuntimeException {
+
+    public SearchDisabledException(String message) {
+        super(message);
+    }
+}
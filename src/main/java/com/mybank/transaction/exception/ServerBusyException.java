@@ -0,0 +1,18 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 服务端繁忙异常，调用方应在 retryAfterSeconds 秒后重试
+ */
+public class ServerBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public ServerBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
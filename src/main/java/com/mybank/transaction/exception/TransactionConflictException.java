@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * 交易被并发修改，重试若干次后仍未写入
+ */
+public class TransactionConflictException extends RuntimeException {
+
+    public TransactionConflictException(String message) {
+        super(message);
+    }
+}
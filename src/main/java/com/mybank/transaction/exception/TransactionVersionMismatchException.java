@@ -0,0 +1,11 @@
+package com.mybank.transaction.exception;
+
+/**
+ * If-Match 带的版本和交易当前的版本不一致
+ */
+public class TransactionVersionMismatchException extends RuntimeException {
+
+    public TransactionVersionMismatchException(String message) {
+        super(message);
+    }
+}
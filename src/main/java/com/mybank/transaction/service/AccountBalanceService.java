@@ -0,0 +1,121 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.AccountBalanceDao;
+import com.mybank.transaction.domain.AccountBalance;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.AccountNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 账户余额
+ * <p>
+ * 余额存在 t_r_account_balance，交易的创建/更新/删除在同一个数据库事务里按账户增减(DEPOSIT/INTEREST/REFUND 为收入，其余为支出)，
+ * 行锁只落在涉及的账户上，不同账户的写入互不等待；一个事务涉及多个账户时按账户号顺序加锁，避免死锁。
+ * 提交后把返回的余额按 version 合并进内存 map，读取时直接取 map，不命中才查一次库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccountBalanceService implements SmartInitializingSingleton {
+
+    private static final Set<String> CREDIT_TYPES = Set.of("DEPOSIT", "INTEREST", "REFUND");
+
+    private final AccountBalanceDao accountBalanceDao;
+    private final Map<String, AccountBalance> balances = new ConcurrentHashMap<>();
+
+    /**
+     * 余额表为空(新库或升级前的库)时按已有交易汇总一次
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (accountBalanceDao.countAccounts() == 0) {
+            int accounts = accountBalanceDao.insertFromTransactions(LocalDateTime.now());
+            log.info("account balances rebuilt for {} accounts", accounts);
+        }
+    }
+
+    /**
+     * 账户当前余额，事务内读库以看到本事务未提交的变动，且不写入 map
+     */
+    public AccountBalance getBalance(String accountNumber) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            AccountBalance cached = balances.get(accountNumber);
+            if (cached != null) return cached;
+        }
+        AccountBalance balance = accountBalanceDao.selectByAccount(accountNumber);
+        if (balance == null) throw new AccountNotFoundException("account doesn't exist: " + accountNumber);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) merge(balance);
+        return balance;
+    }
+
+    /**
+     * 撤销 removed 的金额、计入 added 的金额，必须在写交易的事务里调用；dao 可以是批量执行器的mapper
+     */
+    public void apply(AccountBalanceDao dao, Collection<Transaction> removed, Collection<Transaction> added) {
+        Map<String, BigDecimal> deltas = new TreeMap<>();
+        removed.forEach(t -> deltas.merge(t.getAccountNumber(), signedAmount(t).negate(), BigDecimal::add));
+        added.forEach(t -> deltas.merge(t.getAccountNumber(), signedAmount(t), BigDecimal::add));
+        if (deltas.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        List<AccountBalance> updated = new ArrayList<>(deltas.size());
+        deltas.forEach((account, delta) -> updated.add(addBalance(dao, account, delta, now)));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    updated.forEach(AccountBalanceService.this::merge);
+                }
+            });
+        } else {
+            updated.forEach(this::merge);
+        }
+    }
+
+    public void apply(Collection<Transaction> removed, Collection<Transaction> added) {
+        apply(accountBalanceDao, removed, added);
+    }
+
+    /**
+     * 交易对余额的影响，TRANSFER 没有对方账户，按转出计
+     */
+    static BigDecimal signedAmount(Transaction transaction) {
+        BigDecimal amount = transaction.getAmount() == null ? BigDecimal.ZERO : transaction.getAmount();
+        return CREDIT_TYPES.contains(transaction.getTransactionType()) ? amount : amount.negate();
+    }
+
+    /**
+     * 两个事务同时新建同一账户时后者可能主键冲突，此时前者已提交，重试一次走更新分支
+     */
+    private static AccountBalance addBalance(AccountBalanceDao dao, String account, BigDecimal delta, LocalDateTime now) {
+        try {
+            return dao.addBalance(account, delta, now);
+        } catch (DuplicateKeyException e) {
+            return dao.addBalance(account, delta, now);
+        }
+    }
+
+    /**
+     * 提交顺序和 afterCommit 的执行顺序不一定一致，只保留版本更高的余额
+     */
+    private void merge(AccountBalance balance) {
+        balances.merge(balance.getAccountNumber(), balance,
+                (current, incoming) -> incoming.getVersion() > current.getVersion() ? incoming : current);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.PageRequest;
+import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.exception.ServerBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 交易服务的异步版本，mybank.async.enabled=true 时开启
+ * <p>
+ * 每个方法把对 {@link TransactionService} 的调用(校验、生成id、读写库、更新缓存)交给数据库执行器，立即返回 CompletableFuture，
+ * 请求线程不再等待数据库。执行器的线程数默认等于连接池大小，任务不会在 Hikari 上等连接；
+ * 排队的任务超过 queue-capacity 时直接拒绝，接口返回 429 和 Retry-After，而不是让请求无限堆积、尾延迟越来越高。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "mybank.async.enabled", havingValue = "true")
+public class AsyncTransactionService {
+
+    private final TransactionService transactionService;
+
+    @Value("${mybank.async.db-threads:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int dbThreads;
+
+    @Value("${mybank.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${mybank.async.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    private ThreadPoolExecutor dbExecutor;
+    private Counter rejected;
+
+    @PostConstruct
+    public void start() {
+        if (dbThreads < 1 || queueCapacity < 1 || retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("invalid mybank.async settings");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        dbExecutor = new ThreadPoolExecutor(dbThreads, dbThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "db-executor-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        rejected = Counter.builder("mybank.async.rejected")
+                .description("requests rejected because the database executor queue was full")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("mybank.async.queue", dbExecutor, executor -> executor.getQueue().size())
+                .description("tasks waiting for a database executor thread")
+                .register(Metrics.globalRegistry);
+        log.info("async transaction api on {} database threads, queue capacity {}", dbThreads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        dbExecutor.shutdown();
+        dbExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    public CompletableFuture<Transaction> createTransaction(TransactionRequest request, String idempotencyKey) {
+        return submit(() -> transactionService.createTransaction(request, idempotencyKey));
+    }
+
+    public CompletableFuture<Transaction> updateTransaction(Long id, TransactionRequest request, Long expectedVersion) {
+        return submit(() -> transactionService.updateTransaction(id, request, expectedVersion));
+    }
+
+    public CompletableFuture<Transaction> getTransaction(Long id) {
+        return submit(() -> transactionService.getTransaction(id));
+    }
+
+    public CompletableFuture<Void> deleteTransaction(Long id) {
+        return submit(() -> {
+            transactionService.deleteTransaction(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<PageResponse<Transaction>> getAllTransactions(PageRequest pageRequest) {
+        return submit(() -> transactionService.getAllTransactions(pageRequest));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, dbExecutor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServerBusyException("database executor queue is full, retry later", retryAfterSeconds);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.IdempotencyKeyDao;
+import com.mybank.transaction.domain.IdempotencyKey;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.exception.IdempotencyKeyReusedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 创建交易的幂等键
+ * <p>
+ * key 到所建交易的映射先查本地缓存(有界，写入后过期)，再查 t_r_idempotency_key；都没有时才创建，
+ * 幂等键和交易在同一事务内写入。同一进程内相同 key 的并发请求合并为一次创建：第一个请求先在缓存里放一个未完成的 future，
+ * 在缓存的锁外面建交易，完成后换成结果，其余请求等这个 future；
+ * 不同实例同时创建时，后写幂等键的一方等待前者提交后主键冲突，事务回滚，改为返回前者创建的交易。
+ * 同一个 key 带着不同的请求内容重试时返回 422。
+ */
+@Slf4j
+@Component
+public class IdempotencyService {
+
+    public static final String CACHE = "idempotency-keys";
+
+    private final IdempotencyKeyDao idempotencyKeyDao;
+    private final Map<Object, Object> entries;
+    private final Counter cacheHits;
+    private final Counter storedHits;
+    private final Counter misses;
+
+    @Value("${mybank.idempotency.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    public IdempotencyService(IdempotencyKeyDao idempotencyKeyDao, CacheManager cacheManager) {
+        this.idempotencyKeyDao = idempotencyKeyDao;
+        this.entries = nativeCache(cacheManager.getCache(CACHE)).asMap();
+        this.cacheHits = counter("cache");
+        this.storedHits = counter("table");
+        this.misses = counter("miss");
+    }
+
+    /**
+     * 返回 key 对应的交易，第一次出现时调用 create 创建；create 需要在创建交易的事务里写入传给它的幂等键
+     *
+     * @param loader 按id读取已创建的交易，用于本地缓存没有、表里有的情况
+     */
+    public Transaction execute(String key, TransactionRequest request, Function<IdempotencyKey, Transaction> create,
+                               Function<Long, Transaction> loader) {
+        String requestHash = hash(request);
+        CompletableFuture<Result> pending = new CompletableFuture<>();
+        Object existing = entries.putIfAbsent(key, pending);
+        Result result;
+        if (existing == null) {
+            try {
+                result = load(key, requestHash, create, loader);
+            } catch (RuntimeException e) {
+                entries.remove(key, pending);
+                pending.completeExceptionally(e);
+                throw e;
+            }
+            pending.complete(result);
+            entries.replace(key, pending, result);
+        } else {
+            // 等待的创建失败时异常直接抛给调用方，不算命中
+            result = existing instanceof Result cached ? cached : await(existing);
+            cacheHits.increment();
+        }
+        if (!result.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key was used for a different request: " + key);
+        }
+        return result.transaction();
+    }
+
+    private Result load(String key, String requestHash, Function<IdempotencyKey, Transaction> create,
+                        Function<Long, Transaction> loader) {
+        IdempotencyKey stored = idempotencyKeyDao.selectByKey(key);
+        if (stored == null) {
+            IdempotencyKey created = IdempotencyKey.builder()
+                    .key(key)
+                    .requestHash(requestHash)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            try {
+                Transaction transaction = create.apply(created);
+                misses.increment();
+                return new Result(requestHash, transaction);
+            } catch (RuntimeException e) {
+                // 另一个实例先提交了同一个 key
+                stored = idempotencyKeyDao.selectByKey(key);
+                if (stored == null) throw e;
+            }
+        }
+        storedHits.increment();
+        return new Result(stored.getRequestHash(), loader.apply(stored.getTransactionId()));
+    }
+
+    /**
+     * 等待同一个 key 上正在进行的创建，创建失败时抛出同样的异常
+     */
+    @SuppressWarnings("unchecked")
+    private static Result await(Object inFlight) {
+        try {
+            return ((CompletableFuture<Result>) inFlight).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(Cache cache) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+
+    /**
+     * 删除过期的幂等键，过期后同一个 key 会再创建一笔交易
+     */
+    @Scheduled(fixedDelayString = "${mybank.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${mybank.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int purged = idempotencyKeyDao.deleteBefore(LocalDateTime.now().minusNanos(ttlMillis * 1_000_000L));
+        if (purged > 0) log.info("purged {} expired idempotency keys", purged);
+    }
+
+    /**
+     * 请求内容的摘要，金额按数值比较(10.0 和 10.00 相同)
+     */
+    static String hash(TransactionRequest request) {
+        String canonical = Stream.of(request.getAccountNumber(), request.getTransactionType(),
+                        request.getAmount() == null ? null : request.getAmount().stripTrailingZeros().toPlainString(),
+                        request.getCurrency(), request.getDescription(), request.getCategory(), request.getStatus())
+                .map(v -> v == null ? "" : v.length() + ":" + v)
+                .collect(Collectors.joining("|"));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(String result) {
+        return Counter.builder("mybank.idempotency.requests")
+                .description("create requests carrying an Idempotency-Key, by where the result came from (miss: newly created)")
+                .tag("result", result)
+                .register(Metrics.globalRegistry);
+    }
+
+    private record Result(String requestHash, Transaction transaction) {
+    }
+}
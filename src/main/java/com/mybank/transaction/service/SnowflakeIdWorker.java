@@ -1,78 +1,116 @@
 package com.mybank.transaction.service;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花算法ID生成器
+ * <p>
+ * 64位布局: 1位符号 | 41位时间戳 | 5位数据中心id | 5位机器id | 12位序列
+ * <p>
+ * 时间戳和序列打包在同一个 {@link AtomicLong} 中 (时间戳 << 12 | 序列)，
+ * 通过CAS推进，不再使用全局锁；当前毫秒的序列用完时自旋等待下一毫秒，期间不持有任何锁。
+ * 可选的分段模式下，每个线程一次CAS预留一段连续序列，在本地依次发放。
+ * <p>
+ * 时钟回拨时不直接报错：回拨量在 borrowMillis 以内时沿用上一次的时间戳继续借用序列，
+ * 超过 borrowMillis 但在 borrowMillis + waitMillis 以内时等待时钟追上，再大才抛出异常。
+ */
 public class SnowflakeIdWorker {
     /**
      * 开始时间戳
      */
-    private final long startTime = 1619507543519L;
+    private static final long START_TIME = 1619507543519L;
     /**
      * 机器id所占的位数
      */
-    private final long workIdBits = 5L;
+    private static final long WORKER_ID_BITS = 5L;
     /**
      * 数据id所占的位数
      */
-    private final long dataIdBits = 5L;
+    private static final long DATA_ID_BITS = 5L;
     /**
-     * 二进制中，负数采用其绝对值的值得补码得到
-     * long型的-1 的值就32个1
+     * 12位的序列，表示1个毫秒内可生成 2的12次幂个数据，即4096个数据
      */
-    private final long maxWorkerId = -1L ^ (-1L << workIdBits);
+    private static final long SEQUENCE_BITS = 12L;
     /**
-     * 同上
+     * 机器码id最大值 31
      */
-    private final long maxDataGenID = -1L ^ (-1L << dataIdBits);
+    private static final long MAX_WORKER_ID = ~(-1L << WORKER_ID_BITS);
     /**
-     * 12位的序列，表示1个毫秒内可生成 2的12次幂个数据，即4096个数据
+     * 数据id最大值 31
+     */
+    private static final long MAX_DATA_ID = ~(-1L << DATA_ID_BITS);
+    /**
+     * 4095 生成序列的最大值
+     */
+    private static final long MAX_SEQUENCE = ~(-1L << SEQUENCE_BITS);
+    /**
+     * 机器id存放的位置应该是向左移动12位序列值
      */
-    private final long sequenceBits = 12L;
+    private static final long WORKER_SHIFT = SEQUENCE_BITS;
     /**
      * 数据id存放的位置应该是向左移动12位序列值和机器码
      */
-    private final long dataShiftBits = sequenceBits + workIdBits;
+    private static final long DATA_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
     /**
      * 时间戳存放的位置应该是从22位开始的，左移22位
      */
-    private final long timestampLeftShift = dataShiftBits + dataIdBits;
+    private static final long TIMESTAMP_SHIFT = DATA_SHIFT + DATA_ID_BITS;
     /**
-     * 4095 生成序列的最大值
+     * 每线程分段的最大长度，不超过一个毫秒的序列空间
+     */
+    public static final int MAX_BLOCK_SIZE = (int) MAX_SEQUENCE + 1;
+
+    /**
+     * 机器id和数据中心id预先移位后的值
+     */
+    private volatile long nodeBits;
+    /**
+     * 每线程预留的序列段长度，1表示不分段
+     */
+    private volatile int blockSize = 1;
+    /**
+     * 允许逻辑时间领先系统时钟的毫秒数，用于时钟回拨时借用序列
      */
-    private final long maxSequence = -1 ^ (-1 << sequenceBits);
+    private volatile long borrowMillis = 0L;
     /**
-     * 机器码id 小于31
+     * 借用额度用完后最多等待时钟追上的毫秒数
      */
-    private long worderId;
+    private volatile long waitMillis = 0L;
     /**
-     * 数据中心id 小于31
+     * 发号需要等待(序列用完或时钟回拨)时的回调，用于统计等待时间
      */
-    private long dataId;
+    private volatile WaitListener waitListener;
     /**
-     * 毫秒内计数(0-4095)
+     * 最后一次发放的 (时间戳 - START_TIME) << 12 | 序列
      */
-    private long sequence = 0L;
+    private final AtomicLong state = new AtomicLong();
     /**
-     * 上一次生成id的时间戳
+     * 读到过的最大时钟值 (减去 START_TIME)，时钟读数比它小才算回拨；
+     * 借用额度大于0时序列用完也会让 state 领先时钟，不能用领先量判断回拨
      */
-    private long lastTimeStamp = -1L;
+    private final AtomicLong maxClock = new AtomicLong();
+    /**
+     * 线程本地的预留段: [0]下一个可用状态, [1]段结束(不含)
+     */
+    private final ThreadLocal<long[]> localBlock = ThreadLocal.withInitial(() -> new long[2]);
+    /**
+     * 毫秒时钟，测试时可以替换成模拟回拨的时钟
+     */
+    private final LongSupplier clock;
 
     /**
-     * 单例模式构造方法
+     * 机器码id和数据id都为0，需要其他取值时调用 init；应用里使用 {@link com.mybank.transaction.config.IdWorkerConfig} 配置的 bean，
+     * 同一进程里不要再创建相同机器码的实例，否则会生成重复的id
      */
-    private SnowflakeIdWorker() {
+    public SnowflakeIdWorker() {
+        this(System::currentTimeMillis);
     }
 
-    private volatile static SnowflakeIdWorker sSingleton;
-
-    public static SnowflakeIdWorker getInstance() {
-        if (sSingleton == null) {
-            synchronized (SnowflakeIdWorker.class) {
-                if (sSingleton == null) {
-                    sSingleton = new SnowflakeIdWorker();
-                    sSingleton.init(0,0);
-                }
-            }
-        }
-        return sSingleton;
+    SnowflakeIdWorker(LongSupplier clock) {
+        this.clock = clock;
     }
 
     /**
@@ -82,14 +120,49 @@ public class SnowflakeIdWorker {
      * @param dataId   0-31
      */
     public void init(long workerId, long dataId) {
-        if (workerId > maxWorkerId || worderId < 0) {
-            throw new IllegalArgumentException(String.format("worker Id can't greater than %d or less than 0", maxWorkerId));
+        init(workerId, dataId, 1);
+    }
+
+    /**
+     * 初始化并配置机器码id、数据id和每线程分段长度
+     *
+     * @param workerId  0-31
+     * @param dataId    0-31
+     * @param blockSize 1-4096, 大于1时开启每线程分段模式
+     */
+    public void init(long workerId, long dataId, int blockSize) {
+        if (workerId > MAX_WORKER_ID || workerId < 0) {
+            throw new IllegalArgumentException(String.format("worker Id can't greater than %d or less than 0", MAX_WORKER_ID));
+        }
+        if (dataId > MAX_DATA_ID || dataId < 0) {
+            throw new IllegalArgumentException(String.format("data Id can't greater than %d or less than 0", MAX_DATA_ID));
         }
-        if (dataId > maxDataGenID || dataId < 0) {
-            throw new IllegalArgumentException(String.format("data Id can't greater than %d or less than 0", maxDataGenID));
+        if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(String.format("block size must between 1 and %d", MAX_BLOCK_SIZE));
         }
-        this.worderId = workerId;
-        this.dataId = dataId;
+        this.nodeBits = (dataId << DATA_SHIFT) | (workerId << WORKER_SHIFT);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * 配置时钟回拨的容忍度，默认两者都为0，即回拨立即报错
+     *
+     * @param borrowMillis 允许沿用旧时间戳继续发号的回拨毫秒数
+     * @param waitMillis   超出借用额度后最多等待的毫秒数
+     */
+    public void setClockBackwardTolerance(long borrowMillis, long waitMillis) {
+        if (borrowMillis < 0 || waitMillis < 0) {
+            throw new IllegalArgumentException("clock backward tolerance can't less than 0");
+        }
+        this.borrowMillis = borrowMillis;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * 设置等待回调，null 表示不统计
+     */
+    public void setWaitListener(WaitListener waitListener) {
+        this.waitListener = waitListener;
     }
 
     /**
@@ -98,28 +171,83 @@ public class SnowflakeIdWorker {
      *
      * @return 8个字节的长整型
      */
-    public synchronized long genNextId() {
-        long timeStamp = genTimeStamp();
-        /**表示系统的时间修改了*/
-        if (timeStamp < this.lastTimeStamp) {
-            throw new RuntimeException(String.format("System clock moved;currentTimeStamp %d,lastTimeStamp = %d", timeStamp, this.lastTimeStamp));
+    public long genNextId() {
+        int size = this.blockSize;
+        long s = size > 1 ? nextFromBlock(size) : reserve(1);
+        return toId(s);
+    }
+
+    /**
+     * 从线程本地的预留段中取下一个状态，段用完或已跨毫秒时重新预留
+     */
+    private long nextFromBlock(int size) {
+        long[] block = localBlock.get();
+        long next = block[0];
+        // 段内状态的时间戳落后于当前毫秒时丢弃剩余部分，保证id与发放时间的偏差不超过1毫秒
+        if (next < block[1] && (next >>> SEQUENCE_BITS) >= genTimeStamp() - START_TIME) {
+            block[0] = next + 1;
+            return next;
         }
-        if (timeStamp == this.lastTimeStamp) {
-            /**查看序列是否溢出*/
-            this.sequence = (this.sequence + 1) & maxSequence;
-            if (this.sequence == 0) {
-                /**当出现溢出的时候，阻塞到下一个毫秒*/
-                timeStamp = this.toNextMillis(this.lastTimeStamp);
+        long start = reserve(size);
+        block[0] = start + 1;
+        block[1] = start + size;
+        return start;
+    }
+
+    /**
+     * 通过CAS从全局状态预留 count 个连续的状态值，返回第一个
+     *
+     * @param count 预留个数
+     * @return 预留段的起始状态
+     */
+    private long reserve(int count) {
+        long waitStart = 0L;
+        boolean clockBackward = false;
+        while (true) {
+            // 先读状态再读时钟，否则其他线程在两次读取之间推进的状态会被误判为时钟回拨
+            long prev = state.get();
+            long prevTime = prev >>> SEQUENCE_BITS;
+            long seen = maxClock.get();
+            long now = genTimeStamp() - START_TIME;
+            if (now < seen) {
+                clockBackward = true;
+            } else if (now > seen) {
+                maxClock.accumulateAndGet(now, Math::max);
+            }
+            long start = now > prevTime ? now << SEQUENCE_BITS : prev + 1;
+            long last = start + count - 1;
+            long ahead = (last >>> SEQUENCE_BITS) - now;
+            if (ahead > borrowMillis) {
+                /**表示系统的时间修改了，且超出了可以等待的范围*/
+                if (prevTime - now > borrowMillis + waitMillis) {
+                    throw new IllegalStateException(String.format("System clock moved;currentTimeStamp %d,lastTimeStamp = %d",
+                            now + START_TIME, prevTime + START_TIME));
+                }
+                if (waitStart == 0L) waitStart = System.nanoTime();
+                if (ahead > 1) {
+                    /**时钟回拨或借用额度用完，等待时钟追上借用额度*/
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ahead - borrowMillis));
+                } else {
+                    /**当前毫秒的序列不够用，等待到下一个毫秒*/
+                    Thread.onSpinWait();
+                }
+                continue;
+            }
+            if (state.compareAndSet(prev, last)) {
+                WaitListener listener = waitListener;
+                if (waitStart != 0L && listener != null) {
+                    listener.onWait(clockBackward, System.nanoTime() - waitStart);
+                }
+                return start;
             }
-        } else {  /**此时表示时间戳跟最后的时间戳不一致,需要重置序列*/
-            this.sequence = 0L;
         }
-        this.lastTimeStamp = timeStamp;
-        //通过移位或运算拼接组成64ID号
-        return ((timeStamp - startTime) << timestampLeftShift)
-                | (dataId << dataShiftBits)
-                | (worderId << sequenceBits)
-                | sequence;
+    }
+
+    /**
+     * 通过移位或运算拼接组成64位ID号
+     */
+    private long toId(long s) {
+        return ((s >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | nodeBits | (s & MAX_SEQUENCE);
     }
 
     /**
@@ -129,20 +257,18 @@ public class SnowflakeIdWorker {
      * @return
      */
     private long genTimeStamp() {
-        return System.currentTimeMillis();
+        return clock.getAsLong();
     }
 
     /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
-     *
-     * @param lastTimeStamp 上传生成id的时间戳
-     * @return
+     * 发号等待回调
      */
-    private long toNextMillis(long lastTimeStamp) {
-        long timeStamp = this.genTimeStamp();
-        while (timeStamp <= lastTimeStamp) {
-            timeStamp = this.genTimeStamp();
-        }
-        return timeStamp;
+    @FunctionalInterface
+    public interface WaitListener {
+        /**
+         * @param clockBackward true 表示因时钟回拨等待，false 表示当前毫秒序列用完
+         * @param nanos         等待的纳秒数
+         */
+        void onWait(boolean clockBackward, long nanos);
     }
 }
@@ -0,0 +1,237 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.IdempotencyKeyDao;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.IdempotencyKey;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.DuplicateTransactionException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 交易组提交写入器
+ * <p>
+ * 开启后 createTransaction 不再各自提交，而是把交易放入有界队列，
+ * 由单个写线程按批次(数量或等待时间触发)执行多行插入并一次提交，
+ * 批次提交成功后才完成调用方的 future，账户余额、日汇总的变动和插入在同一事务内提交。批量插入失败时逐条重试，使每个调用方拿到各自的结果。
+ */
+@Slf4j
+@Component
+public class TransactionBatchWriter {
+
+    private final TransactionDao transactionDao;
+    private final IdempotencyKeyDao idempotencyKeyDao;
+    private final TransactionCounter transactionCounter;
+    private final AccountBalanceService accountBalanceService;
+    private final TransactionStatsService transactionStatsService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${mybank.create.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mybank.create.group-commit.batch-size:200}")
+    private int batchSize;
+
+    @Value("${mybank.create.group-commit.linger-ms:2}")
+    private long lingerMillis;
+
+    @Value("${mybank.create.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingInsert> queue;
+    private DistributionSummary batchSizeSummary;
+    private Thread writer;
+    private volatile boolean running;
+    /**
+     * 入队持有读锁，停止时持有写锁改 running，写线程最后一次取队列之后不会再有交易入队
+     */
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+
+    public TransactionBatchWriter(TransactionDao transactionDao, IdempotencyKeyDao idempotencyKeyDao, TransactionCounter transactionCounter,
+                                  AccountBalanceService accountBalanceService, TransactionStatsService transactionStatsService,
+                                  PlatformTransactionManager transactionManager) {
+        this.transactionDao = transactionDao;
+        this.idempotencyKeyDao = idempotencyKeyDao;
+        this.transactionCounter = transactionCounter;
+        this.accountBalanceService = accountBalanceService;
+        this.transactionStatsService = transactionStatsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        if (batchSize < 1 || lingerMillis < 0 || queueCapacity < 1) {
+            throw new IllegalArgumentException("invalid mybank.create.group-commit settings");
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSizeSummary = DistributionSummary.builder("mybank.transaction.insert.batch.size")
+                .description("rows committed per group commit")
+                .baseUnit("rows")
+                .publishPercentiles(0.5, 0.99)
+                .register(Metrics.globalRegistry);
+        Gauge.builder("mybank.transaction.insert.queue.depth", queue, BlockingQueue::size)
+                .description("transactions waiting for group commit")
+                .register(Metrics.globalRegistry);
+        running = true;
+        writer = new Thread(this::runLoop, "transaction-batch-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("group commit enabled: batchSize={}, lingerMs={}, queueCapacity={}", batchSize, lingerMillis, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) return;
+        submitLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        // 不中断写线程：flush 可能正在 JDBC 里，h2file 下被中断的 FileChannel 会关掉整个库；
+        // running=false 之后写线程写完队列里剩下的交易，最多 100ms 的 poll 后自己退出
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        // 写线程没能在时限内写完时，剩下的调用方不再等待
+        List<PendingInsert> left = new ArrayList<>();
+        queue.drainTo(left);
+        IllegalStateException stopped = new IllegalStateException("group commit writer stopped");
+        left.forEach(p -> p.future.completeExceptionally(stopped));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一条待插入的交易，返回在其所在批次提交后完成的 future；idempotencyKey 不为空时和交易在同一批次写入
+     */
+    public CompletableFuture<Transaction> submit(Transaction transaction, IdempotencyKey idempotencyKey) {
+        PendingInsert pending = new PendingInsert(transaction, idempotencyKey, new CompletableFuture<>());
+        // 队列满时在读锁内等待，写线程不需要这把锁，会继续取走交易
+        submitLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("group commit writer is not running");
+            }
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for group commit queue", e);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+        return pending.future;
+    }
+
+    /**
+     * 提交并等待所在批次提交完成
+     */
+    public Transaction insert(Transaction transaction, IdempotencyKey idempotencyKey) {
+        try {
+            return submit(transaction, idempotencyKey).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void runLoop() {
+        List<PendingInsert> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                collect(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // 被外部中断时把已取出的和队列里剩余的交易写完，写之前清掉中断标记
+                Thread.interrupted();
+                queue.drainTo(batch);
+                if (!batch.isEmpty()) flush(batch);
+            } catch (Throwable e) {
+                log.error("group commit failed: ", e);
+                batch.forEach(p -> p.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 凑满一个批次，或等待 linger 时间到期
+     */
+    private void collect(List<PendingInsert> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        List<Transaction> rows = new ArrayList<>(batch.size());
+        List<IdempotencyKey> keys = new ArrayList<>();
+        batch.forEach(p -> {
+            rows.add(p.transaction);
+            if (p.idempotencyKey != null) keys.add(p.idempotencyKey);
+        });
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!keys.isEmpty()) idempotencyKeyDao.insertKeys(keys);
+                transactionDao.insTranBatch(rows);
+                accountBalanceService.apply(List.of(), rows);
+                transactionStatsService.apply(List.of(), rows);
+            });
+            transactionCounter.add(rows.size());
+            batchSizeSummary.record(rows.size());
+            batch.forEach(p -> p.future.complete(p.transaction));
+        } catch (Exception e) {
+            log.warn("batch insert of {} rows failed, retrying one by one: {}", rows.size(), e.getMessage());
+            for (PendingInsert p : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        if (p.idempotencyKey != null) idempotencyKeyDao.insertKey(p.idempotencyKey);
+                        transactionDao.insTran(p.transaction);
+                        accountBalanceService.apply(List.of(), List.of(p.transaction));
+                        transactionStatsService.apply(List.of(), List.of(p.transaction));
+                    });
+                    transactionCounter.add(1);
+                    batchSizeSummary.record(1);
+                    p.future.complete(p.transaction);
+                } catch (DuplicateKeyException ex) {
+                    p.future.completeExceptionally(new DuplicateTransactionException("duplicate transaction id", ex));
+                } catch (Exception ex) {
+                    p.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private record PendingInsert(Transaction transaction, IdempotencyKey idempotencyKey, CompletableFuture<Transaction> future) {
+    }
+}
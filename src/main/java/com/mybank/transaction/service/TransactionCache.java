@@ -0,0 +1,248 @@
+package com.mybank.transaction.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.mybank.transaction.config.CacheConfig;
+import com.mybank.transaction.config.CacheWeigher;
+import com.mybank.transaction.domain.Transaction;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 交易缓存
+ * <p>
+ * 分页缓存只存一页的行(按id升序)，总数每次从计数器取，写入时按id定位受影响的页，不再整体清空:
+ * 更新只失效包含该id的页；创建/删除只失效位置在该id及之后的页(页内最大id不小于该id，或者页未满)。
+ * 雪花id递增，新建的交易通常只影响末尾的页。页在缓存的锁外查询，每次失效推进分页缓存的代数，查询前后代数不同时查到的页不放进缓存。
+ * 单条交易缓存按id存放，创建时写入，更新时只替换已缓存的(已缓存的版本更新时保留)，删除时移除；查不到的id也缓存一小段时间(见 CacheConfig)。
+ * 账户分页缓存以账户号为key，值是该账户已缓存的各页，某个账户的写入只移除这一个key，不影响其他账户；
+ * 更新时按交易原来的账户和新账户都失效。账户页在缓存的锁外查询，
+ * 每次失效推进该账户的代数(按账户号哈希分段)，查询前后代数不同说明期间有写入，查到的结果不放进缓存。
+ * 事务内的写入先立即失效，提交后再失效一次并写入新值，避免并发读把未提交或旧的数据放回缓存；回滚时清空分页缓存。
+ */
+@Component
+@Order(1)
+public class TransactionCache implements TransactionChangeListener {
+
+    public static final String PAGE_CACHE = "transactions";
+    public static final String ENTITY_CACHE = "transaction";
+    public static final String ACCOUNT_PAGE_CACHE = "account-transactions";
+
+    private static final String COUNT_KEY = "count";
+    private static final Comparator<Transaction> BY_ID = Comparator.comparing(Transaction::getId);
+    private static final int MAX_PAGES_PER_ACCOUNT = 32;
+    private static final int ACCOUNT_STRIPES = 1024;
+
+    private final org.springframework.cache.Cache pageCache;
+    private final org.springframework.cache.Cache entityCache;
+    private final org.springframework.cache.Cache accountPageCache;
+    /**
+     * 分页缓存的失效代数
+     */
+    private final AtomicLong pageGeneration = new AtomicLong();
+    /**
+     * 账户分页缓存的失效代数，下标为账户号哈希的低位
+     */
+    private final AtomicLongArray accountGenerations = new AtomicLongArray(ACCOUNT_STRIPES);
+
+    public TransactionCache(CacheManager cacheManager) {
+        this.pageCache = cacheManager.getCache(PAGE_CACHE);
+        this.entityCache = cacheManager.getCache(ENTITY_CACHE);
+        this.accountPageCache = cacheManager.getCache(ACCOUNT_PAGE_CACHE);
+    }
+
+    /**
+     * 读取一页，未命中时在缓存的锁外加载；加载期间分页缓存有过失效时结果只返回、不缓存
+     *
+     * @param afterId 游标分页的起始id(不含)，按页码分页传 Long.MIN_VALUE
+     * @param limit   查询的行数
+     */
+    public List<Transaction> getPage(String key, long afterId, int limit, Supplier<List<Transaction>> loader) {
+        Cache<Object, Object> nativeCache = nativeCache(pageCache);
+        if (nativeCache.getIfPresent(key) instanceof PageSlice cached) return cached.rows();
+        long generation = pageGeneration.get();
+        PageSlice loaded = new PageSlice(afterId, limit, List.copyOf(loader.get()), loader);
+        nativeCache.asMap().compute(key, (k, v) -> v != null || pageGeneration.get() != generation ? v : loaded);
+        return loaded.rows();
+    }
+
+    public long getCount(Supplier<Long> loader) {
+        Long count = pageCache.get(COUNT_KEY, loader::get);
+        return count == null ? 0L : count;
+    }
+
+    public Transaction getTransaction(Long id, Supplier<Transaction> loader) {
+        return entityCache.get(id, loader::get);
+    }
+
+    /**
+     * 读取某个账户的一页，未命中时在缓存的锁外加载；加载期间该账户有过失效时结果只返回、不缓存，失效不会被并发的加载覆盖
+     */
+    public List<Transaction> getAccountPage(String accountNumber, String key, Supplier<List<Transaction>> loader) {
+        Cache<Object, Object> nativeCache = nativeCache(accountPageCache);
+        if (nativeCache.getIfPresent(accountNumber) instanceof AccountPages cached) {
+            List<Transaction> rows = cached.pages().get(key);
+            if (rows != null) return rows;
+        }
+        int stripe = stripe(accountNumber);
+        long generation = accountGenerations.get(stripe);
+        List<Transaction> rows = List.copyOf(loader.get());
+        nativeCache.asMap().compute(accountNumber, (k, v) -> {
+            if (accountGenerations.get(stripe) != generation) return v;
+            AccountPages current = v instanceof AccountPages p ? p : AccountPages.EMPTY;
+            return current.with(key, rows);
+        });
+        return rows;
+    }
+
+    /**
+     * 事务内先失效受影响的页，避免并发读把未提交的数据放进缓存；单条交易缓存里仍是已提交的版本，提交后再替换
+     */
+    @Override
+    public void onWritten(TransactionChange change) {
+        evict(change);
+        if (change.type() == TransactionChange.Type.DELETED) {
+            for (long id : change.sortedIds()) entityCache.evict(id);
+        }
+    }
+
+    @Override
+    public void onCommitted(TransactionChange change) {
+        evict(change);
+        switch (change.type()) {
+            case CREATED -> change.transactions().forEach(t -> entityCache.put(t.getId(), t));
+            // 只替换已缓存的交易，不把没人读的交易放进缓存
+            case UPDATED -> change.transactions().forEach(this::replaceNewer);
+            case DELETED -> {
+                for (long id : change.sortedIds()) entityCache.evict(id);
+            }
+        }
+    }
+
+    /**
+     * 事务内读到的未提交数据可能已经进了分页缓存
+     */
+    @Override
+    public void onRolledBack(TransactionChange change) {
+        pageCache.clear();
+        accountPageCache.clear();
+    }
+
+    private void evict(TransactionChange change) {
+        long[] ids = change.sortedIds();
+        if (change.type() == TransactionChange.Type.UPDATED) {
+            evictPages(slice -> slice.containsAny(ids));
+        } else {
+            pageCache.evict(COUNT_KEY);
+            evictPages(slice -> slice.shiftedBy(ids));
+        }
+        evictAccounts(change.accounts());
+    }
+
+    /**
+     * 提交后的回调不一定按提交顺序执行，缓存里已经是更新的版本时不覆盖，替换时保留已缓存的创建时间；
+     * 正在加载的同一id会等加载完成后再比较
+     */
+    private void replaceNewer(Transaction t) {
+        nativeCache(entityCache).asMap().computeIfPresent(t.getId(), (k, v) -> {
+            if (!(v instanceof Transaction cached)) return t;
+            if (cached.getVersion() != null && t.getVersion() != null && cached.getVersion() > t.getVersion()) return v;
+            return t.toBuilder().createdAt(cached.getCreatedAt()).build();
+        });
+    }
+
+    private void evictPages(Predicate<PageSlice> affected) {
+        // 先推进代数再移除，正在查询的旧结果不会在移除之后放回缓存
+        pageGeneration.incrementAndGet();
+        nativeCache(pageCache).asMap().values().removeIf(v -> v instanceof PageSlice slice && affected.test(slice));
+    }
+
+    private void evictAccounts(Set<String> accounts) {
+        // 先推进代数再移除，正在查询的旧结果不会在移除之后放回缓存
+        accounts.forEach(account -> accountGenerations.incrementAndGet(stripe(account)));
+        nativeCache(accountPageCache).invalidateAll(accounts);
+    }
+
+    private static int stripe(String accountNumber) {
+        return accountNumber.hashCode() & (ACCOUNT_STRIPES - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<Object, Object> nativeCache(org.springframework.cache.Cache cache) {
+        return (Cache<Object, Object>) cache.getNativeCache();
+    }
+
+    /**
+     * 一页缓存的行和查询条件，用来判断某个id的写入是否影响这一页，loader 用于 refreshAfterWrite 时重新查询
+     */
+    private record PageSlice(long afterId, int limit, List<Transaction> rows, Supplier<List<Transaction>> loader)
+            implements CacheWeigher.Sized, CacheConfig.Refreshable {
+
+        @Override
+        public long estimatedBytes() {
+            return 48 + CacheWeigher.estimate(rows);
+        }
+
+        @Override
+        public Object refresh() {
+            return new PageSlice(afterId, limit, List.copyOf(loader.get()), loader);
+        }
+
+        /**
+         * 插入或删除这些id后，这一页的内容是否会变化
+         */
+        boolean shiftedBy(long[] sortedIds) {
+            int i = Arrays.binarySearch(sortedIds, afterId == Long.MAX_VALUE ? afterId : afterId + 1);
+            if (i < 0) i = -i - 1;
+            if (i == sortedIds.length) return false;
+            return rows.size() < limit || sortedIds[i] <= rows.get(rows.size() - 1).getId();
+        }
+
+        boolean containsAny(long[] sortedIds) {
+            if (rows.isEmpty()) return false;
+            long first = rows.get(0).getId(), last = rows.get(rows.size() - 1).getId();
+            for (long id : sortedIds) {
+                if (id < first) continue;
+                if (id > last) break;
+                Transaction probe = Transaction.builder().id(id).build();
+                if (Collections.binarySearch(rows, probe, BY_ID) >= 0) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一个账户已缓存的页，key 为查询条件；页数超过上限时从空重新开始，避免单个账户的缓存无限增长
+     */
+    private record AccountPages(Map<String, List<Transaction>> pages) implements CacheWeigher.Sized {
+
+        static final AccountPages EMPTY = new AccountPages(Map.of());
+
+        AccountPages with(String key, List<Transaction> rows) {
+            Map<String, List<Transaction>> copy = new LinkedHashMap<>(pages.size() < MAX_PAGES_PER_ACCOUNT ? pages : Map.of());
+            copy.put(key, rows);
+            return new AccountPages(Collections.unmodifiableMap(copy));
+        }
+
+        @Override
+        public long estimatedBytes() {
+            long bytes = 64;
+            for (Map.Entry<String, List<Transaction>> page : pages.entrySet()) {
+                bytes += 48 + CacheWeigher.estimate(page.getKey()) + CacheWeigher.estimate(page.getValue());
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.Transaction;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一次写入变更的交易，由 {@link TransactionChangePublisher} 分发给各个 {@link TransactionChangeListener}
+ *
+ * @param transactions 创建或更新后的交易，带全部字段、创建时间和版本；删除时是删除前的交易，至少带id、账户和版本
+ * @param previous     更新前的交易，至少带id和账户，账户没有变化时可以为空；创建和删除时为空
+ */
+public record TransactionChange(Type type, List<Transaction> transactions, List<Transaction> previous) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    public TransactionChange {
+        transactions = List.copyOf(transactions);
+        previous = List.copyOf(previous);
+    }
+
+    public static TransactionChange created(List<Transaction> created) {
+        return new TransactionChange(Type.CREATED, created, List.of());
+    }
+
+    public static TransactionChange updated(List<Transaction> updated, List<Transaction> previous) {
+        return new TransactionChange(Type.UPDATED, updated, previous);
+    }
+
+    public static TransactionChange deleted(List<Transaction> removed) {
+        return new TransactionChange(Type.DELETED, removed, List.of());
+    }
+
+    /**
+     * 变更的交易id，升序
+     */
+    public long[] sortedIds() {
+        return transactions.stream().mapToLong(Transaction::getId).sorted().toArray();
+    }
+
+    /**
+     * 变更前后涉及的账户
+     */
+    public Set<String> accounts() {
+        Set<String> accounts = new HashSet<>();
+        transactions.forEach(t -> accounts.add(t.getAccountNumber()));
+        previous.forEach(t -> accounts.add(t.getAccountNumber()));
+        accounts.remove(null);
+        return accounts;
+    }
+}
@@ -0,0 +1,119 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.ChangeEvent;
+import com.mybank.transaction.domain.ChangeFeed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 变更日志的长轮询和 SSE 推送
+ * <p>
+ * 等待新事件时不占用线程：长轮询返回 CompletableFuture，SSE 发完一批后挂在 awaitAfter 上，日志追加或到心跳间隔时才由读线程读下一批发送；
+ * 读线程只在读和发送时占用，订阅者再多也不会各自停着一个线程。读取只访问日志文件的映射，不占用数据库连接。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "mybank.change-log.enabled", havingValue = "true")
+public class TransactionChangeFeed {
+
+    /**
+     * SSE 连接空闲时发送注释的间隔，避免被代理按空闲超时断开
+     */
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    private static final int STREAM_BATCH = 500;
+
+    private final TransactionChangeLog changeLog;
+    private ExecutorService readers;
+
+    @PostConstruct
+    public void start() {
+        readers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "change-feed-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        readers.shutdownNow();
+    }
+
+    /**
+     * 从 fromOffset 读最多 limit 条；没有新事件且 waitMillis 大于0时，等到有新事件或超时再读
+     */
+    public CompletableFuture<ChangeFeed> poll(long fromOffset, int limit, long waitMillis) {
+        ChangeFeed feed = changeLog.read(fromOffset, limit);
+        if (!feed.getEvents().isEmpty() || waitMillis <= 0) return CompletableFuture.completedFuture(feed);
+        return changeLog.awaitAfter(fromOffset, waitMillis)
+                .thenApplyAsync(v -> changeLog.read(fromOffset, limit), readers);
+    }
+
+    /**
+     * 从 fromOffset 开始推送事件，每条事件的 id 是下一条的偏移，断线后带 Last-Event-ID 重连即可接着读；
+     * 第一批在请求线程上读，偏移无效时直接返回错误响应
+     */
+    public void stream(long fromOffset, SseEmitter emitter) {
+        ChangeFeed first = changeLog.read(fromOffset, STREAM_BATCH);
+        AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+        readers.execute(() -> pump(first, emitter, closed));
+    }
+
+    /**
+     * 发送一批，然后在有新事件或到心跳间隔时把下一批交给读线程
+     */
+    private void pump(ChangeFeed feed, SseEmitter emitter, AtomicBoolean closed) {
+        if (closed.get()) return;
+        try {
+            for (ChangeEvent event : feed.getEvents()) {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(event.getNextOffset()))
+                        .name(event.getType())
+                        .data(event));
+            }
+            if (feed.getEvents().isEmpty()) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        } catch (IOException e) {
+            log.debug("change stream client went away: {}", e.getMessage());
+            return;
+        } catch (Exception e) {
+            log.warn("change stream stopped", e);
+            emitter.completeWithError(e);
+            return;
+        }
+        long offset = feed.getNextOffset();
+        CompletableFuture<Void> next = changeLog.getEndOffset() > offset
+                ? CompletableFuture.completedFuture(null)
+                : changeLog.awaitAfter(offset, HEARTBEAT_MILLIS);
+        next.thenRunAsync(() -> pump(changeLog.read(offset, STREAM_BATCH), emitter, closed), readers)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof RejectedExecutionException) {
+                        // 应用关闭
+                        emitter.complete();
+                    } else {
+                        log.warn("change stream stopped", cause);
+                        emitter.completeWithError(cause);
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,26 @@
+package com.mybank.transaction.service;
+
+/**
+ * 交易写入的监听方(缓存、搜索索引、热数据层、变更日志、持久化日志)，由 {@link TransactionChangePublisher} 按 @Order 顺序调用
+ * <p>
+ * afterCommit 的执行顺序不一定是提交顺序，提交后的变更要按版本判断新旧
+ */
+public interface TransactionChangeListener {
+
+    /**
+     * 写入后立即调用，此时事务还没有提交；没有事务时不调用
+     */
+    default void onWritten(TransactionChange change) {
+    }
+
+    /**
+     * 事务提交后调用；没有事务时写入后立即调用
+     */
+    void onCommitted(TransactionChange change);
+
+    /**
+     * 事务回滚后调用
+     */
+    default void onRolledBack(TransactionChange change) {
+    }
+}
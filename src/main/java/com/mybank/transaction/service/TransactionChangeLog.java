@@ -0,0 +1,341 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.ChangeEvent;
+import com.mybank.transaction.domain.ChangeFeed;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.ChangeOffsetExpiredException;
+import com.mybank.transaction.exception.InvalidCursorException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易变更日志
+ * <p>
+ * 开启后每笔创建、更新、删除在事务提交后追加到 mybank.change-log.dir 下的段文件，段文件按 segment-bytes 预分配并通过 mmap 写入，
+ * 写满后换新段，只保留最近 retention-segments 个段。偏移是事件在整个日志里的字节位置，段文件以起始偏移命名，
+ * 按偏移找到段后直接定位，读取只访问映射的文件，不经过数据库。
+ * <p>
+ * 事件按 {@link TransactionRecords} 的格式编码，读取时逐条校验 CRC。启动时从最后一个段的开头校验到第一条不完整的事件，之后的内容清零，崩溃时写了一半的事件不会被读到。
+ * <p>
+ * 事件写入映射后立即可读，按 flush-interval-ms 刷盘，为 0 时每次追加后刷盘。只记录本实例的写入，多副本部署时每个实例各有一份日志。
+ * <p>
+ * 事件在事务提交后的回调里追加，回调的执行顺序不一定是提交顺序，同一交易的事件可能晚于它之后的变更出现。
+ * 每条事件都带交易变更后的版本(删除是删除前的版本 + 1)，消费方要按版本排序，忽略版本不高于已处理版本的事件，删除之后的事件也不能让交易复活。
+ */
+@Slf4j
+@Component
+@Order(4)
+public class TransactionChangeLog implements TransactionChangeListener {
+
+    private static final String SUFFIX = ".log";
+    private static final int PAGE_BYTES = 4096;
+
+    @Value("${mybank.change-log.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mybank.change-log.dir:./data/changes}")
+    private String dir;
+
+    @Value("${mybank.change-log.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${mybank.change-log.retention-segments:16}")
+    private int retentionSegments;
+
+    @Value("${mybank.change-log.flush-interval-ms:100}")
+    private long flushIntervalMillis;
+
+    /**
+     * 按起始偏移排列的段，最后一个是正在写的段
+     */
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private Path directory;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * 以下两个字段由 this 保护
+     */
+    private Segment active;
+    private boolean dirty;
+
+    /**
+     * 已写入的末尾，读取不会越过它
+     */
+    private volatile long endOffset;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) return;
+        if (segmentBytes < 64 * 1024 || retentionSegments < 1 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("invalid mybank.change-log settings");
+        }
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        bases.sort(null);
+        for (int i = 0; i < bases.size(); ++i) {
+            boolean last = i == bases.size() - 1;
+            Segment segment = map(bases.get(i), last);
+            // 前面的段已经写满，长度就是到下一段起点的距离
+            segment.size = last ? recover(segment) : (int) (bases.get(i + 1) - bases.get(i));
+            segments.put(segment.baseOffset, segment);
+        }
+        if (segments.isEmpty()) segments.put(0L, map(0L, true));
+        active = segments.lastEntry().getValue();
+        endOffset = active.baseOffset + active.size;
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "change-log-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        Gauge.builder("mybank.changelog.end.offset", this, TransactionChangeLog::getEndOffset)
+                .description("end offset of the transaction change log")
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+        log.info("transaction change log opened in {}: {} segments, offsets {} to {}",
+                directory.toAbsolutePath(), segments.size(), segments.firstKey(), endOffset);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!enabled) return;
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        synchronized (this) {
+            active.buffer.force();
+        }
+        waiters.forEach(waiter -> waiter.complete(null));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * 创建和更新传入的交易需要带全部字段、创建时间和新的版本，删除传入删除前的交易，需要带id和版本
+     */
+    @Override
+    public void onCommitted(TransactionChange change) {
+        if (!enabled) return;
+        append(TransactionRecords.encode(change, System.currentTimeMillis()));
+    }
+
+    /**
+     * 从 fromOffset 起最多 limit 条事件，fromOffset 必须是某条事件的起点或日志末尾
+     */
+    public ChangeFeed read(long fromOffset, int limit) {
+        long end = endOffset;
+        if (fromOffset < 0 || fromOffset > end) {
+            throw new InvalidCursorException("offset " + fromOffset + " is out of range, the change log ends at " + end);
+        }
+        Map.Entry<Long, Segment> entry = segments.floorEntry(fromOffset);
+        if (entry == null) throw expired(fromOffset);
+        Segment segment = entry.getValue();
+        List<ChangeEvent> events = new ArrayList<>(Math.min(limit, 1024));
+        long offset = fromOffset;
+        while (events.size() < limit && offset < end) {
+            int pos = (int) (offset - segment.baseOffset);
+            int limitPos = (int) Math.min(segment.size, end - segment.baseOffset);
+            if (pos >= limitPos) {
+                // 读完一个段，下一段从这里开始
+                segment = segments.get(offset);
+                if (segment == null) throw expired(offset);
+                continue;
+            }
+            int length = TransactionRecords.validLength(segment.buffer, pos, limitPos);
+            if (length < 0) {
+                if (offset == fromOffset) throw new InvalidCursorException("offset " + fromOffset + " isn't the start of an event");
+                throw new IllegalStateException("corrupt change log at offset " + offset);
+            }
+            long next = offset + TransactionRecords.HEADER_BYTES + length;
+            events.add(decode(segment.buffer.slice(pos + TransactionRecords.HEADER_BYTES, length), offset, next));
+            offset = next;
+        }
+        return ChangeFeed.builder()
+                .events(events)
+                .nextOffset(offset)
+                .endOffset(end)
+                .build();
+    }
+
+    /**
+     * 日志末尾超过 offset 时完成；最多等待 timeoutMillis，超时也正常完成，调用方再读一次即可
+     */
+    public CompletableFuture<Void> awaitAfter(long offset, long timeoutMillis) {
+        if (endOffset > offset) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        // 加入队列之前可能刚好有追加，它唤醒的时候还看不到这个 waiter
+        if (endOffset > offset) waiter.complete(null);
+        waiter.completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS);
+        waiter.whenComplete((v, e) -> waiters.remove(waiter));
+        return waiter;
+    }
+
+    private void append(List<byte[]> records) {
+        synchronized (this) {
+            for (byte[] record : records) {
+                if (active.size + record.length > active.buffer.capacity()) roll();
+                active.buffer.put(active.size, record);
+                active.size += record.length;
+            }
+            endOffset = active.baseOffset + active.size;
+            if (flushIntervalMillis == 0) {
+                active.buffer.force();
+            } else {
+                dirty = true;
+            }
+        }
+        CompletableFuture<Void> waiter;
+        while ((waiter = waiters.poll()) != null) waiter.complete(null);
+    }
+
+    /**
+     * 在持有 this 时调用：刷盘后换新段，超过保留数的旧段删除；正在读旧段的请求仍可以读完(映射在文件删除后依然有效)
+     */
+    private void roll() {
+        active.buffer.force();
+        long base = active.baseOffset + active.size;
+        try {
+            active = map(base, true);
+            segments.put(base, active);
+            while (segments.size() > retentionSegments) {
+                Segment oldest = segments.pollFirstEntry().getValue();
+                Files.deleteIfExists(oldest.path);
+                log.info("change log segment {} deleted", oldest.path.getFileName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() {
+        Segment segment;
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            segment = active;
+        }
+        try {
+            segment.buffer.force();
+        } catch (RuntimeException e) {
+            log.error("change log flush failed", e);
+        }
+    }
+
+    /**
+     * 正在写的段映射为 segment-bytes(文件更长时按文件长度)，写满的段只读映射整个文件
+     */
+    private Segment map(long baseOffset, boolean writable) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = writable
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes))
+                    : channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Segment(baseOffset, path, buffer);
+        }
+    }
+
+    /**
+     * 找到最后一个段里完整事件的末尾，把之后不为零的页清零
+     */
+    private static int recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int end = 0;
+        for (int length; (length = TransactionRecords.validLength(buffer, end, buffer.capacity())) >= 0; ) {
+            end += TransactionRecords.HEADER_BYTES + length;
+        }
+        byte[] zeros = new byte[PAGE_BYTES];
+        for (int pos = end; pos < buffer.capacity(); pos += PAGE_BYTES) {
+            int length = Math.min(PAGE_BYTES, buffer.capacity() - pos);
+            if (!buffer.slice(pos, length).equals(ByteBuffer.wrap(zeros, 0, length))) buffer.put(pos, zeros, 0, length);
+        }
+        buffer.force();
+        return end;
+    }
+
+    private static ChangeEvent decode(ByteBuffer body, long offset, long nextOffset) {
+        byte type = body.get();
+        long id = body.getLong();
+        ChangeEvent.ChangeEventBuilder event = ChangeEvent.builder()
+                .offset(offset)
+                .nextOffset(nextOffset)
+                .transactionId(id)
+                .committedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(body.getLong()), ZoneId.systemDefault()));
+        if (type == TransactionRecords.DELETED) {
+            return event.type(ChangeEvent.DELETED).version(TransactionRecords.readDeletedVersion(body)).build();
+        }
+        Transaction transaction = TransactionRecords.readTransaction(id, body);
+        return event.type(type == TransactionRecords.CREATED ? ChangeEvent.CREATED : ChangeEvent.UPDATED)
+                .version(transaction.getVersion())
+                .transaction(transaction)
+                .build();
+    }
+
+    private static ChangeOffsetExpiredException expired(long offset) {
+        return new ChangeOffsetExpiredException("offset " + offset + " is older than the retained change log segments");
+    }
+
+    private static final class Segment {
+
+        final long baseOffset;
+        final Path path;
+        final MappedByteBuffer buffer;
+        /**
+         * 已写入的字节数，只由持有 TransactionChangeLog 锁的线程修改
+         */
+        volatile int size;
+
+        Segment(long baseOffset, Path path, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * 把交易的写入分发给所有 {@link TransactionChangeListener}
+ * <p>
+ * 每次写入只注册一个事务同步，提交后依次调用各监听方；没有事务(例如合并提交的插入)时立即调用。
+ * 提交之后库里的修改已经生效，某个监听方失败只记录日志，不影响其余的监听方，也不让请求失败。
+ */
+@Slf4j
+@Component
+public class TransactionChangePublisher {
+
+    private final List<TransactionChangeListener> listeners;
+
+    public TransactionChangePublisher(List<TransactionChangeListener> listeners) {
+        this.listeners = List.copyOf(listeners);
+    }
+
+    public void created(List<Transaction> created) {
+        publish(TransactionChange.created(created));
+    }
+
+    /**
+     * @param previous 更新前的交易，账户没有变化时可以为空
+     */
+    public void updated(List<Transaction> updated, List<Transaction> previous) {
+        publish(TransactionChange.updated(updated, previous));
+    }
+
+    /**
+     * @param removed 删除前的交易
+     */
+    public void deleted(List<Transaction> removed) {
+        publish(TransactionChange.deleted(removed));
+    }
+
+    private void publish(TransactionChange change) {
+        if (change.transactions().isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed(change);
+            return;
+        }
+        listeners.forEach(listener -> listener.onWritten(change));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed(change);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) listeners.forEach(listener -> listener.onRolledBack(change));
+            }
+        });
+    }
+
+    private void committed(TransactionChange change) {
+        for (TransactionChangeListener listener : listeners) {
+            try {
+                listener.onCommitted(change);
+            } catch (RuntimeException e) {
+                log.error("{} failed to apply committed {} of {} transactions",
+                        listener.getClass().getSimpleName(), change.type(), change.transactions().size(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.TransactionDao;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 交易总数计数器
+ * <p>
+ * 启动时用 COUNT(*) 初始化，之后由创建/删除(包括批量和组提交路径)增减，分页查询不再每次扫表。
+ * 事务内的增减先记在事务上，提交后才生效，回滚则丢弃；同一事务内读取时会加上自己未提交的增减。
+ * 定期和 COUNT(*) 对账，连续两次发现同样的偏差才修正，避免把正在提交的写入误判为偏差。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionCounter implements SmartInitializingSingleton {
+
+    private final TransactionDao transactionDao;
+    private final LongAdder count = new LongAdder();
+    private long lastDrift;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        count.add(transactionDao.countTotal());
+        log.info("transaction counter seeded with {}", count.sum());
+    }
+
+    /**
+     * 当前交易总数，包含当前事务内未提交的增减
+     */
+    public long get() {
+        long committed = count.sum();
+        PendingDelta pending = (PendingDelta) TransactionSynchronizationManager.getResource(this);
+        return pending == null ? committed : committed + pending.delta;
+    }
+
+    /**
+     * 增减交易总数，有事务时在提交后生效
+     */
+    public void add(long delta) {
+        if (delta == 0) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            count.add(delta);
+            return;
+        }
+        PendingDelta pending = (PendingDelta) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            PendingDelta created = new PendingDelta();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TransactionCounter.this);
+                    if (status == STATUS_COMMITTED) count.add(created.delta);
+                }
+            });
+            pending = created;
+        }
+        pending.delta += delta;
+    }
+
+    @Scheduled(fixedDelayString = "${mybank.page.count-reconcile-ms:60000}",
+            initialDelayString = "${mybank.page.count-reconcile-ms:60000}")
+    public synchronized void reconcile() {
+        long before = count.sum();
+        long actual = transactionDao.countTotal();
+        long after = count.sum();
+        if (before != after) {
+            // 对账期间有写入，本轮结果不可信
+            lastDrift = 0;
+            return;
+        }
+        long drift = actual - before;
+        if (drift != 0 && drift == lastDrift) {
+            log.warn("transaction counter drifted by {}, reset to {}", drift, actual);
+            count.add(drift);
+            lastDrift = 0;
+        } else {
+            lastDrift = drift;
+        }
+    }
+
+    private static class PendingDelta {
+        private long delta;
+    }
+}
@@ -0,0 +1,157 @@
+package com.mybank.transaction.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 全量交易导出
+ * <p>
+ * 通过 MyBatis Cursor 按id顺序逐行读取，边读边写到输出流，内存占用只有一个批次(fetchSize)和写缓冲，与表的大小无关。
+ * 整个导出在一个只读事务里，导出期间占用一个数据库连接；客户端断开时写出失败，游标关闭，事务回滚。
+ */
+@Slf4j
+@Service
+public class TransactionExporter {
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    private static final String CSV_HEADER =
+            "id,account_number,transaction_type,amount,currency,description,category,status,created_at,updated_at";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final TransactionDao transactionDao;
+    private final TransactionTemplate readOnlyTemplate;
+    private final ObjectWriter jsonWriter;
+
+    public TransactionExporter(TransactionDao transactionDao, PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper) {
+        this.transactionDao = transactionDao;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        // 逐行写入时不要每行都 flush，由缓冲区写满时再发送
+        this.jsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * 导出全部交易，format 为 ndjson 或 csv，idOnly 为true时只导出id，返回导出的行数
+     */
+    public long export(String format, boolean idOnly, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long start = System.currentTimeMillis();
+        long rows;
+        try {
+            rows = readOnlyTemplate.execute(status -> {
+                try {
+                    return idOnly ? writeIds(format, writer) : writeTransactions(format, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("exported {} transactions as {}{} in {}ms", rows, format, idOnly ? " (ids)" : "",
+                System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private long writeTransactions(String format, Writer writer) throws IOException {
+        long rows = 0;
+        try (Cursor<Transaction> cursor = transactionDao.scanAll()) {
+            if (CSV.equals(format)) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                for (Transaction t : cursor) {
+                    writeCsv(t, writer);
+                    ++rows;
+                }
+            } else {
+                JsonGenerator generator = jsonWriter.createGenerator(writer);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                for (Transaction t : cursor) {
+                    jsonWriter.writeValue(generator, t);
+                    generator.writeRaw('\n');
+                    ++rows;
+                }
+                generator.close();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * id 超过 JavaScript 的安全整数范围，ndjson 里和 /all 一样按字符串输出
+     */
+    private long writeIds(String format, Writer writer) throws IOException {
+        boolean csv = CSV.equals(format);
+        if (csv) writer.write("id\n");
+        long rows = 0;
+        try (Cursor<Long> cursor = transactionDao.scanIds()) {
+            for (Long id : cursor) {
+                if (csv) {
+                    writer.write(Long.toString(id));
+                } else {
+                    writer.write('"');
+                    writer.write(Long.toString(id));
+                    writer.write('"');
+                }
+                writer.write('\n');
+                ++rows;
+            }
+        }
+        return rows;
+    }
+
+    private static void writeCsv(Transaction t, Writer writer) throws IOException {
+        writer.write(Long.toString(t.getId()));
+        writeCsvField(t.getAccountNumber(), writer);
+        writeCsvField(t.getTransactionType(), writer);
+        writeCsvField(t.getAmount() == null ? null : t.getAmount().toPlainString(), writer);
+        writeCsvField(t.getCurrency(), writer);
+        writeCsvField(t.getDescription(), writer);
+        writeCsvField(t.getCategory(), writer);
+        writeCsvField(t.getStatus(), writer);
+        writeCsvField(t.getCreatedAt() == null ? null : t.getCreatedAt().toString(), writer);
+        writeCsvField(t.getUpdatedAt() == null ? null : t.getUpdatedAt().toString(), writer);
+        writer.write('\n');
+    }
+
+    /**
+     * RFC 4180，包含逗号、引号或换行的值用双引号括起来，引号写两次
+     */
+    private static void writeCsvField(String value, Writer writer) throws IOException {
+        writer.write(',');
+        if (value == null) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; ++i) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,557 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 最近交易的堆外列式存储(热数据层)
+ * <p>
+ * 开启后保存id最大的 capacity 笔交易，每列一块堆外内存：id、金额(按分存的 long)、创建和更新时间(按 UTC 换算的纪元微秒)、版本各是一个 long 列，
+ * 币种、类型、分类、状态按字典编码成 int，账户和描述以 UTF-8 存在一块字符串区里，行上只记偏移和长度；tid 就是id，不单独存。
+ * 每行 72 字节加字符串，堆上只有字典、存活位图和每块的存活计数，百万行不再是几百万个对象，GC 不用扫描它们。
+ * <p>
+ * 行按id升序排列，id不小于 floor 的交易全在这里：游标分页的游标不小于 floor - 1、按页码分页的偏移不小于 floor 之前的行数时，
+ * 整页直接从这里解码返回，按id查询命中时也直接返回，其余情况仍走缓存和数据库。
+ * 写满时丢掉最旧的 1/8 并整理删除留下的空位，floor 随之上移。
+ * <p>
+ * 启动时从交易表加载最近的 7/8 * capacity 笔，之后在事务提交后同步本实例的写入。其他实例的写入不会进来，多副本部署时不要开启。
+ * afterCommit 的执行顺序不一定是提交顺序，版本不高于已存版本的写入直接忽略；删除的id(id不会重复使用)记在堆上，
+ * 之后迟到的写入不会让它复活，id移到 floor 之下时清掉。
+ */
+@Slf4j
+@Component
+@Order(3)
+public class TransactionHotStore implements SmartInitializingSingleton, TransactionChangeListener {
+
+    private final TransactionDao transactionDao;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Value("${mybank.hot-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mybank.hot-store.capacity:1000000}")
+    private int capacity;
+
+    /**
+     * 由 lock 保护，未开启时为 null
+     */
+    private Columns columns;
+
+    public TransactionHotStore(TransactionDao transactionDao, PlatformTransactionManager transactionManager) {
+        this.transactionDao = transactionDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) return;
+        if (capacity < 1024 || capacity > Columns.MAX_CAPACITY) {
+            throw new IllegalArgumentException("mybank.hot-store.capacity must be between 1024 and " + Columns.MAX_CAPACITY);
+        }
+        long start = System.currentTimeMillis();
+        Columns loaded = new Columns(capacity);
+        transactionTemplate.executeWithoutResult(status -> {
+            Long floor = transactionDao.selectLatestId(capacity - (capacity >>> 3) - 1);
+            loaded.floor = floor == null ? Long.MIN_VALUE : floor;
+            try (Cursor<Transaction> cursor = transactionDao.scanFrom(loaded.floor)) {
+                cursor.forEach(loaded::upsert);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            loaded.belowCount = transactionDao.countTotal() - loaded.liveCount;
+        });
+        lock.writeLock().lock();
+        try {
+            columns = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Gauge.builder("mybank.hotstore.rows", this, TransactionHotStore::size)
+                .description("transactions held in the off-heap hot store")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("mybank.hotstore.offheap", this, TransactionHotStore::offHeapBytes)
+                .description("direct memory allocated by the hot store")
+                .baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+        log.info("transaction hot store loaded: {} transactions, {} older ones, {} off-heap bytes in {}ms",
+                loaded.liveCount, loaded.belowCount, loaded.offHeapBytes(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 按id查询，不在这里时返回 null
+     */
+    public Transaction get(long id) {
+        if (!enabled) return null;
+        lock.readLock().lock();
+        try {
+            return columns.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按id升序从第 offset 行起的 limit 行；这些行不全在这里时返回 null
+     */
+    public List<Transaction> getPage(long offset, int limit) {
+        if (!enabled) return null;
+        lock.readLock().lock();
+        try {
+            return columns.getPage(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * id大于 afterId 的前 limit 行；这些行不全在这里时返回 null
+     */
+    public List<Transaction> getAfter(long afterId, int limit) {
+        if (!enabled) return null;
+        lock.readLock().lock();
+        try {
+            return columns.getAfter(afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 创建和更新传入的交易需要带全部字段、创建时间和新的版本
+     */
+    @Override
+    public void onCommitted(TransactionChange change) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            for (Transaction t : change.transactions()) {
+                switch (change.type()) {
+                    case CREATED -> columns.insert(t);
+                    case UPDATED -> columns.upsert(t);
+                    case DELETED -> columns.remove(t.getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        if (!enabled) return 0;
+        lock.readLock().lock();
+        try {
+            return columns.liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long offHeapBytes() {
+        if (!enabled) return 0L;
+        lock.readLock().lock();
+        try {
+            return columns.offHeapBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 列数据，只在持有 lock 时访问
+     */
+    static final class Columns {
+
+        static final int MAX_CAPACITY = 1 << 26;
+
+        private static final int BLOCK_SHIFT = 10;
+        private static final long NULL_VALUE = Long.MIN_VALUE;
+        private static final int CURRENCY = 0, TYPE = 1, CATEGORY = 2, STATUS = 3;
+        private static final int ACCOUNT = 0, DESCRIPTION = 2;
+
+        private final int capacity;
+        private final LongBuffer ids;
+        private final LongBuffer amounts;
+        private final LongBuffer createdAt;
+        private final LongBuffer updatedAt;
+        private final LongBuffer versions;
+        /**
+         * 每行4个字典编码：币种、类型、分类、状态，0 表示 null
+         */
+        private final IntBuffer codes;
+        /**
+         * 每行账户和描述在字符串区的偏移和长度，长度 -1 表示 null
+         */
+        private final IntBuffer strings;
+        private final Dictionary[] dictionaries = {new Dictionary(), new Dictionary(), new Dictionary(), new Dictionary()};
+        private final BitSet live;
+        /**
+         * 删除过的不小于 floor 的id
+         */
+        private final Set<Long> removed = new HashSet<>();
+        /**
+         * 每 1024 行一块，块内的存活行数，用来按页码定位
+         */
+        private final int[] blockLive;
+        private ByteBuffer stringArea;
+        /**
+         * 整理字符串区时拷到这里再和 stringArea 交换，第一次整理时分配，扩大时丢掉
+         */
+        private ByteBuffer spareArea;
+        private int stringEnd;
+        /**
+         * 存活行的字符串字节数，stringEnd 比它多出来的是更新和删除留下的
+         */
+        private long liveStringBytes;
+        /**
+         * 已占用的行数，包括已删除的
+         */
+        private int size;
+        private int liveCount;
+        /**
+         * id不小于 floor 的交易都在这里
+         */
+        private long floor = Long.MIN_VALUE;
+        /**
+         * id小于 floor 的交易笔数
+         */
+        private long belowCount;
+
+        Columns(int capacity) {
+            this.capacity = capacity;
+            this.ids = longs(capacity);
+            this.amounts = longs(capacity);
+            this.createdAt = longs(capacity);
+            this.updatedAt = longs(capacity);
+            this.versions = longs(capacity);
+            this.codes = ints(capacity * 4);
+            this.strings = ints(capacity * 4);
+            this.live = new BitSet(capacity);
+            this.blockLive = new int[(capacity + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT];
+            this.stringArea = ByteBuffer.allocateDirect((int) Math.min(capacity * 32L, 1 << 30));
+        }
+
+        /**
+         * 新建的交易，比 floor 小时只计数
+         */
+        void insert(Transaction t) {
+            if (!upsert(t)) ++belowCount;
+        }
+
+        /**
+         * 写入或替换一笔交易，id比 floor 小时不保存，返回 false；已删除或版本不比已存的新时忽略
+         */
+        boolean upsert(Transaction t) {
+            long id = t.getId();
+            if (removed.contains(id)) return true;
+            int pos = find(id);
+            if (pos >= 0 && live.get(pos) && (t.getVersion() == null ? NULL_VALUE : t.getVersion()) <= versions.get(pos)) {
+                return true;
+            }
+            if (pos < 0) {
+                if (id < floor) return false;
+                if (size == capacity) {
+                    compact();
+                    if (id < floor) return false;
+                    pos = find(id);
+                }
+                pos = -pos - 1;
+                // 雪花id递增，通常追加在末尾；id比已有的小(如时钟回拨)时后面的行整体后移
+                if (pos < size) shift(pos);
+                ++size;
+                ids.put(pos, id);
+            }
+            write(pos, t);
+            if (!live.get(pos)) {
+                live.set(pos);
+                ++blockLive[pos >> BLOCK_SHIFT];
+                ++liveCount;
+            }
+            return true;
+        }
+
+        void remove(long id) {
+            if (id >= floor) removed.add(id);
+            int pos = find(id);
+            if (pos < 0) {
+                if (id < floor) --belowCount;
+                return;
+            }
+            if (!live.get(pos)) return;
+            releaseStrings(pos);
+            live.clear(pos);
+            --blockLive[pos >> BLOCK_SHIFT];
+            --liveCount;
+        }
+
+        Transaction get(long id) {
+            int pos = find(id);
+            return pos >= 0 && live.get(pos) ? decode(pos) : null;
+        }
+
+        List<Transaction> getPage(long offset, int limit) {
+            if (offset < belowCount) return null;
+            long k = offset - belowCount;
+            if (k >= liveCount) return new ArrayList<>();
+            return read(positionOf((int) k), limit);
+        }
+
+        List<Transaction> getAfter(long afterId, int limit) {
+            // floor 之前没有交易时游标从哪里开始都行
+            if (belowCount > 0 && afterId < floor - 1) return null;
+            if (afterId == Long.MAX_VALUE) return new ArrayList<>();
+            int pos = find(afterId + 1);
+            return read(pos >= 0 ? pos : -pos - 1, limit);
+        }
+
+        long offHeapBytes() {
+            return (long) capacity * (5 * Long.BYTES + 8 * Integer.BYTES) + stringArea.capacity()
+                    + (spareArea == null ? 0 : spareArea.capacity());
+        }
+
+        private List<Transaction> read(int start, int limit) {
+            List<Transaction> rows = new ArrayList<>(limit);
+            for (int pos = live.nextSetBit(start); pos >= 0 && rows.size() < limit; pos = live.nextSetBit(pos + 1)) {
+                rows.add(decode(pos));
+            }
+            return rows;
+        }
+
+        /**
+         * 第 k 个(从0开始)存活行的位置，先按块计数跳过，再在块内找
+         */
+        private int positionOf(int k) {
+            int b = 0;
+            while (k >= blockLive[b]) k -= blockLive[b++];
+            int pos = live.nextSetBit(b << BLOCK_SHIFT);
+            while (k-- > 0) pos = live.nextSetBit(pos + 1);
+            return pos;
+        }
+
+        /**
+         * 按id二分查找，找不到时返回 -(插入位置) - 1
+         */
+        private int find(long id) {
+            int lo = 0, hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long v = ids.get(mid);
+                if (v < id) lo = mid + 1;
+                else if (v > id) hi = mid - 1;
+                else return mid;
+            }
+            return -lo - 1;
+        }
+
+        private void write(int pos, Transaction t) {
+            amounts.put(pos, t.getAmount() == null ? NULL_VALUE
+                    : t.getAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+            createdAt.put(pos, TransactionRecords.micros(t.getCreatedAt()));
+            updatedAt.put(pos, TransactionRecords.micros(t.getUpdatedAt()));
+            versions.put(pos, t.getVersion() == null ? NULL_VALUE : t.getVersion());
+            codes.put(pos * 4 + CURRENCY, dictionaries[CURRENCY].encode(t.getCurrency()));
+            codes.put(pos * 4 + TYPE, dictionaries[TYPE].encode(t.getTransactionType()));
+            codes.put(pos * 4 + CATEGORY, dictionaries[CATEGORY].encode(t.getCategory()));
+            codes.put(pos * 4 + STATUS, dictionaries[STATUS].encode(t.getStatus()));
+            if (live.get(pos)) releaseStrings(pos);
+            // 先置空，写字符串时整理字符串区不会再拷贝这一行的旧值
+            strings.put(pos * 4 + ACCOUNT + 1, -1);
+            strings.put(pos * 4 + DESCRIPTION + 1, -1);
+            putString(pos * 4 + ACCOUNT, t.getAccountNumber());
+            putString(pos * 4 + DESCRIPTION, t.getDescription());
+        }
+
+        private Transaction decode(int pos) {
+            long id = ids.get(pos);
+            long amount = amounts.get(pos);
+            long version = versions.get(pos);
+            return Transaction.builder()
+                    .id(id)
+                    .tid(String.valueOf(id))
+                    .accountNumber(getString(pos * 4 + ACCOUNT))
+                    .transactionType(dictionaries[TYPE].decode(codes.get(pos * 4 + TYPE)))
+                    .amount(amount == NULL_VALUE ? null : BigDecimal.valueOf(amount, 2))
+                    .currency(dictionaries[CURRENCY].decode(codes.get(pos * 4 + CURRENCY)))
+                    .description(getString(pos * 4 + DESCRIPTION))
+                    .category(dictionaries[CATEGORY].decode(codes.get(pos * 4 + CATEGORY)))
+                    .status(dictionaries[STATUS].decode(codes.get(pos * 4 + STATUS)))
+                    .createdAt(TransactionRecords.time(createdAt.get(pos)))
+                    .updatedAt(TransactionRecords.time(updatedAt.get(pos)))
+                    .version(version == NULL_VALUE ? null : version)
+                    .build();
+        }
+
+        private void putString(int ref, String value) {
+            if (value == null) return;
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (stringEnd + (long) bytes.length > stringArea.capacity()) compactStrings(bytes.length);
+            stringArea.put(stringEnd, bytes);
+            strings.put(ref, stringEnd);
+            strings.put(ref + 1, bytes.length);
+            stringEnd += bytes.length;
+            liveStringBytes += bytes.length;
+        }
+
+        private String getString(int ref) {
+            int length = strings.get(ref + 1);
+            if (length < 0) return null;
+            byte[] bytes = new byte[length];
+            stringArea.get(strings.get(ref), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void releaseStrings(int pos) {
+            liveStringBytes -= Math.max(0, strings.get(pos * 4 + ACCOUNT + 1)) + Math.max(0, strings.get(pos * 4 + DESCRIPTION + 1));
+        }
+
+        /**
+         * 只把存活行的字符串拷到备用区再交换，两块轮流使用，写满时不用每次重新分配堆外内存；
+         * 放不下 extra 字节时扩大一倍，这时才分配新的，旧的两块随 ByteBuffer 被回收时释放
+         */
+        private void compactStrings(int extra) {
+            long needed = liveStringBytes + extra;
+            long bytes = stringArea.capacity();
+            while (bytes < needed * 2 && bytes < Integer.MAX_VALUE) bytes *= 2;
+            bytes = Math.min(bytes, Integer.MAX_VALUE - 8);
+            if (needed > bytes) throw new IllegalStateException("hot store string area exceeds 2GB");
+            ByteBuffer area = spareArea != null && spareArea.capacity() == bytes ? spareArea : ByteBuffer.allocateDirect((int) bytes);
+            int end = 0;
+            for (int pos = live.nextSetBit(0); pos >= 0; pos = live.nextSetBit(pos + 1)) {
+                for (int ref = pos * 4; ref < pos * 4 + 4; ref += 2) {
+                    int length = strings.get(ref + 1);
+                    if (length <= 0) continue;
+                    area.put(end, stringArea, strings.get(ref), length);
+                    strings.put(ref, end);
+                    end += length;
+                }
+            }
+            spareArea = stringArea.capacity() == bytes ? stringArea : null;
+            stringArea = area;
+            stringEnd = end;
+            liveStringBytes = end;
+        }
+
+        /**
+         * 写满时去掉删除留下的空位，存活行超过 7/8 时丢掉最旧的，floor 移到丢掉的最大id之后
+         */
+        private void compact() {
+            int drop = Math.max(0, liveCount - (capacity - (capacity >>> 3)));
+            int w = 0;
+            for (int r = live.nextSetBit(0); r >= 0; r = live.nextSetBit(r + 1)) {
+                if (drop > 0) {
+                    floor = ids.get(r) + 1;
+                    releaseStrings(r);
+                    ++belowCount;
+                    --drop;
+                    continue;
+                }
+                if (r != w) move(r, w);
+                ++w;
+            }
+            size = w;
+            liveCount = w;
+            live.clear();
+            live.set(0, w);
+            removed.removeIf(id -> id < floor);
+            recount(0);
+            compactStrings(0);
+        }
+
+        private void shift(int pos) {
+            for (int i = size; i > pos; --i) {
+                move(i - 1, i);
+                live.set(i, live.get(i - 1));
+            }
+            live.clear(pos);
+            recount(pos >> BLOCK_SHIFT);
+        }
+
+        private void move(int from, int to) {
+            ids.put(to, ids.get(from));
+            amounts.put(to, amounts.get(from));
+            createdAt.put(to, createdAt.get(from));
+            updatedAt.put(to, updatedAt.get(from));
+            versions.put(to, versions.get(from));
+            for (int i = 0; i < 4; ++i) {
+                codes.put(to * 4 + i, codes.get(from * 4 + i));
+                strings.put(to * 4 + i, strings.get(from * 4 + i));
+            }
+        }
+
+        private void recount(int fromBlock) {
+            for (int b = fromBlock; b < blockLive.length; ++b) {
+                int count = 0;
+                int end = Math.min(capacity, (b + 1) << BLOCK_SHIFT);
+                for (int pos = live.nextSetBit(b << BLOCK_SHIFT); pos >= 0 && pos < end; pos = live.nextSetBit(pos + 1)) {
+                    ++count;
+                }
+                blockLive[b] = count;
+            }
+        }
+
+        private static LongBuffer longs(int n) {
+            return ByteBuffer.allocateDirect(n * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        private static IntBuffer ints(int n) {
+            return ByteBuffer.allocateDirect(n * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    /**
+     * 取值很少的列的字典，编码 0 表示 null
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Dictionary() {
+            values.add(null);
+        }
+
+        int encode(String value) {
+            if (value == null) return 0;
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.JournalUnavailableException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 交易的持久化日志，让内存库重启后恢复数据
+ * <p>
+ * 开启后每笔创建、更新、删除在事务提交后按 {@link TransactionRecords} 的格式追加到 mybank.journal.dir 下的日志文件，
+ * 刷盘后请求才返回；同时提交的请求一起刷盘，一个线程 fsync 时其他线程继续写入，下一次 fsync 覆盖它们全部。
+ * 每隔 snapshot-interval-ms 换一个新的日志文件，再把 t_r_transaction 整表写成快照，快照完成后删除更早的日志和快照。
+ * <p>
+ * 记录在各自的 afterCommit 里追加，顺序不一定是提交顺序(等行锁的事务可能先于前一个事务写日志)，所以每条记录都带版本，
+ * 删除算作删除前的版本 + 1；快照里没有被删除的行，换文件时把上一个文件里的删除记录再写到新文件开头，迟到的旧记录不会让它们复活。
+ * 启动时表为空就先读出快照之后的日志，按id只保留版本最高的记录，再顺序读快照、
+ * 跳过日志里有同样或更高版本的id，和日志里的最终状态一起由 replay-threads 个线程按 replay-batch-size 行一批并行插入；
+ * 这在应用上下文刷新期间完成，恢复完成前应用不会开始监听端口，余额、日汇总、搜索索引等随后照常从交易表重建。
+ * 日志末尾写了一半的记录丢弃。幂等键不记录，重启后同一个 Idempotency-Key 的重试会新建交易。
+ * <p>
+ * 表不为空(h2file 或 postgres)时不恢复，直接做一次快照，之后的日志以库里的数据为准。
+ * <p>
+ * 追加失败时库里已经提交，请求照常返回，只记录日志；日志标记为不可用，健康检查变为 DOWN(readinessProbe 把实例摘掉)，
+ * 之后的写入直接拒绝，每隔 RECOVERY_DELAY_MILLIS 重试一次快照：快照包含了没写进日志的修改，成功且期间没有新的失败时恢复。
+ * 恢复在 schema.sql 执行之后进行(@DependsOnDatabaseInitialization)。
+ */
+@Slf4j
+@Component
+@Order(5)
+@RequiredArgsConstructor
+@DependsOnDatabaseInitialization
+public class TransactionJournal implements TransactionChangeListener {
+
+    private static final String JOURNAL = "journal-";
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final long RECOVERY_DELAY_MILLIS = 1000;
+
+    private final TransactionDao transactionDao;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${mybank.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mybank.journal.dir:./data/journal}")
+    private String dir;
+
+    @Value("${mybank.journal.snapshot-interval-ms:600000}")
+    private long snapshotIntervalMillis;
+
+    @Value("${mybank.journal.replay-threads:4}")
+    private int replayThreads;
+
+    @Value("${mybank.journal.replay-batch-size:1000}")
+    private int replayBatchSize;
+
+    private Path directory;
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * 快照之间互斥
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * 同一时间只有一个线程 fsync，先于 this 获取
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * 以下字段由 this 保护：当前日志文件、它的序号，所有日志累计写入的字节数和换文件时的累计字节数，
+     * 以及上次换文件之后删除的id和删除算作的版本
+     */
+    private FileChannel journal;
+    private long generation;
+    private long appended;
+    private long appendedAtRoll;
+    private final Map<Long, Long> deletedSinceRoll = new HashMap<>();
+
+    /**
+     * 已经刷盘的累计字节数
+     */
+    private volatile long synced;
+
+    /**
+     * 最近一次追加失败的原因，恢复后为 null；failures 是累计的失败次数，用来判断快照期间有没有新的失败。
+     * 两者的修改由 failureLock 保护
+     */
+    private final Object failureLock = new Object();
+    private volatile IOException failure;
+    private long failures;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) return;
+        if (replayThreads < 1 || replayBatchSize < 1 || snapshotIntervalMillis < 0) {
+            throw new IllegalArgumentException("invalid mybank.journal settings");
+        }
+        directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TMP_SUFFIX)) {
+            for (Path file : files) Files.delete(file);
+        }
+        NavigableMap<Long, Path> snapshots = list(SNAPSHOT, SNAPSHOT_SUFFIX);
+        NavigableMap<Long, Path> journals = list(JOURNAL, JOURNAL_SUFFIX);
+        long base = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        long last = journals.isEmpty() ? base : Math.max(base, journals.lastKey());
+
+        if (transactionDao.countTotal() > 0) {
+            log.warn("t_r_transaction isn't empty, the journal in {} is not replayed, a new snapshot is taken instead",
+                    directory.toAbsolutePath());
+            openJournal(last + 1, 0);
+            snapshot();
+        } else {
+            long start = System.currentTimeMillis();
+            long[] tailEnd = {0};
+            long rows = replay(snapshots.get(base), journals.tailMap(base, true), tailEnd);
+            openJournal(last, tailEnd[0]);
+            log.info("transaction journal replayed from {}: {} rows in {} ms",
+                    directory.toAbsolutePath(), rows, System.currentTimeMillis() - start);
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (snapshotIntervalMillis > 0) {
+            snapshotter.scheduleWithFixedDelay(() -> {
+                try {
+                    if (hasAppendedSinceRoll()) snapshot();
+                } catch (RuntimeException e) {
+                    log.error("journal snapshot failed", e);
+                }
+            }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (!enabled) return;
+        snapshotter.shutdown();
+        snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        synchronized (syncLock) {
+            synchronized (this) {
+                journal.force(false);
+                journal.close();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 最近一次追加失败的原因，日志可用时为 null
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * 日志不可用时拒绝写入，库里的修改不会再有记录缺失
+     */
+    public void checkWritable() {
+        IOException e = failure;
+        if (enabled && e != null) {
+            throw new JournalUnavailableException("transaction journal is unavailable, writes are rejected until it recovers: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建和更新传入的交易需要带全部字段、创建时间和新的版本，删除传入删除前的交易，需要带id和版本
+     */
+    @Override
+    public void onCommitted(TransactionChange change) {
+        if (!enabled) return;
+        if (change.type() == TransactionChange.Type.DELETED) {
+            synchronized (this) {
+                change.transactions().forEach(t -> deletedSinceRoll.put(t.getId(), t.getVersion() + 1));
+            }
+        }
+        append(TransactionRecords.encode(change, System.currentTimeMillis()));
+    }
+
+    /**
+     * 换到新的日志文件，把整表写成该文件对应的快照，返回快照的行数；成功后删除更早的日志和快照
+     */
+    public long snapshot() {
+        synchronized (snapshotLock) {
+            long start = System.currentTimeMillis();
+            long next = roll();
+            Path target = directory.resolve(name(SNAPSHOT, next, SNAPSHOT_SUFFIX));
+            Path tmp = directory.resolve(target.getFileName() + TMP_SUFFIX);
+            try {
+                Long rows = transactionTemplate.execute(status -> writeSnapshot(tmp));
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                forceDirectory();
+                for (Path file : list(SNAPSHOT, SNAPSHOT_SUFFIX).headMap(next, false).values()) Files.delete(file);
+                for (Path file : list(JOURNAL, JOURNAL_SUFFIX).headMap(next, false).values()) Files.delete(file);
+                log.info("transaction journal snapshot {} written: {} rows in {} ms",
+                        target.getFileName(), rows, System.currentTimeMillis() - start);
+                return Objects.requireNonNull(rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void append(List<byte[]> records) {
+        ByteBuffer buffer = concat(records);
+        int bytes = buffer.limit();
+        long end;
+        try {
+            synchronized (this) {
+                while (buffer.hasRemaining()) journal.write(buffer);
+                appended += bytes;
+                end = appended;
+            }
+            sync(end);
+        } catch (IOException e) {
+            // 库里已经提交，只是日志没有写成功；不让请求失败，等快照把这些修改补上
+            failed(e);
+        }
+    }
+
+    private void failed(IOException e) {
+        log.error("transaction journal append failed, writes are rejected until a snapshot succeeds", e);
+        synchronized (failureLock) {
+            ++failures;
+            if (failure == null) snapshotter.schedule(this::recover, RECOVERY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            failure = e;
+        }
+    }
+
+    /**
+     * 重新做快照，成功且期间没有新的失败时恢复，否则稍后再试
+     */
+    private void recover() {
+        long before;
+        synchronized (failureLock) {
+            before = failures;
+        }
+        try {
+            snapshot();
+            synchronized (failureLock) {
+                if (failures == before) {
+                    failure = null;
+                    log.info("transaction journal recovered");
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("transaction journal recovery snapshot failed", e);
+        }
+        snapshotter.schedule(this::recover, RECOVERY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static ByteBuffer concat(List<byte[]> records) {
+        ByteBuffer buffer = ByteBuffer.allocate(records.stream().mapToInt(record -> record.length).sum());
+        records.forEach(buffer::put);
+        return buffer.flip();
+    }
+
+    /**
+     * 刷盘到累计字节数 end：已经有其他线程刷过就直接返回，否则一次 fsync 覆盖此刻已写入的所有记录
+     */
+    private void sync(long end) throws IOException {
+        if (synced >= end) return;
+        synchronized (syncLock) {
+            if (synced >= end) return;
+            FileChannel channel;
+            long target;
+            synchronized (this) {
+                channel = journal;
+                target = appended;
+            }
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    private synchronized boolean hasAppendedSinceRoll() {
+        return appended > appendedAtRoll;
+    }
+
+    /**
+     * 刷盘并关闭当前日志文件，之后的记录写到下一个序号的文件，返回新的序号；新文件先写入上一个文件里的删除
+     */
+    private long roll() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                try {
+                    try {
+                        journal.force(false);
+                    } catch (IOException e) {
+                        // 追加已经失败过时旧文件可能刷不了盘，照样换文件，接下来的快照会补上它缺的记录
+                        if (failure == null) throw e;
+                    }
+                    journal.close();
+                    openJournal(generation + 1, 0);
+                    if (!deletedSinceRoll.isEmpty()) {
+                        long now = System.currentTimeMillis();
+                        List<byte[]> records = new ArrayList<>(deletedSinceRoll.size());
+                        deletedSinceRoll.forEach((id, version) -> records.add(TransactionRecords.encodeDeleted(id, version, now)));
+                        deletedSinceRoll.clear();
+                        ByteBuffer buffer = concat(records);
+                        while (buffer.hasRemaining()) journal.write(buffer);
+                        appended += buffer.limit();
+                        journal.force(false);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                synced = appended;
+                appendedAtRoll = appended;
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * 打开序号为 gen 的日志文件，截掉 validBytes 之后的内容，从那里继续追加
+     */
+    private synchronized void openJournal(long gen, long validBytes) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(name(JOURNAL, gen, JOURNAL_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validBytes) {
+            log.warn("transaction journal {}: {} bytes of an incomplete record at the end dropped", gen, channel.size() - validBytes);
+            channel.truncate(validBytes);
+            channel.force(true);
+        }
+        channel.position(validBytes);
+        journal = channel;
+        generation = gen;
+    }
+
+    private long writeSnapshot(Path tmp) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16);
+             Cursor<Transaction> cursor = transactionDao.scanAll()) {
+            long now = System.currentTimeMillis();
+            long rows = 0;
+            for (Transaction t : cursor) {
+                out.write(TransactionRecords.encode(TransactionRecords.CREATED, t.getId(), t, now));
+                ++rows;
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 读出快照之后的日志里每个id版本最高的记录，再和快照一起插入空表，返回插入的行数；tailEnd[0] 是最后一个日志文件里完整记录的长度
+     */
+    private long replay(Path snapshot, NavigableMap<Long, Path> journals, long[] tailEnd) throws IOException {
+        // transaction 为 null 表示最终被删除
+        Map<Long, Record> changed = new HashMap<>();
+        for (Map.Entry<Long, Path> entry : journals.entrySet()) {
+            long valid = read(entry.getValue(), r -> changed.merge(r.id(), r, Record::newer));
+            if (entry.getKey().equals(journals.lastKey())) {
+                tailEnd[0] = valid;
+            } else if (valid < Files.size(entry.getValue())) {
+                throw new IllegalStateException("corrupt transaction journal " + entry.getValue() + " at byte " + valid);
+            }
+        }
+
+        ExecutorService inserters = Executors.newFixedThreadPool(replayThreads, r -> new Thread(r, "journal-replay"));
+        // 最多积压 replay-threads 个批次，读快照的速度不会超过插入
+        Semaphore slots = new Semaphore(replayThreads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong inserted = new AtomicLong();
+        Consumer<List<Transaction>> insert = batch -> {
+            slots.acquireUninterruptibly();
+            inserters.execute(() -> {
+                try {
+                    if (failure.get() == null) inserted.addAndGet(transactionDao.restoreBatch(batch));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    slots.release();
+                }
+            });
+        };
+        try {
+            List<Transaction> batch = new ArrayList<>(replayBatchSize);
+            Consumer<Transaction> add = t -> {
+                batch.add(t);
+                if (batch.size() == replayBatchSize) {
+                    insert.accept(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            };
+            if (snapshot != null) {
+                long valid = read(snapshot, r -> {
+                    // 快照在换文件之后才读表，可能比新日志里迟到的记录还新
+                    Record journaled = changed.get(r.id());
+                    if (journaled == null || journaled.version() < r.version()) {
+                        changed.remove(r.id());
+                        add.accept(r.transaction());
+                    }
+                });
+                if (valid < Files.size(snapshot)) {
+                    throw new IllegalStateException("corrupt transaction snapshot " + snapshot + " at byte " + valid);
+                }
+            }
+            changed.values().stream().map(Record::transaction).filter(Objects::nonNull).forEach(add);
+            if (!batch.isEmpty()) insert.accept(batch);
+        } finally {
+            inserters.shutdown();
+            try {
+                inserters.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure.get() != null) throw new IllegalStateException("transaction journal replay failed", failure.get());
+        return inserted.get();
+    }
+
+    /**
+     * 顺序读出文件里的记录，遇到不完整或 CRC 不对的记录停止，返回之前完整记录的总长度
+     */
+    private static long read(Path file, Consumer<Record> consumer) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                int crc = in.readInt();
+                byte[] body = new byte[length];
+                in.readFully(body);
+                if (TransactionRecords.checksum(ByteBuffer.wrap(body)) != crc) break;
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                byte type = buffer.get();
+                long id = buffer.getLong();
+                buffer.getLong();
+                if (type == TransactionRecords.DELETED) {
+                    consumer.accept(new Record(id, version(TransactionRecords.readDeletedVersion(buffer)), null));
+                } else {
+                    Transaction t = TransactionRecords.readTransaction(id, buffer);
+                    consumer.accept(new Record(id, version(t.getVersion()), t));
+                }
+                valid += TransactionRecords.HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // 文件末尾
+        }
+        return valid;
+    }
+
+    private NavigableMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 让改名在目录上落盘，不支持打开目录的平台上忽略
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("can't fsync {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static String name(String prefix, long gen, String suffix) {
+        return String.format("%s%020d%s", prefix, gen, suffix);
+    }
+
+    private static long version(Long version) {
+        return version == null ? Long.MIN_VALUE : version;
+    }
+
+    /**
+     * 读出的一条记录，删除时 transaction 为 null
+     */
+    private record Record(long id, long version, Transaction transaction) {
+
+        /**
+         * 同一id的两条记录里版本高的，版本相同时取后写的
+         */
+        static Record newer(Record earlier, Record later) {
+            return later.version >= earlier.version ? later : earlier;
+        }
+    }
+}
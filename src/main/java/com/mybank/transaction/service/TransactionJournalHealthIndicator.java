@@ -0,0 +1,26 @@
+package com.mybank.transaction.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 持久化日志的健康状态：追加失败后到快照恢复之前为 DOWN，readinessProbe 据此把实例从服务里摘掉
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "mybank.journal.enabled", havingValue = "true")
+public class TransactionJournalHealthIndicator implements HealthIndicator {
+
+    private final TransactionJournal journal;
+
+    @Override
+    public Health health() {
+        IOException failure = journal.getFailure();
+        return failure == null ? Health.up().build() : Health.down(failure).build();
+    }
+}
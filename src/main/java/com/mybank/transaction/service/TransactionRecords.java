@@ -0,0 +1,188 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * 变更日志和持久化日志共用的二进制记录格式
+ * <p>
+ * 每条记录是长度(int)、内容的 CRC32C(int)和内容；内容是类型(byte)、交易id、提交时间(纪元毫秒)，创建和更新再带上交易的全部字段：
+ * 版本、按分存的金额、按 UTC 换算的纪元微秒的创建和更新时间，以及账户、类型、币种、描述、分类、状态(short 长度加 UTF-8，长度 -1 表示 null)；
+ * 删除只再带一个版本。
+ */
+final class TransactionRecords {
+
+    static final int HEADER_BYTES = 8;
+    static final byte CREATED = 1;
+    static final byte UPDATED = 2;
+    static final byte DELETED = 3;
+
+    private static final long NULL_VALUE = Long.MIN_VALUE;
+
+    private TransactionRecords() {
+    }
+
+    /**
+     * 一次变更的所有记录，删除的版本是删除前的版本 + 1
+     */
+    static List<byte[]> encode(TransactionChange change, long committedAt) {
+        return change.transactions().stream().map(t -> switch (change.type()) {
+            case CREATED -> encode(CREATED, t.getId(), t, committedAt);
+            case UPDATED -> encode(UPDATED, t.getId(), t, committedAt);
+            case DELETED -> encodeDeleted(t.getId(), t.getVersion() + 1, committedAt);
+        }).toList();
+    }
+
+    /**
+     * 创建或更新的完整记录，包括头部
+     */
+    static byte[] encode(byte type, long id, Transaction t, long committedAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeHead(out, type, id, committedAt);
+            out.writeLong(t.getVersion() == null ? NULL_VALUE : t.getVersion());
+            out.writeLong(t.getAmount() == null ? NULL_VALUE
+                    : t.getAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+            out.writeLong(micros(t.getCreatedAt()));
+            out.writeLong(micros(t.getUpdatedAt()));
+            writeString(out, t.getAccountNumber());
+            writeString(out, t.getTransactionType());
+            writeString(out, t.getCurrency());
+            writeString(out, t.getDescription());
+            writeString(out, t.getCategory());
+            writeString(out, t.getStatus());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return seal(bytes.toByteArray());
+    }
+
+    /**
+     * 删除的完整记录，version 是删除算作的版本(删除前的版本 + 1)，不知道时为 null
+     */
+    static byte[] encodeDeleted(long id, Long version, long committedAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(40);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeHead(out, DELETED, id, committedAt);
+            out.writeLong(version == null ? NULL_VALUE : version);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return seal(bytes.toByteArray());
+    }
+
+    private static void writeHead(DataOutputStream out, byte type, long id, long committedAt) throws IOException {
+        // 长度和 CRC 由 seal 填
+        out.writeLong(0L);
+        out.writeByte(type);
+        out.writeLong(id);
+        out.writeLong(committedAt);
+    }
+
+    private static byte[] seal(byte[] record) {
+        ByteBuffer.wrap(record)
+                .putInt(record.length - HEADER_BYTES)
+                .putInt(checksum(ByteBuffer.wrap(record, HEADER_BYTES, record.length - HEADER_BYTES)));
+        return record;
+    }
+
+    /**
+     * buffer 的 pos 处是一条完整且 CRC 正确的记录时返回内容长度，否则返回 -1
+     */
+    static int validLength(ByteBuffer buffer, int pos, int limit) {
+        if (pos > limit - HEADER_BYTES) return -1;
+        int length = buffer.getInt(pos);
+        if (length <= 0 || length > limit - pos - HEADER_BYTES) return -1;
+        return checksum(buffer.slice(pos + HEADER_BYTES, length)) == buffer.getInt(pos + 4) ? length : -1;
+    }
+
+    static int checksum(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 读取删除记录里类型、id、提交时间之后的版本
+     */
+    static Long readDeletedVersion(ByteBuffer body) {
+        long version = body.getLong();
+        return version == NULL_VALUE ? null : version;
+    }
+
+    /**
+     * 读取内容里类型、id、提交时间之后的交易字段
+     */
+    static Transaction readTransaction(long id, ByteBuffer body) {
+        long version = body.getLong();
+        long amount = body.getLong();
+        LocalDateTime createdAt = time(body.getLong());
+        LocalDateTime updatedAt = time(body.getLong());
+        String accountNumber = readString(body);
+        String transactionType = readString(body);
+        String currency = readString(body);
+        String description = readString(body);
+        String category = readString(body);
+        String status = readString(body);
+        return Transaction.builder()
+                .id(id)
+                .tid(String.valueOf(id))
+                .accountNumber(accountNumber)
+                .transactionType(transactionType)
+                .amount(amount == NULL_VALUE ? null : BigDecimal.valueOf(amount, 2))
+                .currency(currency)
+                .description(description)
+                .category(category)
+                .status(status)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .version(version == NULL_VALUE ? null : version)
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按 UTC 换算的纪元微秒，和数据库的 TIMESTAMP 一样四舍五入到微秒，恢复出的时间和库里读出的一致；热数据层也用它存时间
+     */
+    static long micros(LocalDateTime time) {
+        if (time == null) return NULL_VALUE;
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + (time.getNano() + 500) / 1_000;
+    }
+
+    static LocalDateTime time(long micros) {
+        if (micros == NULL_VALUE) return null;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,619 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.SearchRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.SearchDisabledException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 交易搜索的内存倒排索引
+ * <p>
+ * 每笔交易在索引里占一个序号，描述分词后的每个词(字母数字按词，中日韩文字按单字和相邻两字)，以及分类、状态、类型、币种的每个取值，
+ * 各有一个倒排表记录包含它的序号：倒排表小时是有序 int 数组，超过序号总数的 1/32 后转成 BitSet，状态这类取值少的字段基本都是 BitSet。
+ * 金额和创建时间按序号存在数组里，逐条比较。
+ * <p>
+ * 查询以最短的倒排表驱动，其余倒排表按序号检查，结果按id游标分页。序号按写入顺序分配，和id顺序基本一致，
+ * 每 256 个序号一块记录块内之前的最大id和之后的最小id：查询从最大id超过游标的块开始，凑够一页后，
+ * 后面的块最小id也比页内最大id大就停止，提交顺序和id顺序不一致(如并发写入)时多扫几块，结果仍按id有序。
+ * <p>
+ * 写入在事务提交后同步到索引，启动时和 POST /transactions/search/rebuild 时从交易表重建，重建期间的写入记下来，重建完再补上。
+ * afterCommit 的执行顺序不一定是提交顺序，版本不高于已索引版本的写入直接忽略；删除的id(id不会重复使用)连同删除时的版本记下来，
+ * 之后迟到的写入不会让它复活，重建时带到新索引里。迟到的写入只会晚几次提交，删除记录保留 tombstone-ttl-ms 后按删除顺序清掉。
+ * 索引只反映本实例的写入，多副本部署时其他实例的写入要等重建后才能搜到。mybank.search.enabled=false 时不建索引，搜索返回404。
+ */
+@Slf4j
+@Component
+@Order(2)
+public class TransactionSearchIndex implements SmartInitializingSingleton, TransactionChangeListener {
+
+    private static final String DESCRIPTION = "d:";
+    private static final String CATEGORY = "c:";
+    private static final String STATUS = "s:";
+    private static final String TYPE = "t:";
+    private static final String CURRENCY = "m:";
+
+    private final TransactionDao transactionDao;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final boolean enabled;
+    private final long tombstoneTtlMillis;
+
+    /**
+     * 以下两个字段由 lock 保护；pending 只在重建期间不为空
+     */
+    private Index index = new Index();
+    private List<TransactionChange> pending;
+
+    public TransactionSearchIndex(TransactionDao transactionDao, PlatformTransactionManager transactionManager,
+                                  @Value("${mybank.search.enabled:true}") boolean enabled,
+                                  @Value("${mybank.search.tombstone-ttl-ms:60000}") long tombstoneTtlMillis) {
+        this.transactionDao = transactionDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.tombstoneTtlMillis = tombstoneTtlMillis;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) rebuild();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 符合条件且id大于 afterId 的前 limit 笔交易的id，升序
+     */
+    public List<Long> search(SearchRequest request, long afterId, int limit) {
+        if (!enabled) throw disabled();
+        List<String> terms = new ArrayList<>();
+        queryTokens(request.getQ()).forEach(token -> terms.add(DESCRIPTION + token));
+        if (request.getCategory() != null) terms.add(CATEGORY + request.getCategory());
+        if (request.getStatus() != null) terms.add(STATUS + request.getStatus());
+        if (request.getTransactionType() != null) terms.add(TYPE + request.getTransactionType());
+        if (request.getCurrency() != null) terms.add(CURRENCY + request.getCurrency());
+        long minAmount = request.getMinAmount() == null ? Long.MIN_VALUE : cents(request.getMinAmount(), RoundingMode.CEILING);
+        long maxAmount = request.getMaxAmount() == null ? Long.MAX_VALUE : cents(request.getMaxAmount(), RoundingMode.FLOOR);
+        long from = request.getFrom() == null ? Long.MIN_VALUE : millis(request.getFrom());
+        long to = request.getTo() == null ? Long.MAX_VALUE : millis(request.getTo());
+        lock.readLock().lock();
+        try {
+            return index.search(terms, minAmount, maxAmount, from, to, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 创建和更新传入的交易需要带全部字段和创建时间，删除传入删除前的交易，需要带id和版本
+     */
+    @Override
+    public void onCommitted(TransactionChange change) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            apply(index, change);
+            if (pending != null) pending.add(change);
+            if (change.type() == TransactionChange.Type.DELETED) index.pruneRemoved(System.currentTimeMillis() - tombstoneTtlMillis);
+            if (index.needsCompaction()) index = index.compacted();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从交易表重建索引，返回索引的交易笔数；查询在重建期间继续使用旧索引
+     */
+    public synchronized int rebuild() {
+        if (!enabled) throw disabled();
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Index rebuilt = new Index();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<Transaction> cursor = transactionDao.scanAll()) {
+                    cursor.forEach(rebuilt::upsert);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            // 重建期间提交的写入可能已经被扫描到，也可能扫描到的已经是更新的版本；按版本比较，旧的写入不会覆盖新的
+            rebuilt.removed.putAll(index.removed);
+            pending.forEach(change -> apply(rebuilt, change));
+            rebuilt.pruneRemoved(System.currentTimeMillis() - tombstoneTtlMillis);
+            index = rebuilt.needsCompaction() ? rebuilt.compacted() : rebuilt;
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("transaction search index rebuilt: {} transactions in {}ms", rebuilt.liveCount, System.currentTimeMillis() - start);
+        return rebuilt.liveCount;
+    }
+
+    /**
+     * 保留的删除记录数
+     */
+    int tombstones() {
+        lock.readLock().lock();
+        try {
+            return index.removed.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void apply(Index target, TransactionChange change) {
+        for (Transaction t : change.transactions()) {
+            if (change.type() == TransactionChange.Type.DELETED) {
+                target.remove(t.getId(), t.getVersion() + 1, System.currentTimeMillis());
+            } else {
+                target.upsert(t);
+            }
+        }
+    }
+
+    /**
+     * 描述的分词：字母数字连续的一段为一个词，中日韩文字取每个字和相邻两字，统一小写
+     */
+    static Set<String> tokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        split(text, (run, cjk) -> {
+            if (!cjk) {
+                tokens.add(run);
+                return;
+            }
+            int[] chars = run.codePoints().toArray();
+            for (int i = 0; i < chars.length; ++i) {
+                tokens.add(new String(chars, i, 1));
+                if (i + 1 < chars.length) tokens.add(new String(chars, i, 2));
+            }
+        });
+        return tokens;
+    }
+
+    /**
+     * 查询词的分词：中日韩文字只取相邻两字(单个字时取这个字)，两字都命中时单字一定命中
+     */
+    static Set<String> queryTokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        split(text, (run, cjk) -> {
+            int[] chars = run.codePoints().toArray();
+            if (!cjk || chars.length == 1) {
+                tokens.add(run);
+                return;
+            }
+            for (int i = 0; i + 1 < chars.length; ++i) tokens.add(new String(chars, i, 2));
+        });
+        return tokens;
+    }
+
+    private interface RunConsumer {
+        void accept(String run, boolean cjk);
+    }
+
+    private static void split(String text, RunConsumer consumer) {
+        if (text == null) return;
+        String s = text.toLowerCase(Locale.ROOT);
+        int i = 0;
+        while (i < s.length()) {
+            int c = s.codePointAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                i += Character.charCount(c);
+                continue;
+            }
+            boolean cjk = isCjk(c);
+            int start = i;
+            while (i < s.length()) {
+                int next = s.codePointAt(i);
+                if (!Character.isLetterOrDigit(next) || isCjk(next) != cjk) break;
+                i += Character.charCount(next);
+            }
+            consumer.accept(s.substring(start, i), cjk);
+        }
+    }
+
+    private static boolean isCjk(int c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static Set<String> terms(Transaction t) {
+        Set<String> terms = new LinkedHashSet<>();
+        tokens(t.getDescription()).forEach(token -> terms.add(DESCRIPTION + token));
+        if (t.getCategory() != null) terms.add(CATEGORY + t.getCategory());
+        if (t.getStatus() != null) terms.add(STATUS + t.getStatus());
+        if (t.getTransactionType() != null) terms.add(TYPE + t.getTransactionType());
+        if (t.getCurrency() != null) terms.add(CURRENCY + t.getCurrency());
+        return terms;
+    }
+
+    private static long cents(BigDecimal amount, RoundingMode rounding) {
+        return amount.setScale(2, rounding).unscaledValue().longValue();
+    }
+
+    private static SearchDisabledException disabled() {
+        return new SearchDisabledException("transaction search is disabled (mybank.search.enabled=false)");
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * 删除时的版本(删除前的版本 + 1)和删除的时间
+     */
+    private record Tombstone(long version, long removedAt) {
+    }
+
+    /**
+     * 索引数据，只在持有 lock 时访问
+     */
+    static final class Index {
+
+        private static final int BLOCK_SHIFT = 8;
+
+        private final Map<String, Integer> termIds;
+        private final List<Posting> postings;
+        private final BitSet live = new BitSet();
+        /**
+         * 删除过的id和删除时的版本，按删除顺序排列，整理时保留
+         */
+        private final LinkedHashMap<Long, Tombstone> removed;
+        private long[] ids = new long[1024];
+        private long[] versions = new long[1024];
+        private long[] amounts = new long[1024];
+        private long[] createdAt = new long[1024];
+        private int[] termStart = new int[1024];
+        private int[] termCount = new int[1024];
+        private long[] prefixMax = new long[4];
+        private long[] suffixMin = new long[4];
+        private int[] termPool = new int[4096];
+        private int poolSize;
+        /**
+         * 已分配的序号数，包括已删除的
+         */
+        private int size;
+        private int liveCount;
+        /**
+         * 存活交易的词数合计，termPool 里多出来的是更新前的旧词
+         */
+        private long liveTerms;
+
+        Index() {
+            this(new HashMap<>(), new ArrayList<>(), new LinkedHashMap<>());
+        }
+
+        private Index(Map<String, Integer> termIds, List<Posting> postings, LinkedHashMap<Long, Tombstone> removed) {
+            this.termIds = termIds;
+            this.postings = postings;
+            this.removed = removed;
+        }
+
+        /**
+         * 写入或替换一笔交易；已删除或版本不比已索引的新时忽略
+         */
+        void upsert(Transaction t) {
+            long version = t.getVersion() == null ? Long.MIN_VALUE : t.getVersion();
+            Tombstone tombstone = removed.get(t.getId());
+            if (tombstone != null && version <= tombstone.version()) return;
+            int ordinal = ordinalOf(t.getId());
+            if (ordinal >= 0 && live.get(ordinal) && version <= versions[ordinal]) return;
+            if (ordinal < 0) {
+                ordinal = append(t.getId());
+            } else {
+                removeTerms(ordinal);
+            }
+            if (!live.get(ordinal)) {
+                live.set(ordinal);
+                ++liveCount;
+            }
+            versions[ordinal] = version;
+            amounts[ordinal] = t.getAmount() == null ? 0L : cents(t.getAmount(), RoundingMode.HALF_UP);
+            createdAt[ordinal] = t.getCreatedAt() == null ? Long.MIN_VALUE : millis(t.getCreatedAt());
+            Set<String> terms = terms(t);
+            int[] termsOf = new int[terms.size()];
+            int i = 0;
+            for (String term : terms) {
+                termsOf[i++] = termIds.computeIfAbsent(term, k -> {
+                    postings.add(new Posting());
+                    return postings.size() - 1;
+                });
+            }
+            addTerms(ordinal, termsOf, 0, termsOf.length);
+        }
+
+        void remove(long id, long version, long now) {
+            removed.merge(id, new Tombstone(version, now), (a, b) -> a.version() >= b.version() ? a : b);
+            int ordinal = ordinalOf(id);
+            if (ordinal < 0 || !live.get(ordinal)) return;
+            removeTerms(ordinal);
+            live.clear(ordinal);
+            --liveCount;
+        }
+
+        List<Long> search(List<String> terms, long minAmount, long maxAmount, long from, long to, long afterId, int limit) {
+            List<Posting> required = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Integer termId = termIds.get(term);
+                if (termId == null || postings.get(termId).size() == 0) return List.of();
+                required.add(postings.get(termId));
+            }
+            required.sort(Comparator.comparingInt(Posting::size));
+            int start = startOrdinal(afterId);
+            if (start < 0 || limit <= 0) return List.of();
+
+            PriorityQueue<Long> page = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+            IntPredicate visit = ordinal -> {
+                if (page.size() == limit && suffixMin[ordinal >> BLOCK_SHIFT] > page.peek()) return false;
+                long id = ids[ordinal];
+                if (id <= afterId || (page.size() == limit && id >= page.peek())) return true;
+                if (amounts[ordinal] < minAmount || amounts[ordinal] > maxAmount) return true;
+                if (createdAt[ordinal] < from || createdAt[ordinal] >= to) return true;
+                for (int k = 1; k < required.size(); ++k) {
+                    if (!required.get(k).contains(ordinal)) return true;
+                }
+                page.add(id);
+                if (page.size() > limit) page.poll();
+                return true;
+            };
+            if (required.isEmpty()) {
+                Posting.forEach(live, start, visit);
+            } else {
+                required.get(0).forEachFrom(start, visit);
+            }
+            List<Long> result = new ArrayList<>(page);
+            result.sort(null);
+            return result;
+        }
+
+        /**
+         * 清掉 before 之前的删除记录
+         */
+        void pruneRemoved(long before) {
+            Iterator<Tombstone> it = removed.values().iterator();
+            while (it.hasNext() && it.next().removedAt() < before) it.remove();
+        }
+
+        /**
+         * 删除的序号和更新留下的旧词太多时重新整理
+         */
+        boolean needsCompaction() {
+            return size - liveCount > Math.max(4096, liveCount) || poolSize > 2 * liveTerms + 65536;
+        }
+
+        /**
+         * 只保留存活的交易，按原顺序重新分配序号，词典不变
+         */
+        Index compacted() {
+            List<Posting> fresh = new ArrayList<>(postings.size());
+            for (int i = 0; i < postings.size(); ++i) fresh.add(new Posting());
+            Index copy = new Index(termIds, fresh, removed);
+            for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+                int n = copy.append(ids[ordinal]);
+                copy.live.set(n);
+                ++copy.liveCount;
+                copy.versions[n] = versions[ordinal];
+                copy.amounts[n] = amounts[ordinal];
+                copy.createdAt[n] = createdAt[ordinal];
+                copy.addTerms(n, termPool, termStart[ordinal], termCount[ordinal]);
+            }
+            return copy;
+        }
+
+        private int append(long id) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                createdAt = Arrays.copyOf(createdAt, capacity);
+                termStart = Arrays.copyOf(termStart, capacity);
+                termCount = Arrays.copyOf(termCount, capacity);
+            }
+            int ordinal = size++;
+            ids[ordinal] = id;
+            int block = ordinal >> BLOCK_SHIFT;
+            if (block == prefixMax.length) {
+                prefixMax = Arrays.copyOf(prefixMax, block * 2);
+                suffixMin = Arrays.copyOf(suffixMin, block * 2);
+            }
+            if ((ordinal & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+                prefixMax[block] = block == 0 ? id : Math.max(prefixMax[block - 1], id);
+                suffixMin[block] = id;
+            } else {
+                prefixMax[block] = Math.max(prefixMax[block], id);
+                suffixMin[block] = Math.min(suffixMin[block], id);
+            }
+            // 比前面块里的id小时，更新前面块之后的最小id
+            for (int b = block - 1; b >= 0 && suffixMin[b] > id; --b) suffixMin[b] = id;
+            return ordinal;
+        }
+
+        /**
+         * 第一个可能含有比 afterId 大的id的块的起始序号，前面的块里所有id都不超过 afterId
+         */
+        private int startOrdinal(long afterId) {
+            int blocks = blockCount();
+            int lo = 0, hi = blocks;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (prefixMax[mid] > afterId) hi = mid;
+                else lo = mid + 1;
+            }
+            return lo == blocks ? -1 : lo << BLOCK_SHIFT;
+        }
+
+        /**
+         * id 只可能在前面最大id不小于它、后面最小id不大于它的块里，id基本有序时只需要看一两块
+         */
+        private int ordinalOf(long id) {
+            int start = startOrdinal(id - 1);
+            if (start < 0) return -1;
+            for (int b = start >> BLOCK_SHIFT, blocks = blockCount(); b < blocks && suffixMin[b] <= id; ++b) {
+                int end = Math.min(size, (b + 1) << BLOCK_SHIFT);
+                for (int ordinal = b << BLOCK_SHIFT; ordinal < end; ++ordinal) {
+                    if (ids[ordinal] == id) return ordinal;
+                }
+            }
+            return -1;
+        }
+
+        private int blockCount() {
+            return (size + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+        }
+
+        private void addTerms(int ordinal, int[] source, int from, int count) {
+            if (poolSize + count > termPool.length) {
+                termPool = Arrays.copyOf(termPool, Math.max(termPool.length * 2, poolSize + count));
+            }
+            termStart[ordinal] = poolSize;
+            termCount[ordinal] = count;
+            for (int i = 0; i < count; ++i) {
+                int termId = source[from + i];
+                termPool[poolSize++] = termId;
+                postings.get(termId).add(ordinal, size);
+            }
+            liveTerms += count;
+        }
+
+        private void removeTerms(int ordinal) {
+            if (!live.get(ordinal)) return;
+            for (int i = termStart[ordinal], end = i + termCount[ordinal]; i < end; ++i) {
+                postings.get(termPool[i]).remove(ordinal);
+            }
+            liveTerms -= termCount[ordinal];
+            termCount[ordinal] = 0;
+        }
+    }
+
+    /**
+     * 倒排表，元素少时是有序数组，多到数组比 BitSet 还大时转成 BitSet
+     */
+    static final class Posting {
+
+        private int[] ordinals = new int[4];
+        private BitSet bits;
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(int ordinal, int capacity) {
+            if (bits != null) {
+                if (!bits.get(ordinal)) {
+                    bits.set(ordinal);
+                    ++size;
+                }
+                return;
+            }
+            int i = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (i >= 0) return;
+            i = -i - 1;
+            if (size == ordinals.length) ordinals = Arrays.copyOf(ordinals, size * 2);
+            System.arraycopy(ordinals, i, ordinals, i + 1, size - i);
+            ordinals[i] = ordinal;
+            ++size;
+            if (size > 64 && size > capacity >>> 5) {
+                bits = new BitSet(capacity);
+                for (int k = 0; k < size; ++k) bits.set(ordinals[k]);
+                ordinals = null;
+            }
+        }
+
+        void remove(int ordinal) {
+            if (bits != null) {
+                if (bits.get(ordinal)) {
+                    bits.clear(ordinal);
+                    --size;
+                }
+                return;
+            }
+            int i = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (i < 0) return;
+            System.arraycopy(ordinals, i + 1, ordinals, i, size - i - 1);
+            --size;
+        }
+
+        boolean contains(int ordinal) {
+            return bits != null ? bits.get(ordinal) : Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+
+        /**
+         * 按序号升序访问不小于 start 的元素，visitor 返回 false 时停止
+         */
+        void forEachFrom(int start, IntPredicate visitor) {
+            if (bits != null) {
+                forEach(bits, start, visitor);
+                return;
+            }
+            int i = Arrays.binarySearch(ordinals, 0, size, start);
+            for (i = i >= 0 ? i : -i - 1; i < size; ++i) {
+                if (!visitor.test(ordinals[i])) return;
+            }
+        }
+
+        static void forEach(BitSet bits, int start, IntPredicate visitor) {
+            for (int i = bits.nextSetBit(start); i >= 0; i = bits.nextSetBit(i + 1)) {
+                if (!visitor.test(i)) return;
+            }
+        }
+    }
+}
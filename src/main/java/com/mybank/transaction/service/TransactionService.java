@@ -1,22 +1,46 @@
 package com.mybank.transaction.service;
 
+import com.mybank.transaction.dao.IdempotencyKeyDao;
+import com.mybank.transaction.dao.TransactionBatchDao;
+import com.mybank.transaction.domain.AccountPageRequest;
+import com.mybank.transaction.domain.BatchItemResult;
+import com.mybank.transaction.domain.CursorPageRequest;
+import com.mybank.transaction.domain.CursorPageResponse;
+import com.mybank.transaction.domain.IdempotencyKey;
+import com.mybank.transaction.domain.PageCursor;
 import com.mybank.transaction.domain.PageRequest;
 import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.SearchRequest;
+import com.mybank.transaction.domain.StatusUpdateRequest;
 import com.mybank.transaction.domain.TransactionRequest;
 import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionPatch;
+import com.mybank.transaction.domain.TransactionUpdateItem;
+import com.mybank.transaction.exception.BatchSizeExceededException;
 import com.mybank.transaction.exception.DuplicateTransactionException;
+import com.mybank.transaction.exception.TransactionConflictException;
 import com.mybank.transaction.exception.TransactionNotFoundException;
+import com.mybank.transaction.exception.TransactionVersionMismatchException;
 import com.mybank.transaction.dao.TransactionDao;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Implement Transaction Service
@@ -26,65 +50,403 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionService {
 
+    /**
+     * 不带 If-Match 的单条更新/删除遇到并发修改时，重新读取版本再试的次数
+     */
+    private static final int MAX_ATTEMPTS = 5;
+
     private final TransactionDao transactionDao;
+    private final SnowflakeIdWorker idWorker;
+    private final TransactionBatchWriter batchWriter;
+    private final TransactionBatchDao transactionBatchDao;
+    private final TransactionCounter transactionCounter;
+    private final TransactionCache transactionCache;
+    private final TransactionSearchIndex searchIndex;
+    private final TransactionHotStore hotStore;
+    private final TransactionJournal journal;
+    private final TransactionChangePublisher changePublisher;
+    private final AccountBalanceService accountBalanceService;
+    private final TransactionStatsService transactionStatsService;
+    private final IdempotencyService idempotencyService;
+    private final IdempotencyKeyDao idempotencyKeyDao;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
 
-    @Transactional
-    @CacheEvict(value = "transactions", allEntries = true)
+    @Value("${mybank.batch.max-size:1000}")
+    private int batchMaxSize;
+
+    /**
+     * 分页总数的统计方式: counter 使用内存计数器, exact 每次 COUNT(*), none 不返回总数
+     */
+    @Value("${mybank.page.count-mode:counter}")
+    private String countMode;
+
+    /**
+     * 不加 @Transactional，避免组提交模式下每个等待中的调用方各占一个连接；
+     * 非组提交时插入和余额变动放在同一个事务里
+     */
     public Transaction createTransaction(TransactionRequest request) {
-        long id = SnowflakeIdWorker.getInstance().genNextId();
-        Transaction transaction = Transaction.builder()
-                .id(id)
-                .tid(String.valueOf(id))
-                .accountNumber(request.getAccountNumber())
-                .transactionType(request.getTransactionType())
-                .amount(request.getAmount())
-                .currency(request.getCurrency())
-                .description(request.getDescription())
-                .category(request.getCategory())
-                .status("COMPLETED")
-                .createdAt(LocalDateTime.now())
-                .build();
-        try {
-            transactionDao.insTran(transaction);
-        } catch (Exception e) {
-            throw new DuplicateTransactionException("duplicate transaction id");
+        return insertTransaction(request, null);
+    }
+
+    /**
+     * 带幂等键的创建，同一个 key 的重试返回第一次创建的交易，不再写库
+     */
+    public Transaction createTransaction(TransactionRequest request, String idempotencyKey) {
+        if (!StringUtils.hasText(idempotencyKey)) return createTransaction(request);
+        return idempotencyService.execute(idempotencyKey, request, key -> insertTransaction(request, key), this::getTransaction);
+    }
+
+    private Transaction insertTransaction(TransactionRequest request, IdempotencyKey idempotencyKey) {
+        journal.checkWritable();
+        Transaction transaction = newTransaction(request);
+        if (idempotencyKey != null) idempotencyKey.setTransactionId(transaction.getId());
+        if (batchWriter.isEnabled()) {
+            batchWriter.insert(transaction, idempotencyKey);
+        } else {
+            transactionTemplate.executeWithoutResult(status -> {
+                // 先写幂等键：另一个实例持有同一个 key 时在这里等待，它提交后主键冲突
+                if (idempotencyKey != null) idempotencyKeyDao.insertKey(idempotencyKey);
+                try {
+                    transactionDao.insTran(transaction);
+                } catch (Exception e) {
+                    throw new DuplicateTransactionException("duplicate transaction id");
+                }
+                accountBalanceService.apply(List.of(), List.of(transaction));
+                transactionStatsService.apply(List.of(), List.of(transaction));
+                transactionCounter.add(1);
+            });
         }
-        
+        changePublisher.created(List.of(transaction));
         return transaction;
     }
 
     @Transactional
-    @CacheEvict(value = "transactions", allEntries = true)
     public Transaction updateTransaction(Long id, TransactionRequest request) {
-        Transaction transaction = Transaction.builder()
-                .id(id)
-                .tid(String.valueOf(id))
-                .accountNumber(request.getAccountNumber())
-                .transactionType(request.getTransactionType())
-                .amount(request.getAmount())
-                .currency(request.getCurrency())
-                .description(request.getDescription())
-                .category(request.getCategory())
-                .status(request.getStatus())
-                .updatedAt(LocalDateTime.now())
+        return updateTransaction(id, request, null);
+    }
+
+    /**
+     * 乐观锁更新：不加行锁读出当前版本，按该版本写入，期间被其他请求改过时重新读取再试；
+     * expectedVersion 是调用方 If-Match 带的版本，不为空时不重试，和当前版本不一致直接失败
+     */
+    @Transactional
+    public Transaction updateTransaction(Long id, TransactionRequest request, Long expectedVersion) {
+        journal.checkWritable();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            Transaction previous = currentVersion(id, expectedVersion);
+            Transaction transaction = updatedTransaction(id, request);
+            transaction.setVersion(previous.getVersion());
+            if (transactionDao.updTran(transaction) == 0) {
+                if (expectedVersion != null) throw versionMismatch(id);
+                continue;
+            }
+            transaction.setVersion(previous.getVersion() + 1);
+            transaction.setCreatedAt(previous.getCreatedAt());
+            accountBalanceService.apply(List.of(previous), List.of(transaction));
+            transactionStatsService.apply(List.of(previous), List.of(transaction));
+            changePublisher.updated(List.of(transaction), List.of(previous));
+            return transaction;
+        }
+        throw new TransactionConflictException("transaction was modified concurrently: " + id);
+    }
+
+    /**
+     * 部分更新：只写请求里给出且和当前值不同的列，都没有变化时不写库、版本不变；乐观锁同 updateTransaction。
+     * 只改描述或状态时不影响余额和日汇总，不再写这两张表
+     */
+    @Transactional
+    public Transaction patchTransaction(Long id, TransactionPatch patch, Long expectedVersion) {
+        journal.checkWritable();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            Transaction previous = transactionDao.selectById(id);
+            if (previous == null) throw new TransactionNotFoundException("transaction doesn't exist: " + id);
+            checkVersion(previous, expectedVersion);
+            Transaction changes = changes(previous, patch);
+            if (changes == null) return previous;
+            if (transactionDao.patchTran(changes) == 0) {
+                if (expectedVersion != null) throw versionMismatch(id);
+                continue;
+            }
+            Transaction transaction = patched(previous, changes);
+            if (changes.getAccountNumber() != null || changes.getTransactionType() != null || changes.getAmount() != null
+                    || changes.getCurrency() != null || changes.getCategory() != null) {
+                accountBalanceService.apply(List.of(previous), List.of(transaction));
+                transactionStatsService.apply(List.of(previous), List.of(transaction));
+            }
+            changePublisher.updated(List.of(transaction), List.of(previous));
+            return transaction;
+        }
+        throw new TransactionConflictException("transaction was modified concurrently: " + id);
+    }
+
+    /**
+     * 批量修改状态，一条 UPDATE ... WHERE id IN (...) 完成，不先读再写；fromStatus 不为空时只修改当前是该状态的交易。
+     * 状态不影响余额和日汇总，不存在(或状态不符)的交易在对应元素的结果里标记失败
+     */
+    @Transactional
+    public List<BatchItemResult<Long>> updateStatus(StatusUpdateRequest request) {
+        journal.checkWritable();
+        List<Long> ids = request.getIds();
+        checkBatchSize(ids.size());
+        List<Long> valid = ids.stream().filter(id -> id != null && id > 0).distinct().toList();
+        List<Transaction> updated = valid.isEmpty() ? List.of()
+                : transactionDao.updateStatus(valid, request.getFromStatus(), request.getStatus(), LocalDateTime.now());
+        Set<Long> updatedIds = updated.stream().map(Transaction::getId).collect(Collectors.toSet());
+        String missing = request.getFromStatus() == null ? "transaction doesn't exist: "
+                : "transaction doesn't exist or its status isn't " + request.getFromStatus() + ": ";
+        List<BatchItemResult<Long>> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); ++i) {
+            Long id = ids.get(i);
+            if (id == null || id < 1) {
+                results.add(BatchItemResult.failure(i, "id must greater than 0"));
+            } else if (updatedIds.contains(id)) {
+                results.add(BatchItemResult.success(i, id));
+            } else {
+                results.add(BatchItemResult.failure(i, missing + id));
+            }
+        }
+        changePublisher.updated(updated, List.of());
+        return results;
+    }
+
+    @Transactional
+    public void deleteTransaction(Long id) {
+        journal.checkWritable();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            Transaction previous = currentVersion(id, null);
+            if (transactionDao.deleteByIdAndVersion(id, previous.getVersion()) == 0) continue;
+            accountBalanceService.apply(List.of(previous), List.of());
+            transactionStatsService.apply(List.of(previous), List.of());
+            transactionCounter.add(-1);
+            changePublisher.deleted(List.of(previous));
+            return;
+        }
+        throw new TransactionConflictException("transaction was modified concurrently: " + id);
+    }
+
+    /**
+     * 读取交易当前的版本和更新前用到的字段，expectedVersion 不为空时校验版本
+     */
+    private Transaction currentVersion(Long id, Long expectedVersion) {
+        List<Transaction> current = transactionDao.selectVersions(List.of(id));
+        if (current.isEmpty()) throw new TransactionNotFoundException("transaction doesn't exist: " + id);
+        Transaction previous = current.get(0);
+        checkVersion(previous, expectedVersion);
+        return previous;
+    }
+
+    private static void checkVersion(Transaction previous, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(previous.getVersion())) throw versionMismatch(previous.getId());
+    }
+
+    /**
+     * patch 里和 previous 不同的字段，其余字段为空；都没有变化时返回 null
+     */
+    private static Transaction changes(Transaction previous, TransactionPatch patch) {
+        Transaction changes = Transaction.builder()
+                .id(previous.getId())
+                .accountNumber(changed(patch.getAccountNumber(), previous.getAccountNumber()))
+                .transactionType(changed(patch.getTransactionType(), previous.getTransactionType()))
+                .amount(patch.getAmount() == null || (previous.getAmount() != null
+                        && patch.getAmount().compareTo(previous.getAmount()) == 0) ? null : patch.getAmount())
+                .currency(changed(patch.getCurrency(), previous.getCurrency()))
+                .description(changed(patch.getDescription(), previous.getDescription()))
+                .category(changed(patch.getCategory(), previous.getCategory()))
+                .status(changed(patch.getStatus(), previous.getStatus()))
+                .version(previous.getVersion())
+                .build();
+        if (changes.getAccountNumber() == null && changes.getTransactionType() == null && changes.getAmount() == null
+                && changes.getCurrency() == null && changes.getDescription() == null && changes.getCategory() == null
+                && changes.getStatus() == null) {
+            return null;
+        }
+        changes.setUpdatedAt(LocalDateTime.now());
+        return changes;
+    }
+
+    /**
+     * 在 previous 上应用 changes 后的交易
+     */
+    private static Transaction patched(Transaction previous, Transaction changes) {
+        Transaction transaction = previous.toBuilder()
+                .updatedAt(changes.getUpdatedAt())
+                .version(previous.getVersion() + 1)
                 .build();
+        if (changes.getAccountNumber() != null) transaction.setAccountNumber(changes.getAccountNumber());
+        if (changes.getTransactionType() != null) transaction.setTransactionType(changes.getTransactionType());
+        if (changes.getAmount() != null) transaction.setAmount(changes.getAmount());
+        if (changes.getCurrency() != null) transaction.setCurrency(changes.getCurrency());
+        if (changes.getDescription() != null) transaction.setDescription(changes.getDescription());
+        if (changes.getCategory() != null) transaction.setCategory(changes.getCategory());
+        if (changes.getStatus() != null) transaction.setStatus(changes.getStatus());
+        return transaction;
+    }
+
+    private static <T> T changed(T value, T current) {
+        return value == null || value.equals(current) ? null : value;
+    }
+
+    private static TransactionVersionMismatchException versionMismatch(Long id) {
+        return new TransactionVersionMismatchException("transaction version doesn't match: " + id);
+    }
 
-        int updCnt = transactionDao.updTran(transaction);
-        if (updCnt == 0) throw new TransactionNotFoundException("transaction doesn't exist: " + id);        
+    /**
+     * 按id查询交易，先查热数据层，再经过单条交易缓存
+     */
+    public Transaction getTransaction(Long id) {
+        Transaction hot = hotStore.get(id);
+        if (hot != null) return hot;
+        Transaction transaction = transactionCache.getTransaction(id, () -> transactionDao.selectById(id));
+        if (transaction == null) throw new TransactionNotFoundException("transaction doesn't exist: " + id);
         return transaction;
     }
 
+    /**
+     * 批量创建，逐个校验，校验通过的在同一事务内通过JDBC批量插入
+     */
+    @Transactional
+    public List<BatchItemResult<Transaction>> createTransactions(List<TransactionRequest> requests) {
+        journal.checkWritable();
+        checkBatchSize(requests.size());
+        List<BatchItemResult<Transaction>> results = new ArrayList<>(requests.size());
+        List<Transaction> inserted = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); ++i) {
+            String error = validate(requests.get(i));
+            if (error != null) {
+                results.add(BatchItemResult.failure(i, error));
+                continue;
+            }
+            Transaction transaction = newTransaction(requests.get(i));
+            transactionBatchDao.mapper().insTran(transaction);
+            results.add(BatchItemResult.success(i, transaction));
+            inserted.add(transaction);
+        }
+        transactionBatchDao.flush();
+        accountBalanceService.apply(transactionBatchDao.balanceMapper(), List.of(), inserted);
+        transactionStatsService.apply(transactionBatchDao, List.of(), inserted);
+        transactionCounter.add(inserted.size());
+        changePublisher.created(inserted);
+        return results;
+    }
+
+    /**
+     * 批量更新，不存在的交易和并发修改过的交易在对应元素的结果里标记失败
+     */
     @Transactional
-    @CacheEvict(value = "transactions", allEntries = true)
-    public void deleteTransaction(Long id) {        
-        int delCnt = transactionDao.deleteById(id);
-        if (delCnt == 0) throw new TransactionNotFoundException("transaction doesn't exist: " + id);
+    public List<BatchItemResult<Transaction>> updateTransactions(List<TransactionUpdateItem> items) {
+        journal.checkWritable();
+        checkBatchSize(items.size());
+        // 查询会先发送已攒的批次，所以在加入更新语句之前读取版本
+        Map<Long, Transaction> current = currentVersions(transactionBatchDao.mapper(), items.stream()
+                .filter(item -> item != null && item.getId() != null)
+                .map(TransactionUpdateItem::getId)
+                .toList());
+        List<BatchItemResult<Transaction>> results = new ArrayList<>(items.size());
+        List<Integer> executed = new ArrayList<>();
+        List<Transaction> replaced = new ArrayList<>();
+        for (int i = 0; i < items.size(); ++i) {
+            TransactionUpdateItem item = items.get(i);
+            String error = validate(item);
+            Transaction before = error == null ? current.get(item.getId()) : null;
+            if (error == null && before == null) error = "transaction doesn't exist: " + item.getId();
+            if (error != null) {
+                results.add(BatchItemResult.failure(i, error));
+                continue;
+            }
+            Transaction transaction = updatedTransaction(item.getId(), item.getTransaction());
+            transactionBatchDao.mapper().updTran(transaction.toBuilder().version(before.getVersion()).build());
+            transaction.setVersion(before.getVersion() + 1);
+            transaction.setCreatedAt(before.getCreatedAt());
+            // 同一id出现多次时，后一次按前一次更新后的版本写入，替换的也是前一次更新后的交易
+            current.put(item.getId(), transaction);
+            results.add(BatchItemResult.success(i, transaction));
+            executed.add(i);
+            replaced.add(before);
+        }
+        int[] counts = transactionBatchDao.flush();
+        List<Transaction> updated = new ArrayList<>(executed.size());
+        List<Transaction> undone = new ArrayList<>(executed.size());
+        Set<Long> conflicted = new HashSet<>();
+        for (int k = 0; k < executed.size(); ++k) {
+            int i = executed.get(k);
+            Long id = items.get(i).getId();
+            if (counts[k] == 0) {
+                conflicted.add(id);
+                results.set(i, BatchItemResult.failure(i, "transaction was modified concurrently: " + id));
+            } else if (conflicted.contains(id)) {
+                // 前一次没写入而这一次按它的版本写入了，说明另一个请求恰好把版本改到了这里，替换的不是我们以为的交易
+                throw new TransactionConflictException("transaction was modified concurrently: " + id);
+            } else {
+                updated.add(results.get(i).getData());
+                undone.add(replaced.get(k));
+            }
+        }
+        accountBalanceService.apply(transactionBatchDao.balanceMapper(), undone, updated);
+        transactionStatsService.apply(transactionBatchDao, undone, updated);
+        changePublisher.updated(updated, undone);
+        return results;
     }
 
-    @Cacheable(value = "transactions", key = "'all_' + #pageRequest.page + '_' + #pageRequest.size", sync = true)
+    /**
+     * 批量删除，不存在的交易和并发修改过的交易在对应元素的结果里标记失败
+     */
+    @Transactional
+    public List<BatchItemResult<Long>> deleteTransactions(List<Long> ids) {
+        journal.checkWritable();
+        checkBatchSize(ids.size());
+        Map<Long, Transaction> current = currentVersions(transactionBatchDao.mapper(), ids.stream()
+                .filter(id -> id != null && id > 0)
+                .toList());
+        List<BatchItemResult<Long>> results = new ArrayList<>(ids.size());
+        List<Integer> executed = new ArrayList<>();
+        List<Transaction> previous = new ArrayList<>();
+        for (int i = 0; i < ids.size(); ++i) {
+            Long id = ids.get(i);
+            if (id == null || id < 1) {
+                results.add(BatchItemResult.failure(i, "id must greater than 0"));
+                continue;
+            }
+            // 同一id出现多次时只有第一次删除
+            Transaction before = current.remove(id);
+            if (before == null) {
+                results.add(BatchItemResult.failure(i, "transaction doesn't exist: " + id));
+                continue;
+            }
+            transactionBatchDao.mapper().deleteByIdAndVersion(id, before.getVersion());
+            results.add(BatchItemResult.success(i, id));
+            executed.add(i);
+            previous.add(before);
+        }
+        int[] counts = transactionBatchDao.flush();
+        List<Long> deleted = new ArrayList<>(executed.size());
+        List<Transaction> removed = new ArrayList<>(executed.size());
+        for (int k = 0; k < executed.size(); ++k) {
+            int i = executed.get(k);
+            if (counts[k] == 0) {
+                results.set(i, BatchItemResult.failure(i, "transaction was modified concurrently: " + ids.get(i)));
+            } else {
+                deleted.add(ids.get(i));
+                removed.add(previous.get(k));
+            }
+        }
+        accountBalanceService.apply(transactionBatchDao.balanceMapper(), removed, List.of());
+        transactionStatsService.apply(transactionBatchDao, removed, List.of());
+        transactionCounter.add(-deleted.size());
+        changePublisher.deleted(removed);
+        return results;
+    }
+
+    /**
+     * 页内容走分页缓存，总数每次取计数器(exact 模式取缓存的 COUNT(*))，创建删除不需要失效前面的页
+     */
     public PageResponse<Transaction> getAllTransactions(PageRequest pageRequest) {
-        long totalElements = transactionDao.countTotal();
-        if (totalElements == 0L) {
+        if ("none".equals(countMode)) {
+            return getPageWithoutCount(pageRequest);
+        }
+        long totalElements = "exact".equals(countMode)
+                ? transactionCache.getCount(transactionDao::countTotal) : transactionCounter.get();
+        if (totalElements <= 0L) {
             return PageResponse.<Transaction>builder()
                     .content(new ArrayList<>())
                     .page(pageRequest.getPage())
@@ -95,8 +457,7 @@ public class TransactionService {
                     .hasPrevious(false)
                     .build();
         }
-        int offset = (pageRequest.getPage() - 1) * pageRequest.getSize();
-        List<Transaction> tlist = transactionDao.selectByPage(offset, pageRequest.getSize());
+        List<Transaction> tlist = getPage(pageRequest.getPage(), pageRequest.getSize(), pageRequest.getSize());
 
         int totalPages = (int) Math.ceil((double) totalElements / pageRequest.getSize());
         
@@ -108,6 +469,156 @@ public class TransactionService {
                 .totalPages(totalPages)
                 .hasNext(pageRequest.getPage() < totalPages)
                 .hasPrevious(pageRequest.getPage() > 1)
+                .nextCursor(tlist.isEmpty() ? null : PageCursor.encode(tlist.get(tlist.size() - 1).getId()))
+                .build();
+    }
+
+    /**
+     * 不统计总数的分页，多取一条判断是否有下一页，totalElements 和 totalPages 不返回
+     */
+    private PageResponse<Transaction> getPageWithoutCount(PageRequest pageRequest) {
+        int size = pageRequest.getSize();
+        List<Transaction> tlist = getPage(pageRequest.getPage(), size, size + 1);
+        boolean hasNext = tlist.size() > size;
+        if (hasNext) tlist = tlist.subList(0, size);
+
+        return PageResponse.<Transaction>builder()
+                .content(tlist)
+                .page(pageRequest.getPage())
+                .size(size)
+                .totalElements(PageResponse.UNKNOWN)
+                .totalPages(PageResponse.UNKNOWN)
+                .hasNext(hasNext)
+                .hasPrevious(pageRequest.getPage() > 1)
+                .nextCursor(tlist.isEmpty() ? null : PageCursor.encode(tlist.get(tlist.size() - 1).getId()))
                 .build();
     }
+
+    /**
+     * 游标分页，按id顺序查询游标之后的一页，深翻页也只走主键索引定位，不需要跳过前面的行
+     */
+    public CursorPageResponse<Transaction> getTransactionsAfter(CursorPageRequest pageRequest) {
+        long afterId = StringUtils.hasText(pageRequest.getAfter()) ? PageCursor.decode(pageRequest.getAfter()) : 0L;
+        int size = pageRequest.getSize();
+        // 多取一条用来判断是否还有下一页
+        List<Transaction> tlist = hotStore.getAfter(afterId, size + 1);
+        if (tlist == null) tlist = transactionCache.getPage("after_" + afterId + "_" + (size + 1), afterId, size + 1,
+                () -> transactionDao.selectAfter(afterId, size + 1));
+        return cursorPage(tlist, size);
+    }
+
+    /**
+     * 某个账户的交易，按id游标分页，走 (account_number, id) 索引；页内容按账户缓存，只有该账户的写入才失效
+     */
+    public CursorPageResponse<Transaction> getAccountTransactions(String accountNumber, AccountPageRequest pageRequest) {
+        long afterId = StringUtils.hasText(pageRequest.getAfter()) ? PageCursor.decode(pageRequest.getAfter()) : 0L;
+        int size = pageRequest.getSize();
+        LocalDateTime from = pageRequest.getFrom(), to = pageRequest.getTo();
+        List<Transaction> tlist = transactionCache.getAccountPage(accountNumber,
+                afterId + "_" + (size + 1) + "_" + from + "_" + to,
+                () -> transactionDao.selectByAccount(accountNumber, afterId, from, to, size + 1));
+        return cursorPage(tlist, size);
+    }
+
+    /**
+     * 按描述关键词、分类、状态、类型、币种、金额和创建时间范围搜索，按id游标分页；
+     * 条件在内存倒排索引里求交集得到一页id，再按id从库里取这一页
+     */
+    public CursorPageResponse<Transaction> searchTransactions(SearchRequest request) {
+        long afterId = StringUtils.hasText(request.getAfter()) ? PageCursor.decode(request.getAfter()) : 0L;
+        int size = request.getSize();
+        List<Long> ids = searchIndex.search(request, afterId, size + 1);
+        List<Transaction> tlist = ids.isEmpty() ? List.of() : transactionDao.selectByIds(ids);
+        return cursorPage(tlist, size);
+    }
+
+    public int rebuildSearchIndex() {
+        return searchIndex.rebuild();
+    }
+
+    /**
+     * tlist 多查了一条，用来判断是否还有下一页
+     */
+    private static CursorPageResponse<Transaction> cursorPage(List<Transaction> tlist, int size) {
+        boolean hasNext = tlist.size() > size;
+        if (hasNext) tlist = tlist.subList(0, size);
+
+        return CursorPageResponse.<Transaction>builder()
+                .content(tlist)
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? PageCursor.encode(tlist.get(size - 1).getId()) : null)
+                .build();
+    }
+
+    /**
+     * 从第 page 页开头取 limit 行，limit 可以比页大小多一条；整页都在热数据层时不经过分页缓存
+     */
+    private List<Transaction> getPage(int page, int size, int limit) {
+        int offset = (page - 1) * size;
+        List<Transaction> hot = hotStore.getPage(offset, limit);
+        if (hot != null) return hot;
+        return transactionCache.getPage("all_" + page + "_" + size + "_" + limit, Long.MIN_VALUE, limit,
+                () -> transactionDao.selectByPage(offset, limit));
+    }
+
+    private Transaction newTransaction(TransactionRequest request) {
+        long id = idWorker.genNextId();
+        return Transaction.builder()
+                .id(id)
+                .tid(String.valueOf(id))
+                .accountNumber(request.getAccountNumber())
+                .transactionType(request.getTransactionType())
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .description(request.getDescription())
+                .category(request.getCategory())
+                .status("COMPLETED")
+                .createdAt(LocalDateTime.now())
+                .version(0L)
+                .build();
+    }
+
+    private Transaction updatedTransaction(Long id, TransactionRequest request) {
+        return Transaction.builder()
+                .id(id)
+                .tid(String.valueOf(id))
+                .accountNumber(request.getAccountNumber())
+                .transactionType(request.getTransactionType())
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .description(request.getDescription())
+                .category(request.getCategory())
+                .status(request.getStatus())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 不加锁读取要更新或删除的交易，按id返回它们当前的版本、账户、类型和金额
+     */
+    private static Map<Long, Transaction> currentVersions(TransactionDao dao, List<Long> ids) {
+        if (ids.isEmpty()) return new HashMap<>();
+        return dao.selectVersions(ids).stream()
+                .collect(Collectors.toMap(Transaction::getId, Function.identity(), (a, b) -> a, HashMap::new));
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > batchMaxSize) {
+            throw new BatchSizeExceededException(String.format("batch size %d exceeds the limit %d", size, batchMaxSize));
+        }
+    }
+
+    /**
+     * 按 TransactionRequest 上的约束校验，返回错误信息，校验通过返回null
+     */
+    private String validate(Object request) {
+        if (request == null) return "element can't be empty";
+        Set<ConstraintViolation<Object>> violations = validator.validate(request);
+        if (violations.isEmpty()) return null;
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
 }
@@ -0,0 +1,206 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.TransactionBatchDao;
+import com.mybank.transaction.dao.TransactionStatsDao;
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionStats;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 交易日汇总
+ * <p>
+ * t_r_transaction_daily_stats 按 (日期, 分类, 类型, 币种) 记录笔数和金额合计，交易的创建/更新/删除在同一个数据库事务里增减，
+ * 一次写入涉及的汇总行先在内存里合并，再按主键顺序各执行一次 upsert，批量和组提交时同一天同一组合的交易只写一次。
+ * H2 的 MERGE 在两个事务同时新建同一汇总行时，后者在前者提交后主键冲突，冲突的语句重试一次走更新分支；
+ * 批量执行器上冲突到发送批次时才出现，在发送处重试。PostgreSQL 的 ON CONFLICT 不会冲突，出错后事务也不能继续，不重试。
+ * 查询只读汇总表，行数只和天数、维度组合数有关，和交易总数无关。
+ * <p>
+ * 重建按id区间把交易表分成若干段并行汇总，合并后整表替换。重建期间提交的写入可能被漏算或重复计算，
+ * 适合在汇总表为空(新库、升级)或暂停写入时执行。
+ */
+@Slf4j
+@Service
+public class TransactionStatsService implements SmartInitializingSingleton {
+
+    private static final Comparator<StatsKey> KEY_ORDER = Comparator.comparing(StatsKey::day)
+            .thenComparing(StatsKey::category)
+            .thenComparing(StatsKey::transactionType)
+            .thenComparing(StatsKey::currency);
+
+    private final TransactionStatsDao transactionStatsDao;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * 当前数据库的 upsert 是否可能主键冲突，见 MybatisConfig 的 databaseId
+     */
+    private final boolean retryDuplicates;
+
+    @Value("${mybank.stats.rebuild-threads:4}")
+    private int rebuildThreads;
+
+    @Value("${mybank.stats.rebuild-chunks:64}")
+    private int rebuildChunks;
+
+    public TransactionStatsService(TransactionStatsDao transactionStatsDao, PlatformTransactionManager transactionManager,
+                                   SqlSessionFactory sqlSessionFactory) {
+        this.transactionStatsDao = transactionStatsDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryDuplicates = !"postgresql".equals(sqlSessionFactory.getConfiguration().getDatabaseId());
+    }
+
+    /**
+     * 汇总表为空(新库或升级前的库)时从交易表重建一次
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (transactionStatsDao.countRows() == 0) rebuild();
+    }
+
+    public List<TransactionStats> getStats(StatsRequest request) {
+        return transactionStatsDao.selectStats(request);
+    }
+
+    /**
+     * 撤销 removed、计入 added，必须在写交易的事务里调用
+     */
+    public void apply(Collection<Transaction> removed, Collection<Transaction> added) {
+        for (TransactionStats delta : deltas(removed, added)) {
+            try {
+                transactionStatsDao.addStats(delta);
+            } catch (DuplicateKeyException e) {
+                // 两个事务同时新建同一汇总行，前者已提交，重试一次走更新分支
+                if (!retryDuplicates) throw e;
+                transactionStatsDao.addStats(delta);
+            }
+        }
+    }
+
+    /**
+     * 同上，语句加入批量执行器的批次后立即发送；调用前批次里不能有其他未发送的语句。
+     * 批次报错时看不出哪条语句失败，可能冲突时(H2)每条增量单独发送，冲突的那条重试
+     */
+    public void apply(TransactionBatchDao batchDao, Collection<Transaction> removed, Collection<Transaction> added) {
+        List<TransactionStats> deltas = deltas(removed, added);
+        if (deltas.isEmpty()) return;
+        if (!retryDuplicates) {
+            deltas.forEach(batchDao.statsMapper()::addStats);
+            batchDao.flush();
+            return;
+        }
+        for (TransactionStats delta : deltas) {
+            batchDao.statsMapper().addStats(delta);
+            try {
+                batchDao.flush();
+            } catch (DuplicateKeyException e) {
+                batchDao.statsMapper().addStats(delta);
+                batchDao.flush();
+            }
+        }
+    }
+
+    /**
+     * 按主键顺序排列的非零增量
+     */
+    private static List<TransactionStats> deltas(Collection<Transaction> removed, Collection<Transaction> added) {
+        Map<StatsKey, TransactionStats> deltas = new TreeMap<>(KEY_ORDER);
+        removed.forEach(t -> accumulate(deltas, t, -1));
+        added.forEach(t -> accumulate(deltas, t, 1));
+        return deltas.values().stream()
+                .filter(delta -> delta.getCount() != 0 || delta.getTotalAmount().signum() != 0)
+                .toList();
+    }
+
+    /**
+     * 按id区间并行汇总交易表，替换整张汇总表，返回汇总的交易笔数
+     */
+    public long rebuild() {
+        long start = System.currentTimeMillis();
+        Long minId = transactionStatsDao.selectMinId(), maxId = transactionStatsDao.selectMaxId();
+        Map<StatsKey, TransactionStats> merged = new HashMap<>();
+        if (minId != null) {
+            long width = Math.max(1L, (maxId - minId) / rebuildChunks + 1);
+            ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+            try {
+                List<CompletableFuture<List<TransactionStats>>> chunks = new ArrayList<>();
+                for (long from = minId; from <= maxId; from += width) {
+                    long lower = from, upper = Math.min(maxId, from + width - 1) + 1;
+                    chunks.add(CompletableFuture.supplyAsync(() -> transactionStatsDao.aggregateIdRange(lower, upper), executor));
+                }
+                // 同一组合会出现在多个区间里
+                chunks.forEach(chunk -> chunk.join().forEach(row -> merged.merge(StatsKey.of(row), row, (a, b) -> {
+                    a.setCount(a.getCount() + b.getCount());
+                    a.setTotalAmount(a.getTotalAmount().add(b.getTotalAmount()));
+                    return a;
+                })));
+            } finally {
+                executor.shutdown();
+            }
+        }
+        List<TransactionStats> rows = new ArrayList<>(merged.values());
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionStatsDao.deleteAll();
+            for (int i = 0; i < rows.size(); i += 1000) {
+                transactionStatsDao.insertBatch(rows.subList(i, Math.min(rows.size(), i + 1000)));
+            }
+        });
+        long transactions = rows.stream().mapToLong(TransactionStats::getCount).sum();
+        log.info("transaction stats rebuilt: {} transactions into {} rows in {}ms",
+                transactions, rows.size(), System.currentTimeMillis() - start);
+        return transactions;
+    }
+
+    private static void accumulate(Map<StatsKey, TransactionStats> deltas, Transaction transaction, int sign) {
+        // 没有创建时间的交易无法归到某一天，和重建时一致，不计入
+        if (transaction.getCreatedAt() == null) return;
+        StatsKey key = StatsKey.of(transaction);
+        BigDecimal amount = transaction.getAmount() == null ? BigDecimal.ZERO : transaction.getAmount();
+        TransactionStats delta = deltas.computeIfAbsent(key, k -> TransactionStats.builder()
+                .day(k.day())
+                .category(k.category())
+                .transactionType(k.transactionType())
+                .currency(k.currency())
+                .totalAmount(BigDecimal.ZERO)
+                .build());
+        delta.setCount(delta.getCount() + sign);
+        delta.setTotalAmount(sign > 0 ? delta.getTotalAmount().add(amount) : delta.getTotalAmount().subtract(amount));
+    }
+
+    /**
+     * 汇总行主键，分类和币种为空时记为空串
+     */
+    private record StatsKey(LocalDate day, String category, String transactionType, String currency) {
+
+        static StatsKey of(Transaction t) {
+            return new StatsKey(t.getCreatedAt().toLocalDate(), nullToEmpty(t.getCategory()), t.getTransactionType(),
+                    nullToEmpty(t.getCurrency()));
+        }
+
+        static StatsKey of(TransactionStats s) {
+            return new StatsKey(s.getDay(), s.getCategory(), s.getTransactionType(), s.getCurrency());
+        }
+
+        private static String nullToEmpty(String s) {
+            return s == null ? "" : s;
+        }
+    }
+}
@@ -24,7 +24,14 @@ public class ApiTest {
     public static void main(String[] args) {
         PORT = Integer.parseInt(args[0]);
         BASEURL = "http://localhost:" + PORT + "/api/v1/mybank/transactions";
+        if (args.length > 1 && "sweep".equals(args[1])) {
+            // java -jar apitest.jar 8080 sweep [calls per level] [async]，async 调用 /v1/mybank/async/transactions(mybank.async.enabled=true)
+            if (args.length > 3 && "async".equals(args[3])) BASEURL = "http://localhost:" + PORT + "/api/v1/mybank/async/transactions";
+            testConcurrencySweep(args.length > 2 ? Integer.parseInt(args[2]) : nums);
+            return;
+        }
         testCreateTrans();
+        testBatchCreateTrans();
         testListAllTrans();
         testUpdTrans();
         testDelTrans();
@@ -32,6 +39,7 @@ public class ApiTest {
         System.out.println("error transaction ratio: " + atomInt.intValue() * 1.0 / totalNum);
         System.out.println("total api calls: " + totalNum);
         System.out.println("createTransaction req/s: " + createTransReq);
+        System.out.println("batch createTransaction rows/s: " + batchCreateRows);
         System.out.println("getAllTransactions req/s: " + getAllTransactionsReqs);
         System.out.println("updateTransaction req/s: " + updTransReqs);
         System.out.println("deleteTransaction req/s: " + delReqs);
@@ -71,6 +79,39 @@ public class ApiTest {
         createTransReq = nums * 1000.00 / (System.currentTimeMillis() - t1);
     }
 
+    static double batchCreateRows = 0.0;
+    static int batchSize = 1000;
+
+    static void testBatchCreateTrans() {
+        var executor = Executors.newFixedThreadPool(parallelDeg);
+        int calls = nums / batchSize;
+        totalNum += calls;
+        long t1 = System.currentTimeMillis();
+        for (int i = 0; i < calls; ++i) {
+            executor.submit(() -> {
+                try {
+                    Map<String, Object> requestBody = new HashMap<>();
+                    requestBody.put("accountNumber", "1234567890123456");
+                    requestBody.put("transactionType", "DEPOSIT");
+                    requestBody.put("amount", 1000.50);
+                    requestBody.put("currency", "CNY");
+                    requestBody.put("description", "工资收入");
+                    requestBody.put("category", "SALARY");
+                    List<Map<String, Object>> batch = java.util.Collections.nCopies(batchSize, requestBody);
+
+                    HttpResponse<String> response = HttpClientUtil.post(BASEURL + "/batch", batch);
+                    if (!HttpClientUtil.isSuccess(response)) {
+                        atomInt.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    atomInt.incrementAndGet();
+                }
+            });
+        }
+        close(executor);
+        batchCreateRows = calls * batchSize * 1000.00 / (System.currentTimeMillis() - t1);
+    }
+
     static List<Long> getIdList() {
         try {
             HttpResponse<String> resp = HttpClientUtil.get(BASEURL + "/all");
@@ -178,6 +219,64 @@ public class ApiTest {
     }
 
 
+    /**
+     * 分别以 100/1000/10000 个并发客户端调用 createTransaction，输出吞吐量和延迟分位数，
+     * 用于对比服务端平台线程、虚拟线程(mybank.threads.virtual=true)和异步接口(mybank.async.enabled=true)几种模式
+     */
+    static void testConcurrencySweep(int calls) {
+        for (int clients : new int[]{100, 1000, 10000}) {
+            long[] latencies = new long[calls];
+            AtomicInteger errors = new AtomicInteger();
+            AtomicInteger busy = new AtomicInteger();
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService executor = newClientExecutor(clients);
+            long t1 = System.nanoTime();
+            for (int c = 0; c < clients; ++c) {
+                executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < calls; i = next.getAndIncrement()) {
+                        long start = System.nanoTime();
+                        try {
+                            Map<String, Object> requestBody = new HashMap<>();
+                            requestBody.put("accountNumber", "1234567890123456");
+                            requestBody.put("transactionType", "DEPOSIT");
+                            requestBody.put("amount", 1000.50);
+                            requestBody.put("currency", "CNY");
+                            requestBody.put("category", "SALARY");
+                            HttpResponse<String> response = HttpClientUtil.post(BASEURL, requestBody);
+                            // 429/503 是服务端限流，单独计数
+                            if (response.statusCode() == 429 || response.statusCode() == 503) {
+                                busy.incrementAndGet();
+                            } else if (!HttpClientUtil.isSuccess(response)) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                });
+            }
+            close(executor);
+            double seconds = (System.nanoTime() - t1) / 1e9;
+            java.util.Arrays.sort(latencies);
+            System.out.printf("clients=%d calls=%d req/s=%.1f p50=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms busy=%d errors=%d%n",
+                    clients, calls, calls / seconds,
+                    latencies[(int) (calls * 0.50)] / 1e6, latencies[(int) (calls * 0.99)] / 1e6,
+                    latencies[(int) (calls * 0.999)] / 1e6, latencies[calls - 1] / 1e6, busy.get(), errors.get());
+        }
+    }
+
+    /**
+     * 客户端在支持虚拟线程的JDK上每个并发用一个虚拟线程，否则用同样大小的平台线程池
+     */
+    private static ExecutorService newClientExecutor(int clients) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(clients);
+        }
+    }
+
     private static void close(ExecutorService executor) {
         executor.shutdown();
         try {
@@ -0,0 +1,52 @@
+-- 交易表(PostgreSQL，postgres profile)
+CREATE TABLE IF NOT EXISTS t_r_transaction (
+    id BIGINT PRIMARY KEY,
+    account_number VARCHAR(50) NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    amount NUMERIC(15,2) NOT NULL,
+    currency VARCHAR(3) DEFAULT 'CNY',
+    description VARCHAR(500),
+    category VARCHAR(50),
+    status VARCHAR(20) DEFAULT 'COMPLETED',
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0
+) WITH (fillfactor = 90);
+
+-- 升级前建的表没有 version 列，更新按 version 做乐观锁
+ALTER TABLE t_r_transaction ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- 按账户的游标分页走 (account_number, id)，按账户加时间范围可以走 (account_number, created_at)，
+-- 两者的最左前缀都能按 account_number 查询，不再单独建 account_number 索引
+CREATE INDEX IF NOT EXISTS idx_transaction_account_id ON t_r_transaction (account_number, id);
+CREATE INDEX IF NOT EXISTS idx_transaction_account_created ON t_r_transaction (account_number, created_at);
+CREATE INDEX IF NOT EXISTS idx_transaction_created ON t_r_transaction (created_at);
+CREATE INDEX IF NOT EXISTS idx_transaction_status ON t_r_transaction (status);
+
+-- 账户余额，随交易的创建/更新/删除在同一事务内增减，version 每次变动加一
+CREATE TABLE IF NOT EXISTS t_r_account_balance (
+    account_number VARCHAR(50) PRIMARY KEY,
+    balance NUMERIC(19,2) NOT NULL,
+    version BIGINT NOT NULL,
+    updated_at TIMESTAMP
+);
+
+-- 按天、分类、类型、币种汇总的交易笔数和金额，随交易写入在同一事务内增减；分类/币种为空时记为空串
+CREATE TABLE IF NOT EXISTS t_r_transaction_daily_stats (
+    stat_date DATE NOT NULL,
+    category VARCHAR(50) NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    tx_count BIGINT NOT NULL,
+    total_amount NUMERIC(19,2) NOT NULL,
+    PRIMARY KEY (stat_date, category, transaction_type, currency)
+);
+
+-- POST /transactions 的 Idempotency-Key 到所建交易的映射，和交易在同一事务内写入，过期后定时清理
+CREATE TABLE IF NOT EXISTS t_r_idempotency_key (
+    idempotency_key VARCHAR(128) PRIMARY KEY,
+    transaction_id BIGINT NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_key_created ON t_r_idempotency_key (created_at);
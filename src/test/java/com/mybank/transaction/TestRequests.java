@@ -0,0 +1,26 @@
+package com.mybank.transaction;
+
+import com.mybank.transaction.domain.TransactionRequest;
+
+import java.math.BigDecimal;
+
+/**
+ * 测试公用的交易请求
+ */
+public final class TestRequests {
+
+    private TestRequests() {
+    }
+
+    /**
+     * 向 accountNumber 存入 amount 元人民币
+     */
+    public static TransactionRequest deposit(String accountNumber, String amount) {
+        return TransactionRequest.builder()
+                .accountNumber(accountNumber)
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal(amount))
+                .currency("CNY")
+                .build();
+    }
+}
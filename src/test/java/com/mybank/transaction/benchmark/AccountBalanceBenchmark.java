@@ -0,0 +1,81 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.domain.AccountBalance;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.service.AccountBalanceService;
+import com.mybank.transaction.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 8个线程并发创建交易并维护账户余额
+ * <p>
+ * accounts=1 时所有写入落在同一个余额行上互相等待，accounts=1024 时分散到不同的行；
+ * balance 读取已在内存里的余额
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class AccountBalanceBenchmark {
+
+    @Param({"1", "1024"})
+    int accounts;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private AccountBalanceService accountBalanceService;
+    private TransactionRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("balancebench");
+        transactionService = context.getBean(TransactionService.class);
+        accountBalanceService = context.getBean(AccountBalanceService.class);
+        requests = new TransactionRequest[accounts];
+        for (int i = 0; i < accounts; ++i) {
+            requests[i] = TransactionRequest.builder()
+                    .accountNumber(String.valueOf(6200000000000000L + i))
+                    .transactionType(i % 2 == 0 ? "DEPOSIT" : "PAYMENT")
+                    .amount(new BigDecimal("100.00"))
+                    .currency("CNY")
+                    .category("SALARY")
+                    .build();
+            transactionService.createTransaction(requests[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction create() {
+        return transactionService.createTransaction(requests[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public AccountBalance balance() {
+        return accountBalanceService.getBalance(requests[ThreadLocalRandom.current().nextInt(accounts)].getAccountNumber());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(AccountBalanceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
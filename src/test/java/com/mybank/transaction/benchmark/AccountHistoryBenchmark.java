@@ -0,0 +1,118 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.AccountPageRequest;
+import com.mybank.transaction.domain.CursorPageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按账户查询交易
+ * <p>
+ * rows 行均匀分布在 accounts 个账户上，每次随机取一个账户查第一页(20条)。
+ * dao 直接查库，range 再加一天的创建时间范围，service 经过账户分页缓存(账户随机分布，大部分不在缓存里)，
+ * serviceHot 只查1%的热点账户；
+ * accountIdIndex=false 时删掉 (account_number, id) 索引，只剩 (account_number, created_at)，对比排序的开销。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AccountHistoryBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"200000", "1000"})
+    int accounts;
+
+    @Param({"true", "false"})
+    boolean accountIdIndex;
+
+    private ConfigurableApplicationContext context;
+    private TransactionDao transactionDao;
+    private TransactionService transactionService;
+    private AccountPageRequest firstPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("accountbench");
+        transactionDao = context.getBean(TransactionDao.class);
+        transactionService = context.getBean(TransactionService.class);
+        if (!accountIdIndex) {
+            context.getBean(JdbcTemplate.class).execute("DROP INDEX idx_transaction_account_id");
+        }
+        // 每个账户的交易按id依次分布在一年里
+        List<Transaction> chunk = new ArrayList<>(1000);
+        for (long id = 1; id <= rows; ++id) {
+            chunk.add(BenchmarkSupport.transaction(id).toBuilder()
+                    .accountNumber(account((int) (id % accounts)))
+                    .createdAt(START.plusMinutes(id * 525600 / rows))
+                    .build());
+            if (chunk.size() == 1000) {
+                transactionDao.insTranBatch(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) transactionDao.insTranBatch(chunk);
+        firstPage = new AccountPageRequest(null, 20, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Transaction> dao() {
+        return transactionDao.selectByAccount(randomAccount(), 0L, null, null, 21);
+    }
+
+    @Benchmark
+    public List<Transaction> range() {
+        LocalDateTime from = START.plusDays(ThreadLocalRandom.current().nextInt(364));
+        return transactionDao.selectByAccount(randomAccount(), 0L, from, from.plusDays(1), 21);
+    }
+
+    @Benchmark
+    public CursorPageResponse<Transaction> service() {
+        return transactionService.getAccountTransactions(randomAccount(), firstPage);
+    }
+
+    @Benchmark
+    public CursorPageResponse<Transaction> serviceHot() {
+        return transactionService.getAccountTransactions(account(ThreadLocalRandom.current().nextInt(accounts / 100)), firstPage);
+    }
+
+    private String randomAccount() {
+        return account(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    private static String account(int n) {
+        return String.valueOf(6200000000000000L + n);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(AccountHistoryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
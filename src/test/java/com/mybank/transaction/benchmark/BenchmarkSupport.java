@@ -0,0 +1,82 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.TransactionManagementApplication;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试公用的启动和造数方法
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 启动不带web容器的应用，每个基准测试使用独立的内存库
+     */
+    static ConfigurableApplicationContext start(String database, String... properties) {
+        List<String> props = new ArrayList<>(List.of(properties));
+        props.add("spring.datasource.url=jdbc:h2:mem:" + database + ";LAZY_QUERY_EXECUTION=TRUE");
+        return run(props);
+    }
+
+    /**
+     * 按 profile 启动(h2file、postgres)，数据源由 profile 和 properties 决定
+     */
+    static ConfigurableApplicationContext startProfile(String profile, String... properties) {
+        List<String> props = new ArrayList<>(List.of(properties));
+        props.add("spring.profiles.active=" + profile);
+        return run(props);
+    }
+
+    /**
+     * 以命令行参数传入，优先级高于 application.properties 和 profile 配置
+     */
+    private static ConfigurableApplicationContext run(List<String> properties) {
+        List<String> args = new ArrayList<>();
+        for (String property : properties) args.add("--" + property);
+        args.add("--logging.level.root=WARN");
+        return new SpringApplicationBuilder(TransactionManagementApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    static Transaction transaction(long id) {
+        return Transaction.builder()
+                .id(id)
+                .tid(String.valueOf(id))
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("100.00"))
+                .currency("CNY")
+                .description("benchmark")
+                .category("SALARY")
+                .status("COMPLETED")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 直接通过DAO按 id 1..rows 批量插入
+     */
+    static void load(TransactionDao transactionDao, int rows) {
+        List<Transaction> chunk = new ArrayList<>(1000);
+        for (long id = 1; id <= rows; ++id) {
+            chunk.add(transaction(id));
+            if (chunk.size() == 1000) {
+                transactionDao.insTranBatch(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) transactionDao.insTranBatch(chunk);
+    }
+}
@@ -0,0 +1,133 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 三种存储的造数和启动耗时
+ * <p>
+ * bulkLoad 在空表里按1000行一批插入 rows 行；restart 启动应用并统计行数，
+ * 内存库每次启动都要重新造数，h2file 和 postgres 直接打开已有数据。
+ * postgres 使用嵌入式实例，h2file 的数据放在临时目录。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DataLoadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Store {
+
+        @Param({"h2mem", "h2file", "postgres"})
+        String store;
+
+        @Param({"100000"})
+        int rows;
+
+        private EmbeddedPostgres postgres;
+        private Path dataDir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            if ("postgres".equals(store)) {
+                postgres = EmbeddedPostgres.builder().start();
+            } else if ("h2file".equals(store)) {
+                dataDir = Files.createTempDirectory("mybank-bench");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (postgres != null) postgres.close();
+            if (dataDir != null) FileSystemUtils.deleteRecursively(dataDir);
+        }
+
+        boolean persistent() {
+            return !"h2mem".equals(store);
+        }
+
+        ConfigurableApplicationContext start() {
+            return switch (store) {
+                case "postgres" -> BenchmarkSupport.startProfile("postgres",
+                        "spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                        "spring.datasource.username=postgres");
+                case "h2file" -> BenchmarkSupport.startProfile("h2file", "mybank.data-dir=" + dataDir);
+                default -> BenchmarkSupport.start("loadbench");
+            };
+        }
+    }
+
+    /**
+     * 每轮一个清空了的表
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyTable {
+
+        ConfigurableApplicationContext context;
+
+        @Setup(Level.Iteration)
+        public void setUp(Store store) {
+            context = store.start();
+            context.getBean(JdbcTemplate.class).execute("TRUNCATE TABLE t_r_transaction");
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    /**
+     * 持久化存储先造好 rows 行再关闭应用
+     */
+    @State(Scope.Benchmark)
+    public static class LoadedTable {
+
+        @Setup(Level.Trial)
+        public void setUp(Store store) {
+            if (!store.persistent()) return;
+            try (ConfigurableApplicationContext context = store.start()) {
+                context.getBean(JdbcTemplate.class).execute("TRUNCATE TABLE t_r_transaction");
+                BenchmarkSupport.load(context.getBean(TransactionDao.class), store.rows);
+            }
+        }
+    }
+
+    @Benchmark
+    public long bulkLoad(Store store, EmptyTable table) {
+        TransactionDao transactionDao = table.context.getBean(TransactionDao.class);
+        BenchmarkSupport.load(transactionDao, store.rows);
+        return transactionDao.countTotal();
+    }
+
+    @Benchmark
+    public long restart(Store store, LoadedTable table) {
+        try (ConfigurableApplicationContext context = store.start()) {
+            TransactionDao transactionDao = context.getBean(TransactionDao.class);
+            if (!store.persistent()) BenchmarkSupport.load(transactionDao, store.rows);
+            return transactionDao.countTotal();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(DataLoadBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
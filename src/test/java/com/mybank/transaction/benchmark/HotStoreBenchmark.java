@@ -0,0 +1,114 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.domain.BatchItemResult;
+import com.mybank.transaction.domain.PageRequest;
+import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.service.TransactionHotStore;
+import com.mybank.transaction.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热数据层和 Caffeine 分页缓存的对比
+ * <p>
+ * 通过服务写入 rows 条，tier=hotstore 时全部放进堆外热数据层，tier=cache 时分页缓存放得下所有页。
+ * 预热时把每一页都读一遍，然后 Full GC 后打印堆和堆外内存的占用(两种方式下 H2 自身占的堆相同，看差值)；
+ * page 随机读一页 20 条，byId 随机按id查询。加 -prof gc 可以看到每次调用的分配量和 GC 次数/时间：
+ * mvn -Pjmh verify -Djmh.includes=HotStoreBenchmark -Djmh.args="-prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-XX:MaxDirectMemorySize=2g"})
+@State(Scope.Benchmark)
+public class HotStoreBenchmark {
+
+    private static final int SIZE = 20;
+
+    @Param({"hotstore", "cache"})
+    String tier;
+
+    @Param({"1000000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean hot = "hotstore".equals(tier);
+        context = BenchmarkSupport.start("hotstorebench",
+                "mybank.hot-store.enabled=" + hot,
+                "mybank.hot-store.capacity=" + (rows + rows / 7 + 1024),
+                "mybank.cache.transactions.maximum-weight-mb=4096",
+                "mybank.cache.transaction.maximum-weight-mb=4096");
+        transactionService = context.getBean(TransactionService.class);
+        ids = new long[rows];
+        List<TransactionRequest> chunk = new ArrayList<>(1000);
+        int n = 0;
+        while (n < rows) {
+            chunk.clear();
+            for (int i = 0; i < Math.min(1000, rows - n); ++i) {
+                chunk.add(TransactionRequest.builder()
+                        .accountNumber(String.valueOf(6_222_000_000_000_000L + (n + i) % 50_000))
+                        .transactionType((n + i) % 3 == 0 ? "WITHDRAWAL" : "DEPOSIT")
+                        .amount(BigDecimal.valueOf(100 + (n + i) % 100_000, 2))
+                        .currency("CNY")
+                        .description("benchmark transaction " + (n + i))
+                        .category("SALARY")
+                        .build());
+            }
+            for (BatchItemResult<Transaction> result : transactionService.createTransactions(chunk)) {
+                ids[n++] = result.getData().getId();
+            }
+        }
+        for (int page = 1; page <= rows / SIZE; ++page) transactionService.getAllTransactions(new PageRequest(page, SIZE));
+        for (long id : ids) transactionService.getTransaction(id);
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+        System.out.printf("%n[%s] %d rows, heap used after full GC: %d MB, direct: %d MB, hot store rows: %d%n",
+                tier, rows, heap >> 20, direct >> 20, context.getBean(TransactionHotStore.class).size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PageResponse<Transaction> page() {
+        return transactionService.getAllTransactions(new PageRequest(ThreadLocalRandom.current().nextInt(1, rows / SIZE + 1), SIZE));
+    }
+
+    @Benchmark
+    public Transaction byId() {
+        return transactionService.getTransaction(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(HotStoreBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.service.TransactionJournal;
+import com.mybank.transaction.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存库从持久化日志恢复的耗时
+ * <p>
+ * 准备阶段通过DAO插入 rows 行并做一次快照，再通过服务写入 10,000 笔只在日志里的交易；
+ * recover 用一个新的内存库启动应用，计时包括读快照和日志、并行插入，以及余额、日汇总、搜索索引等从交易表的重建，
+ * 即应用可以开始接收请求之前的全部时间。replay-threads 对比单线程和多线程插入。
+ * mvn -Pjmh verify -Djmh.includes=JournalRecoveryBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g"})
+@State(Scope.Benchmark)
+public class JournalRecoveryBenchmark {
+
+    private static final int JOURNAL_ROWS = 10_000;
+
+    @Param({"1000000", "10000000"})
+    int rows;
+
+    @Param({"1", "4"})
+    int replayThreads;
+
+    private Path dir;
+    private int restarts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mybank-journal-bench");
+        try (ConfigurableApplicationContext context = start()) {
+            BenchmarkSupport.load(context.getBean(TransactionDao.class), rows);
+            context.getBean(TransactionJournal.class).snapshot();
+            TransactionService transactionService = context.getBean(TransactionService.class);
+            List<TransactionRequest> chunk = new ArrayList<>(1000);
+            for (int i = 0; i < JOURNAL_ROWS; ++i) {
+                chunk.add(TransactionRequest.builder()
+                        .accountNumber("1234567890123456")
+                        .transactionType("DEPOSIT")
+                        .amount(new BigDecimal("100.00"))
+                        .currency("CNY")
+                        .description("journal " + i)
+                        .category("SALARY")
+                        .build());
+                if (chunk.size() == 1000) {
+                    transactionService.createTransactions(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public long recover() {
+        try (ConfigurableApplicationContext context = start()) {
+            long total = context.getBean(TransactionDao.class).countTotal();
+            if (total != rows + JOURNAL_ROWS) throw new IllegalStateException("recovered " + total + " rows");
+            return total;
+        }
+    }
+
+    /**
+     * 每次启动一个新的内存库，上一次的库在应用关闭时释放
+     */
+    private ConfigurableApplicationContext start() {
+        return BenchmarkSupport.start("journalbench" + restarts++,
+                "mybank.journal.enabled=true",
+                "mybank.journal.dir=" + dir,
+                "mybank.journal.snapshot-interval-ms=0",
+                "mybank.journal.replay-threads=" + replayThreads);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JournalRecoveryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
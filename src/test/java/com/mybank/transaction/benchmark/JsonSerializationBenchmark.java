@@ -0,0 +1,67 @@
+package com.mybank.transaction.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mybank.transaction.domain.ApiResponse;
+import com.mybank.transaction.domain.PageCursor;
+import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ApiResponse&lt;PageResponse&lt;Transaction&gt;&gt; 的 JSON 序列化，ObjectMapper 和 Spring MVC 默认配置相同
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"20", "100"})
+    int size;
+
+    private ObjectMapper objectMapper;
+    private ApiResponse<PageResponse<Transaction>> response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<Transaction> content = new ArrayList<>(size);
+        for (int i = 1; i <= size; ++i) {
+            content.add(BenchmarkSupport.transaction(572601420457443328L + i));
+        }
+        response = ApiResponse.success(PageResponse.<Transaction>builder()
+                .content(content)
+                .page(1)
+                .size(size)
+                .totalElements(10000)
+                .totalPages(10000 / size)
+                .hasNext(true)
+                .hasPrevious(false)
+                .nextCursor(PageCursor.encode(content.get(size - 1).getId()))
+                .build());
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JsonSerializationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
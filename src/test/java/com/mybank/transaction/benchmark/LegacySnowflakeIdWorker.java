@@ -0,0 +1,51 @@
+package com.mybank.transaction.benchmark;
+
+/**
+ * 旧版 synchronized 雪花算法生成器，仅作为基准测试的对照组
+ */
+public class LegacySnowflakeIdWorker {
+    private final long startTime = 1619507543519L;
+    private final long workIdBits = 5L;
+    private final long dataIdBits = 5L;
+    private final long sequenceBits = 12L;
+    private final long dataShiftBits = sequenceBits + workIdBits;
+    private final long timestampLeftShift = dataShiftBits + dataIdBits;
+    private final long maxSequence = -1 ^ (-1 << sequenceBits);
+    private final long workerId;
+    private final long dataId;
+    private long sequence = 0L;
+    private long lastTimeStamp = -1L;
+
+    public LegacySnowflakeIdWorker(long workerId, long dataId) {
+        this.workerId = workerId;
+        this.dataId = dataId;
+    }
+
+    public synchronized long genNextId() {
+        long timeStamp = System.currentTimeMillis();
+        if (timeStamp < this.lastTimeStamp) {
+            throw new RuntimeException(String.format("System clock moved;currentTimeStamp %d,lastTimeStamp = %d", timeStamp, this.lastTimeStamp));
+        }
+        if (timeStamp == this.lastTimeStamp) {
+            this.sequence = (this.sequence + 1) & maxSequence;
+            if (this.sequence == 0) {
+                timeStamp = this.toNextMillis(this.lastTimeStamp);
+            }
+        } else {
+            this.sequence = 0L;
+        }
+        this.lastTimeStamp = timeStamp;
+        return ((timeStamp - startTime) << timestampLeftShift)
+                | (dataId << dataShiftBits)
+                | (workerId << sequenceBits)
+                | sequence;
+    }
+
+    private long toNextMillis(long lastTimeStamp) {
+        long timeStamp = System.currentTimeMillis();
+        while (timeStamp <= lastTimeStamp) {
+            timeStamp = System.currentTimeMillis();
+        }
+        return timeStamp;
+    }
+}
@@ -0,0 +1,87 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionResultMap 的结果映射开销
+ * <p>
+ * mybatis 走 TransactionDao.selectByPage，jdbc 用同样的SQL手写 RowMapper，两者之差约为 MyBatis 映射和插件的开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MybatisMappingBenchmark {
+
+    private static final String SQL = "SELECT t2.id, t2.id as tid, t2.account_number, t2.transaction_type, t2.amount, t2.currency,"
+            + " t2.description, t2.category, t2.status, t2.created_at, t2.updated_at"
+            + " FROM (select id from t_r_transaction order by id LIMIT ? OFFSET ?) as t1"
+            + " JOIN t_r_transaction t2 on t1.id = t2.id order by id";
+
+    @Param({"20", "100"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionDao transactionDao;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("mappingbench");
+        transactionDao = context.getBean(TransactionDao.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkSupport.load(transactionDao, 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Transaction> mybatis() {
+        return transactionDao.selectByPage(0, rows);
+    }
+
+    @Benchmark
+    public List<Transaction> jdbc() {
+        return jdbcTemplate.query(SQL, (rs, i) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            Timestamp updatedAt = rs.getTimestamp("updated_at");
+            return Transaction.builder()
+                    .id(rs.getLong("id"))
+                    .tid(rs.getString("tid"))
+                    .accountNumber(rs.getString("account_number"))
+                    .transactionType(rs.getString("transaction_type"))
+                    .amount(rs.getBigDecimal("amount"))
+                    .currency(rs.getString("currency"))
+                    .description(rs.getString("description"))
+                    .category(rs.getString("category"))
+                    .status(rs.getString("status"))
+                    .createdAt(createdAt == null ? null : createdAt.toLocalDateTime())
+                    .updatedAt(updatedAt == null ? null : updatedAt.toLocalDateTime())
+                    .build();
+        }, rows, 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MybatisMappingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LIMIT/OFFSET 分页和游标分页在第1页与第10000页的延迟对比
+ * <p>
+ * 直接调用DAO绕过缓存，数据量 = 10000页 * 20条 + 1页
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+
+    private static final int SIZE = 20;
+
+    @Param({"1", "10000"})
+    int page;
+
+    private ConfigurableApplicationContext context;
+    private TransactionDao transactionDao;
+    private int offset;
+    private long afterId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("paginationbench");
+        transactionDao = context.getBean(TransactionDao.class);
+        BenchmarkSupport.load(transactionDao, (10000 + 1) * SIZE);
+
+        offset = (page - 1) * SIZE;
+        afterId = offset == 0 ? 0L : transactionDao.selectByPage(offset - 1, 1).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Transaction> offset() {
+        return transactionDao.selectByPage(offset, SIZE);
+    }
+
+    @Benchmark
+    public List<Transaction> keyset() {
+        return transactionDao.selectAfter(afterId, SIZE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PaginationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,134 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.CursorPageResponse;
+import com.mybank.transaction.domain.SearchRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.service.TransactionSearchIndex;
+import com.mybank.transaction.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易搜索
+ * <p>
+ * rows 行的描述由商户名和备注组成(中英文混合)，分布在8个分类、3种状态、一年时间上。
+ * keyword 查一个较少出现的中文商户，combined 是常见词加状态、分类、金额和时间范围，
+ * scan 是不用索引、直接在交易表上 LIKE 的对照，search 含按id回表，rebuild 从交易表重建整个索引
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] MERCHANTS = {"星巴克咖啡", "Starbucks", "美团外卖", "滴滴出行", "Uber trip", "京东商城",
+            "Amazon order", "国家电网", "中国移动", "Apple Store", "盒马鲜生", "携程旅行", "全家便利店", "Shell gas"};
+    private static final String[] NOTES = {"", "月结", "refund pending", "午餐", "team dinner", "报销", "monthly", "家用"};
+    private static final String[] CATEGORIES = {"FOOD", "RENT", "SALARY", "TRAVEL", "SHOPPING", "UTILITIES", "HEALTH", "OTHER"};
+    private static final String[] STATUSES = {"COMPLETED", "PENDING", "FAILED"};
+
+    @Param({"1000000"})
+    int rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private TransactionSearchIndex searchIndex;
+    private JdbcTemplate jdbcTemplate;
+    private SearchRequest keyword, combined;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("searchbench");
+        TransactionDao transactionDao = context.getBean(TransactionDao.class);
+        transactionService = context.getBean(TransactionService.class);
+        searchIndex = context.getBean(TransactionSearchIndex.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Transaction> chunk = new ArrayList<>(1000);
+        for (long id = 1; id <= rows; ++id) {
+            // 商户按平方分布，靠后的商户出现得少
+            int merchant = (int) (Math.pow((id * 2654435761L % 1000) / 1000.0, 2) * MERCHANTS.length);
+            chunk.add(BenchmarkSupport.transaction(id).toBuilder()
+                    .description(MERCHANTS[merchant] + " " + NOTES[(int) (id % NOTES.length)])
+                    .category(CATEGORIES[(int) (id % CATEGORIES.length)])
+                    .status(STATUSES[(int) (id * 7 % STATUSES.length)])
+                    .amount(BigDecimal.valueOf(id * 7919 % 100_000, 2))
+                    .createdAt(START.plusMinutes(id * 525600 / rows))
+                    .build());
+            if (chunk.size() == 1000) {
+                transactionDao.insTranBatch(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) transactionDao.insTranBatch(chunk);
+        searchIndex.rebuild();
+        keyword = SearchRequest.builder().q("全家").size(20).build();
+        combined = SearchRequest.builder()
+                .q("星巴克")
+                .status("COMPLETED")
+                .category("FOOD")
+                .minAmount(new BigDecimal("100"))
+                .maxAmount(new BigDecimal("500"))
+                .from(START.plusMonths(6))
+                .to(START.plusMonths(9))
+                .size(20)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Long> keyword() {
+        return searchIndex.search(keyword, 0, 21);
+    }
+
+    @Benchmark
+    public List<Long> combined() {
+        return searchIndex.search(combined, 0, 21);
+    }
+
+    @Benchmark
+    public CursorPageResponse<Transaction> search() {
+        return transactionService.searchTransactions(combined);
+    }
+
+    @Benchmark
+    public List<?> scan() {
+        return jdbcTemplate.queryForList("SELECT id FROM t_r_transaction WHERE description LIKE '%星巴克%' "
+                + "AND status = 'COMPLETED' AND category = 'FOOD' AND amount BETWEEN 100 AND 500 "
+                + "AND created_at >= '2024-07-01' AND created_at < '2024-10-01' ORDER BY id LIMIT 21");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int rebuild() {
+        return searchIndex.rebuild();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
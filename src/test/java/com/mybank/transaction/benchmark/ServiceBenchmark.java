@@ -0,0 +1,76 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.domain.PageRequest;
+import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionService 创建和分页查询，经过缓存、计数器和内存H2，和线上调用路径一致(不含web层)
+ * <p>
+ * 预先通过服务写入10000条，分页查询在前100页中随机取页
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private TransactionRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("servicebench");
+        transactionService = context.getBean(TransactionService.class);
+        request = TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("100.00"))
+                .currency("CNY")
+                .description("benchmark")
+                .category("SALARY")
+                .build();
+        List<TransactionRequest> chunk = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; ++i) chunk.add(request);
+        for (int i = 0; i < 10; ++i) transactionService.createTransactions(chunk);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction createTransaction() {
+        return transactionService.createTransaction(request);
+    }
+
+    @Benchmark
+    public PageResponse<Transaction> getAllTransactions() {
+        return transactionService.getAllTransactions(new PageRequest(ThreadLocalRandom.current().nextInt(1, 101), 20));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,63 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.service.SnowflakeIdWorker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新旧雪花算法生成器的吞吐量对比
+ * <p>
+ * 运行: java -cp target/test-classes:&lt;test classpath&gt; com.mybank.transaction.benchmark.SnowflakeIdWorkerBenchmark
+ * 分别以 1/8/64/500 线程运行 legacy(synchronized)、cas、cas+每线程分段 三种生成方式
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdWorkerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LegacyState {
+        LegacySnowflakeIdWorker worker = new LegacySnowflakeIdWorker(0, 0);
+    }
+
+    @State(Scope.Benchmark)
+    public static class CasState {
+        @Param({"1", "256"})
+        int blockSize;
+
+        SnowflakeIdWorker worker;
+
+        @Setup
+        public void setUp() {
+            worker = new SnowflakeIdWorker();
+            worker.init(0, 0, blockSize);
+        }
+    }
+
+    @Benchmark
+    public long legacy(LegacyState state) {
+        return state.worker.genNextId();
+    }
+
+    @Benchmark
+    public long cas(CasState state) {
+        return state.worker.genNextId();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8, 64, 500}) {
+            Options opt = new OptionsBuilder()
+                    .include(SnowflakeIdWorkerBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(opt).run();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mybank.transaction.benchmark;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionStats;
+import com.mybank.transaction.service.TransactionStatsService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易日汇总
+ * <p>
+ * rows 行分布在一年、8个分类、7种类型、2个币种上。month 按全部维度查一个月，year 按天查全年，
+ * scan 是不用汇总表、直接在交易表上 GROUP BY 一个月的对照，rebuild 按id区间并行重建整张汇总表
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class StatsBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] CATEGORIES = {"FOOD", "RENT", "SALARY", "TRAVEL", "SHOPPING", "UTILITIES", "HEALTH", "OTHER"};
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAWAL", "TRANSFER", "PAYMENT", "REFUND", "FEE", "INTEREST"};
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"1", "4"})
+    int rebuildThreads;
+
+    private ConfigurableApplicationContext context;
+    private TransactionStatsService transactionStatsService;
+    private JdbcTemplate jdbcTemplate;
+    private StatsRequest month, year;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkSupport.start("statsbench", "mybank.stats.rebuild-threads=" + rebuildThreads);
+        TransactionDao transactionDao = context.getBean(TransactionDao.class);
+        transactionStatsService = context.getBean(TransactionStatsService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Transaction> chunk = new ArrayList<>(1000);
+        for (long id = 1; id <= rows; ++id) {
+            chunk.add(BenchmarkSupport.transaction(id).toBuilder()
+                    .category(CATEGORIES[(int) (id % CATEGORIES.length)])
+                    .transactionType(TYPES[(int) (id % TYPES.length)])
+                    .currency(id % 10 == 0 ? "USD" : "CNY")
+                    .createdAt(START.plusMinutes(id * 525600 / rows))
+                    .build());
+            if (chunk.size() == 1000) {
+                transactionDao.insTranBatch(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) transactionDao.insTranBatch(chunk);
+        transactionStatsService.rebuild();
+        month = new StatsRequest(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31),
+                List.of("day", "category", "transactionType", "currency"), null, null, null);
+        year = new StatsRequest(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31), List.of("day"), null, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<TransactionStats> month() {
+        return transactionStatsService.getStats(month);
+    }
+
+    @Benchmark
+    public List<TransactionStats> year() {
+        return transactionStatsService.getStats(year);
+    }
+
+    @Benchmark
+    public List<?> scan() {
+        return jdbcTemplate.queryForList("SELECT CAST(created_at AS DATE), category, transaction_type, currency, COUNT(*), SUM(amount) "
+                + "FROM t_r_transaction WHERE created_at >= '2024-03-01' AND created_at < '2024-04-01' "
+                + "GROUP BY CAST(created_at AS DATE), category, transaction_type, currency");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long rebuild() {
+        return transactionStatsService.rebuild();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(StatsBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
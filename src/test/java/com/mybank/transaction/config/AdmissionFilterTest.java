@@ -0,0 +1,59 @@
+package com.mybank.transaction.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求准入限流测试
+ */
+class AdmissionFilterTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void rejectsWhenNoPermitWithinMaxWait() throws Exception {
+        AdmissionFilter filter = new AdmissionFilter(1, 0, 3, objectMapper);
+        MockHttpServletResponse inner = new MockHttpServletResponse();
+
+        // 第一个请求占着唯一的许可时，第二个请求拿不到许可
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                try {
+                    filter.doFilter(new MockHttpServletRequest("GET", "/v1/mybank/transactions"), inner, new MockFilterChain());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        MockHttpServletResponse outer = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/v1/mybank/transactions"), outer, new MockFilterChain(servlet));
+
+        assertEquals(200, outer.getStatus());
+        assertEquals(503, inner.getStatus());
+        assertEquals("3", inner.getHeader("Retry-After"));
+        assertTrue(inner.getContentAsString().contains("\"success\":false"));
+
+        // 许可释放后可以再次进入
+        MockHttpServletResponse again = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/v1/mybank/transactions"), again, new MockFilterChain());
+        assertEquals(200, again.getStatus());
+    }
+
+    @Test
+    void invalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(0, 0, 1, objectMapper));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(1, -1, 1, objectMapper));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(1, 0, -1, objectMapper));
+    }
+}
@@ -0,0 +1,55 @@
+package com.mybank.transaction.config;
+
+import com.mybank.transaction.domain.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存权重估算测试
+ */
+class CacheWeigherTest {
+
+    private final CacheWeigher weigher = new CacheWeigher();
+
+    @Test
+    void weigh_growsWithPageSize() {
+        List<Transaction> one = page(1), hundred = page(100);
+        int w1 = weigher.weigh("all_1_1_1", one);
+        int w100 = weigher.weigh("all_1_100_100", hundred);
+
+        assertTrue(w1 > 300 && w1 < 1000, "one transaction weighs " + w1);
+        assertTrue(w100 > 80L * w1 && w100 < 110L * w1, "page of 100 weighs " + w100);
+    }
+
+    @Test
+    void weigh_nullValueIsSmall() {
+        assertTrue(weigher.weigh(1L, NullValue.INSTANCE) < 64);
+    }
+
+    private List<Transaction> page(int size) {
+        List<Transaction> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            long id = 572601420457443328L + i;
+            rows.add(Transaction.builder()
+                    .id(id)
+                    .tid(String.valueOf(id))
+                    .accountNumber("1234567890123456")
+                    .transactionType("DEPOSIT")
+                    .amount(new BigDecimal("1000.00"))
+                    .currency("CNY")
+                    .description("test deposit")
+                    .category("SALARY")
+                    .status("COMPLETED")
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        return rows;
+    }
+}
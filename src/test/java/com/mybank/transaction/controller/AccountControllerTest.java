@@ -0,0 +1,114 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.AccountBalance;
+import com.mybank.transaction.domain.AccountPageRequest;
+import com.mybank.transaction.domain.CursorPageResponse;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.AccountNotFoundException;
+import com.mybank.transaction.exception.GlobalExceptionHandler;
+import com.mybank.transaction.service.AccountBalanceService;
+import com.mybank.transaction.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * AccountController 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class AccountControllerTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private AccountBalanceService accountBalanceService;
+
+    @InjectMocks
+    private AccountController accountController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(accountController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void testGetAccountTransactions_Success() throws Exception {
+        CursorPageResponse<Transaction> page = CursorPageResponse.<Transaction>builder()
+                .content(List.of(Transaction.builder().id(7L).accountNumber("1234567890123456").build()))
+                .size(10)
+                .hasNext(false)
+                .build();
+        when(transactionService.getAccountTransactions(eq("1234567890123456"), any(AccountPageRequest.class))).thenReturn(page);
+
+        mockMvc.perform(get("/v1/mybank/accounts/1234567890123456/transactions")
+                        .param("size", "10")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.content[0].id").value(7))
+                .andExpect(jsonPath("$.data.hasNext").value(false));
+
+        ArgumentCaptor<AccountPageRequest> captor = ArgumentCaptor.forClass(AccountPageRequest.class);
+        verify(transactionService).getAccountTransactions(eq("1234567890123456"), captor.capture());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0), captor.getValue().getFrom());
+        assertEquals(LocalDateTime.of(2024, 2, 1, 0, 0), captor.getValue().getTo());
+        assertEquals(10, captor.getValue().getSize());
+    }
+
+    @Test
+    void testGetAccountTransactions_InvalidRange() throws Exception {
+        mockMvc.perform(get("/v1/mybank/accounts/1234567890123456/transactions")
+                        .param("from", "2024-02-01T00:00:00")
+                        .param("to", "2024-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+
+        verify(transactionService, never()).getAccountTransactions(anyString(), any());
+    }
+
+    @Test
+    void testGetAccountBalance_Success() throws Exception {
+        when(accountBalanceService.getBalance("1234567890123456")).thenReturn(AccountBalance.builder()
+                .accountNumber("1234567890123456")
+                .balance(new BigDecimal("-12.50"))
+                .version(3)
+                .build());
+
+        mockMvc.perform(get("/v1/mybank/accounts/1234567890123456/balance"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.accountNumber").value("1234567890123456"))
+                .andExpect(jsonPath("$.data.balance").value(-12.50))
+                .andExpect(jsonPath("$.data.version").doesNotExist());
+    }
+
+    @Test
+    void testGetAccountBalance_NotFound() throws Exception {
+        when(accountBalanceService.getBalance("1234567890123456"))
+                .thenThrow(new AccountNotFoundException("account doesn't exist: 1234567890123456"));
+
+        mockMvc.perform(get("/v1/mybank/accounts/1234567890123456/balance"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+}
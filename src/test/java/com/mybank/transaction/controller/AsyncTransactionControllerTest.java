@@ -0,0 +1,119 @@
+package com.mybank.transaction.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.exception.GlobalExceptionHandler;
+import com.mybank.transaction.exception.ServerBusyException;
+import com.mybank.transaction.exception.TransactionNotFoundException;
+import com.mybank.transaction.service.AsyncTransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * AsyncTransactionController 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncTransactionControllerTest {
+
+    @Mock
+    private AsyncTransactionService asyncTransactionService;
+
+    @InjectMocks
+    private AsyncTransactionController asyncTransactionController;
+
+    private MockMvc mockMvc;
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(asyncTransactionController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        objectMapper = new ObjectMapper();
+    }
+
+    @Test
+    void testCreateTransaction_Success() throws Exception {
+        TransactionRequest request = validRequest();
+        when(asyncTransactionService.createTransaction(any(TransactionRequest.class), eq("retry-1")))
+                .thenReturn(CompletableFuture.completedFuture(Transaction.builder().id(9L).accountNumber("1234567890123456").build()));
+
+        MvcResult result = mockMvc.perform(post("/v1/mybank/async/transactions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.message").value("create transaction success"))
+                .andExpect(jsonPath("$.data.id").value(9));
+    }
+
+    @Test
+    void testGetTransaction_ETag() throws Exception {
+        when(asyncTransactionService.getTransaction(1L))
+                .thenReturn(CompletableFuture.completedFuture(Transaction.builder().id(1L).version(3L).build()));
+
+        MvcResult result = mockMvc.perform(get("/v1/mybank/async/transactions/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(jsonPath("$.data.id").value(1));
+    }
+
+    @Test
+    void testGetTransaction_NotFound() throws Exception {
+        when(asyncTransactionService.getTransaction(404L))
+                .thenReturn(CompletableFuture.failedFuture(new TransactionNotFoundException("Transaction not found with id: 404")));
+
+        MvcResult result = mockMvc.perform(get("/v1/mybank/async/transactions/404"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void testCreateTransaction_QueueFull() throws Exception {
+        when(asyncTransactionService.createTransaction(any(TransactionRequest.class), any()))
+                .thenThrow(new ServerBusyException("database executor queue is full, retry later", 2));
+
+        mockMvc.perform(post("/v1/mybank/async/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest())))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    private static TransactionRequest validRequest() {
+        return TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("10.00"))
+                .currency("CNY")
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.ChangeEvent;
+import com.mybank.transaction.domain.ChangeFeed;
+import com.mybank.transaction.exception.ChangeOffsetExpiredException;
+import com.mybank.transaction.exception.GlobalExceptionHandler;
+import com.mybank.transaction.service.TransactionChangeFeed;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * ChangeController 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ChangeControllerTest {
+
+    @Mock
+    private TransactionChangeFeed changeFeed;
+
+    @InjectMocks
+    private ChangeController changeController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(changeController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void testGetChanges_Success() throws Exception {
+        ChangeFeed feed = ChangeFeed.builder()
+                .events(List.of(ChangeEvent.builder().offset(128).nextOffset(160).type(ChangeEvent.DELETED).transactionId(7L).build()))
+                .nextOffset(160)
+                .endOffset(160)
+                .build();
+        when(changeFeed.poll(128, 10, 30000)).thenReturn(CompletableFuture.completedFuture(feed));
+
+        MvcResult result = mockMvc.perform(get("/v1/mybank/changes")
+                        .param("fromOffset", "128")
+                        .param("limit", "10")
+                        .param("waitMs", "30000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.events[0].type").value("DELETED"))
+                .andExpect(jsonPath("$.data.events[0].transactionId").value(7))
+                .andExpect(jsonPath("$.data.events[0].transaction").doesNotExist())
+                .andExpect(jsonPath("$.data.nextOffset").value(160));
+    }
+
+    @Test
+    void testGetChanges_ExpiredOffset() throws Exception {
+        when(changeFeed.poll(0, 500, 0)).thenThrow(new ChangeOffsetExpiredException("offset 0 is older than the retained change log segments"));
+
+        mockMvc.perform(get("/v1/mybank/changes"))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void testStreamChanges_LastEventIdWins() throws Exception {
+        mockMvc.perform(get("/v1/mybank/changes/stream")
+                        .param("fromOffset", "0")
+                        .header("Last-Event-ID", "4096"))
+                .andExpect(request().asyncStarted());
+
+        verify(changeFeed).stream(eq(4096L), any());
+    }
+}
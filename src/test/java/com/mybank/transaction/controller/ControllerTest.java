@@ -2,9 +2,14 @@ package com.mybank.transaction.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mybank.transaction.domain.*;
+import com.mybank.transaction.exception.BatchSizeExceededException;
 import com.mybank.transaction.exception.DuplicateTransactionException;
 import com.mybank.transaction.exception.GlobalExceptionHandler;
+import com.mybank.transaction.exception.IdempotencyKeyReusedException;
+import com.mybank.transaction.exception.TransactionConflictException;
 import com.mybank.transaction.exception.TransactionNotFoundException;
+import com.mybank.transaction.exception.TransactionVersionMismatchException;
+import com.mybank.transaction.service.TransactionExporter;
 import com.mybank.transaction.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,8 +19,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -35,6 +42,9 @@ class ControllerTest {
     @Mock
     private TransactionService transactionService;
 
+    @Mock
+    private TransactionExporter transactionExporter;
+
     @InjectMocks
     private TransactionController transactionController;
 
@@ -92,6 +102,46 @@ class ControllerTest {
         verify(transactionService, times(1)).createTransaction(any(TransactionRequest.class));
     }
 
+    @Test
+    void testCreateTransaction_IdempotencyKey() throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("10.00"))
+                .currency("CNY")
+                .build();
+        when(transactionService.createTransaction(any(TransactionRequest.class), eq("retry-1")))
+                .thenReturn(Transaction.builder().id(9L).accountNumber("1234567890123456").build());
+
+        mockMvc.perform(post("/v1/mybank/transactions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.id").value(9));
+
+        verify(transactionService, never()).createTransaction(any(TransactionRequest.class));
+    }
+
+    @Test
+    void testCreateTransaction_IdempotencyKeyReused() throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("10.00"))
+                .currency("CNY")
+                .build();
+        when(transactionService.createTransaction(any(TransactionRequest.class), eq("retry-1")))
+                .thenThrow(new IdempotencyKeyReusedException("Idempotency-Key was used for a different request: retry-1"));
+
+        mockMvc.perform(post("/v1/mybank/transactions")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
     @Test
     void testCreateTransaction_ValidationError() throws Exception {
         // 准备无效的测试数据
@@ -226,6 +276,165 @@ class ControllerTest {
 
     }
 
+    @Test
+    void testGetTransaction_Success() throws Exception {
+        Transaction transaction = Transaction.builder()
+                .id(1L)
+                .tid("1")
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1000.00"))
+                .currency("CNY")
+                .status("COMPLETED")
+                .build();
+        when(transactionService.getTransaction(1L)).thenReturn(transaction);
+
+        mockMvc.perform(get("/v1/mybank/transactions/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.tid").value("1"))
+                .andExpect(jsonPath("$.data.accountNumber").value("1234567890123456"));
+    }
+
+    @Test
+    void testGetTransaction_ETag() throws Exception {
+        Transaction transaction = Transaction.builder()
+                .id(1L)
+                .tid("1")
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1000.00"))
+                .version(3L)
+                .build();
+        when(transactionService.getTransaction(1L)).thenReturn(transaction);
+
+        mockMvc.perform(get("/v1/mybank/transactions/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+        // 客户端手里的版本没有变化，不再返回内容
+        mockMvc.perform(get("/v1/mybank/transactions/{id}", 1L).header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/v1/mybank/transactions/{id}", 1L).header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.version").value(3));
+    }
+
+    @Test
+    void testUpdateTransaction_IfMatch() throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("WITHDRAWAL")
+                .amount(new BigDecimal("500.00"))
+                .currency("CNY")
+                .build();
+        Transaction response = Transaction.builder()
+                .id(1L)
+                .accountNumber("1234567890123456")
+                .transactionType("WITHDRAWAL")
+                .amount(new BigDecimal("500.00"))
+                .version(4L)
+                .build();
+        when(transactionService.updateTransaction(eq(1L), any(TransactionRequest.class), eq(3L))).thenReturn(response);
+        when(transactionService.updateTransaction(eq(1L), any(TransactionRequest.class), eq(2L)))
+                .thenThrow(new TransactionVersionMismatchException("transaction version doesn't match: 1"));
+
+        mockMvc.perform(put("/v1/mybank/transactions/{id}", 1L)
+                        .header("If-Match", "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+        mockMvc.perform(put("/v1/mybank/transactions/{id}", 1L)
+                        .header("If-Match", "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.success").value(false));
+        // 不是本接口发出的 ETag 不可能匹配
+        mockMvc.perform(put("/v1/mybank/transactions/{id}", 1L)
+                        .header("If-Match", "\"abc\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isPreconditionFailed());
+        verify(transactionService, never()).updateTransaction(eq(1L), any(TransactionRequest.class));
+    }
+
+    @Test
+    void testUpdateTransaction_Conflict() throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("WITHDRAWAL")
+                .amount(new BigDecimal("500.00"))
+                .currency("CNY")
+                .build();
+        when(transactionService.updateTransaction(eq(1L), any(TransactionRequest.class)))
+                .thenThrow(new TransactionConflictException("transaction was modified concurrently: 1"));
+
+        mockMvc.perform(put("/v1/mybank/transactions/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testPatchTransaction() throws Exception {
+        Transaction response = Transaction.builder()
+                .id(1L)
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1000.00"))
+                .status("PENDING")
+                .version(5L)
+                .build();
+        when(transactionService.patchTransaction(eq(1L), any(TransactionPatch.class), eq(4L))).thenReturn(response);
+
+        mockMvc.perform(patch("/v1/mybank/transactions/{id}", 1L)
+                        .header("If-Match", "\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"PENDING\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5\""))
+                .andExpect(jsonPath("$.message").value("patch transaction success"))
+                .andExpect(jsonPath("$.data.status").value("PENDING"));
+        verify(transactionService).patchTransaction(eq(1L),
+                argThat(p -> "PENDING".equals(p.getStatus()) && p.getAmount() == null && p.getCurrency() == null), eq(4L));
+
+        // 给出的字段仍按 TransactionRequest 的规则校验
+        mockMvc.perform(patch("/v1/mybank/transactions/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":0}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testUpdateStatus() throws Exception {
+        when(transactionService.updateStatus(any(StatusUpdateRequest.class))).thenReturn(List.of(
+                BatchItemResult.success(0, 1L), BatchItemResult.failure(1, "transaction doesn't exist: 2")));
+
+        mockMvc.perform(patch("/v1/mybank/transactions/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1,2],\"fromStatus\":\"PENDING\",\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("batch status update finished"))
+                .andExpect(jsonPath("$.data[0].success").value(true))
+                .andExpect(jsonPath("$.data[1].success").value(false));
+        verify(transactionService).updateStatus(new StatusUpdateRequest(List.of(1L, 2L), "PENDING", "COMPLETED"));
+
+        mockMvc.perform(patch("/v1/mybank/transactions/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetTransaction_NotFound() throws Exception {
+        when(transactionService.getTransaction(999L)).thenThrow(new TransactionNotFoundException("交易不存在"));
+
+        mockMvc.perform(get("/v1/mybank/transactions/{id}", 999L))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void testGetAllTransactions_Success() throws Exception {
         // 准备测试数据
@@ -308,6 +517,115 @@ class ControllerTest {
         verify(transactionService, times(1)).getAllTransactions(any(PageRequest.class));
     }
 
+    @Test
+    void testGetTransactionsAfter_Success() throws Exception {
+        CursorPageResponse<Transaction> pageResponse = CursorPageResponse.<Transaction>builder()
+                .content(List.of(Transaction.builder().id(2L).build()))
+                .size(1)
+                .hasNext(true)
+                .nextCursor(PageCursor.encode(2L))
+                .build();
+
+        when(transactionService.getTransactionsAfter(any(CursorPageRequest.class))).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/v1/mybank/transactions")
+                        .param("after", PageCursor.encode(1L))
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content.length()").value(1))
+                .andExpect(jsonPath("$.data.hasNext").value(true))
+                .andExpect(jsonPath("$.data.nextCursor").value(PageCursor.encode(2L)));
+
+        verify(transactionService, never()).getAllTransactions(any(PageRequest.class));
+    }
+
+    @Test
+    void testSearchTransactions() throws Exception {
+        CursorPageResponse<Transaction> pageResponse = CursorPageResponse.<Transaction>builder()
+                .content(List.of(Transaction.builder().id(3L).description("星巴克咖啡").build()))
+                .size(10)
+                .hasNext(false)
+                .build();
+        when(transactionService.searchTransactions(any(SearchRequest.class))).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/v1/mybank/transactions/search")
+                        .param("q", "咖啡")
+                        .param("status", "COMPLETED")
+                        .param("minAmount", "10")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content[0].id").value(3))
+                .andExpect(jsonPath("$.data.hasNext").value(false));
+        verify(transactionService).searchTransactions(SearchRequest.builder()
+                .q("咖啡").status("COMPLETED").minAmount(new BigDecimal("10"))
+                .from(LocalDateTime.of(2024, 1, 1, 0, 0)).size(10).build());
+
+        mockMvc.perform(get("/v1/mybank/transactions/search")
+                        .param("minAmount", "100")
+                        .param("maxAmount", "10"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/mybank/transactions/search").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testCreateTransactions_Batch() throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("1234567890123456")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1000.00"))
+                .currency("CNY")
+                .build();
+        Transaction created = Transaction.builder().id(1L).accountNumber("1234567890123456").build();
+
+        when(transactionService.createTransactions(anyList())).thenReturn(List.of(
+                BatchItemResult.success(0, created),
+                BatchItemResult.failure(1, "accountNumber format error")));
+
+        mockMvc.perform(post("/v1/mybank/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(request, request))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].success").value(true))
+                .andExpect(jsonPath("$.data[0].data.id").value(1))
+                .andExpect(jsonPath("$.data[1].success").value(false))
+                .andExpect(jsonPath("$.data[1].index").value(1));
+    }
+
+    @Test
+    void testDeleteTransactions_BatchTooLarge() throws Exception {
+        when(transactionService.deleteTransactions(anyList()))
+                .thenThrow(new BatchSizeExceededException("batch size 1001 exceeds the limit 1000"));
+
+        mockMvc.perform(delete("/v1/mybank/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1,2,3]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetAllTransactions_WithoutCount() throws Exception {
+        PageResponse<Transaction> pageResponse = PageResponse.<Transaction>builder()
+                .content(Arrays.asList())
+                .totalElements(PageResponse.UNKNOWN)
+                .totalPages(PageResponse.UNKNOWN)
+                .page(1)
+                .size(10)
+                .build();
+
+        when(transactionService.getAllTransactions(any(PageRequest.class))).thenReturn(pageResponse);
+
+        mockMvc.perform(get("/v1/mybank/transactions")
+                        .param("page", "1")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.data.totalPages").doesNotExist())
+                .andExpect(jsonPath("$.data.hasNext").value(false));
+    }
+
     @Test
     void testGetAllTransactions_InvalidPageRequest() throws Exception {
         // 执行测试 - 无效的分页参数
@@ -316,4 +634,24 @@ class ControllerTest {
                         .param("size", "0")) // 无效的页面大小
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void testExportTransactions_Csv() throws Exception {
+        when(transactionExporter.export(eq("csv"), eq(true), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("id\n1\n2\n".getBytes());
+            return 2L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/v1/mybank/transactions/export")
+                        .param("format", "csv")
+                        .param("fields", "id"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transaction-ids.csv\""))
+                .andExpect(content().string("id\n1\n2\n"));
+    }
 }
@@ -0,0 +1,63 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Prometheus 指标端点测试
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Test
+    void prometheus_exposesEveryLayer() throws Exception {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("6666666666666666")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1.00"))
+                .currency("CNY")
+                .build();
+        Long id = transactionService.createTransaction(request).getId();
+        try {
+            mockMvc.perform(get("/v1/mybank/transactions/{id}", id)).andExpect(status().isOk());
+            mockMvc.perform(get("/v1/mybank/transactions").param("page", "1").param("size", "10"))
+                    .andExpect(status().isOk());
+        } finally {
+            transactionService.deleteTransaction(id);
+        }
+
+        String body = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(body.contains("http_server_requests_seconds_bucket"), "controller histogram");
+        assertTrue(body.contains("uri=\"/v1/mybank/transactions/{id}\""), "per endpoint tag");
+        assertTrue(body.contains("quantile=\"0.99\""), "p99");
+        assertTrue(body.contains("mybank_dao_statement_seconds_count{application=\"mybank\",exception=\"none\",statement=\"TransactionDao.insTran\""),
+                "dao statement timer");
+        assertTrue(body.contains("statement=\"TransactionDao.selectByPage\""), "dao statement timer");
+        assertTrue(body.contains("hikaricp_connections_acquire_seconds"), "hikari pool wait");
+        assertTrue(body.contains("cache_gets_total{application=\"mybank\",cache=\"transaction\""), "caffeine stats");
+        assertTrue(body.contains("mybank_cache_weight_bytes"), "cache weight");
+    }
+}
@@ -0,0 +1,96 @@
+package com.mybank.transaction.controller;
+
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.TransactionStats;
+import com.mybank.transaction.exception.GlobalExceptionHandler;
+import com.mybank.transaction.service.TransactionStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * StatsController 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class StatsControllerTest {
+
+    @Mock
+    private TransactionStatsService transactionStatsService;
+
+    @InjectMocks
+    private StatsController statsController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(statsController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void testGetStats_Success() throws Exception {
+        when(transactionStatsService.getStats(any(StatsRequest.class))).thenReturn(List.of(TransactionStats.builder()
+                .day(LocalDate.of(2024, 1, 1))
+                .currency("CNY")
+                .count(3)
+                .totalAmount(new BigDecimal("30.00"))
+                .build()));
+
+        mockMvc.perform(get("/v1/mybank/stats")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("groupBy", "day,currency")
+                        .param("transactionType", "DEPOSIT"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].currency").value("CNY"))
+                .andExpect(jsonPath("$.data[0].count").value(3))
+                .andExpect(jsonPath("$.data[0].category").doesNotExist());
+
+        ArgumentCaptor<StatsRequest> captor = ArgumentCaptor.forClass(StatsRequest.class);
+        verify(transactionStatsService).getStats(captor.capture());
+        assertEquals(List.of("day", "currency"), captor.getValue().getGroupBy());
+        assertEquals(LocalDate.of(2024, 1, 31), captor.getValue().getTo());
+        assertEquals("DEPOSIT", captor.getValue().getTransactionType());
+    }
+
+    @Test
+    void testGetStats_InvalidGroupBy() throws Exception {
+        mockMvc.perform(get("/v1/mybank/stats")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("groupBy", "day,amount"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/mybank/stats").param("from", "2024-01-01"))
+                .andExpect(status().isBadRequest());
+
+        verify(transactionStatsService, never()).getStats(any());
+    }
+
+    @Test
+    void testRebuild() throws Exception {
+        when(transactionStatsService.rebuild()).thenReturn(42L);
+
+        mockMvc.perform(post("/v1/mybank/stats/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").value(42));
+    }
+}
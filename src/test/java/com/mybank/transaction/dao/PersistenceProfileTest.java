@@ -0,0 +1,164 @@
+package com.mybank.transaction.dao;
+
+import com.mybank.transaction.TransactionManagementApplication;
+import com.mybank.transaction.domain.BatchItemResult;
+import com.mybank.transaction.domain.CursorPageRequest;
+import com.mybank.transaction.domain.PageRequest;
+import com.mybank.transaction.domain.SearchRequest;
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.StatusUpdateRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionPatch;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.domain.TransactionUpdateItem;
+import com.mybank.transaction.exception.TransactionVersionMismatchException;
+import com.mybank.transaction.service.AccountBalanceService;
+import com.mybank.transaction.service.IdempotencyService;
+import com.mybank.transaction.service.TransactionExporter;
+import com.mybank.transaction.service.TransactionService;
+import com.mybank.transaction.service.TransactionStatsService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mybank.transaction.TestRequests.deposit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * h2file 和 postgres profile 的测试
+ * <p>
+ * 每个用例单独启动不带web容器的应用，PostgreSQL 使用嵌入式实例，所有 mapper 语句都在对应的数据库上执行一遍
+ */
+class PersistenceProfileTest {
+
+    private static final String ACCOUNT = "1234567890123456";
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void h2file_keepsDataAcrossRestarts() {
+        Long id;
+        try (ConfigurableApplicationContext context = start("h2file", "--mybank.data-dir=" + dataDir)) {
+            exerciseStatements(context);
+            id = context.getBean(TransactionService.class).createTransaction(deposit(ACCOUNT, "1.00")).getId();
+        }
+        try (ConfigurableApplicationContext context = start("h2file", "--mybank.data-dir=" + dataDir)) {
+            assertEquals(new BigDecimal("1.00"), context.getBean(TransactionDao.class).selectById(id).getAmount());
+            assertEquals(1L, context.getBean(TransactionDao.class).countTotal());
+            assertIndexes(context, "SELECT index_name FROM information_schema.indexes WHERE table_name = 'T_R_TRANSACTION'");
+            assertEquals(new BigDecimal("1.00"), balance(context));
+            // 搜索索引启动时从交易表重建
+            assertEquals(1, context.getBean(TransactionService.class)
+                    .searchTransactions(SearchRequest.builder().size(10).build()).getContent().size());
+            context.getBean(JdbcTemplate.class).execute("DELETE FROM t_r_account_balance");
+        }
+        // 余额表为空时启动按交易重建
+        try (ConfigurableApplicationContext context = start("h2file", "--mybank.data-dir=" + dataDir)) {
+            assertEquals(new BigDecimal("1.00"), balance(context));
+        }
+    }
+
+    @Test
+    void postgres_runsEveryStatement() throws Exception {
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+             ConfigurableApplicationContext context = start("postgres",
+                     "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                     "--spring.datasource.username=postgres")) {
+            exerciseStatements(context);
+            assertIndexes(context, "SELECT indexname FROM pg_indexes WHERE tablename = 't_r_transaction'");
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String profile, String... args) {
+        List<String> all = new ArrayList<>(List.of(args));
+        all.add("--spring.profiles.active=" + profile);
+        all.add("--logging.level.root=WARN");
+        return new SpringApplicationBuilder(TransactionManagementApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(all.toArray(new String[0]));
+    }
+
+    /**
+     * 创建、批量创建、更新、两种分页、导出、删除，结束后表为空，账户余额和日汇总随之归零
+     */
+    private static void exerciseStatements(ConfigurableApplicationContext context) {
+        TransactionService service = context.getBean(TransactionService.class);
+        TransactionDao dao = context.getBean(TransactionDao.class);
+
+        Transaction first = service.createTransaction(deposit(ACCOUNT, "10.00"), "persistence-profile");
+        assertEquals(first.getId(), service.createTransaction(deposit(ACCOUNT, "10.00"), "persistence-profile").getId());
+        context.getBean(IdempotencyService.class).purgeExpired();
+        List<BatchItemResult<Transaction>> batch = service.createTransactions(List.of(deposit(ACCOUNT, "20.00"), deposit(ACCOUNT, "30.00")));
+        assertTrue(batch.stream().allMatch(BatchItemResult::isSuccess));
+        assertEquals(3L, dao.countTotal());
+        assertEquals(new BigDecimal("60.00"), balance(context));
+
+        TransactionRequest update = deposit(ACCOUNT, "11.00");
+        update.setStatus("PENDING");
+        assertEquals(1L, service.updateTransaction(first.getId(), update).getVersion());
+        assertEquals("PENDING", dao.selectById(first.getId()).getStatus());
+        assertThrows(TransactionVersionMismatchException.class, () -> service.updateTransaction(first.getId(), update, 0L));
+        assertTrue(service.updateTransactions(List.of(new TransactionUpdateItem(first.getId(), update))).get(0).isSuccess());
+        assertEquals(2L, dao.selectById(first.getId()).getVersion());
+        assertEquals(3L, service.patchTransaction(first.getId(), TransactionPatch.builder().description("patched").build(), 2L).getVersion());
+        assertTrue(service.updateStatus(new StatusUpdateRequest(List.of(first.getId()), "PENDING", "COMPLETED")).get(0).isSuccess());
+        assertEquals("COMPLETED", dao.selectById(first.getId()).getStatus());
+        assertEquals(4L, dao.selectById(first.getId()).getVersion());
+        // updateStatus 返回的行放进了缓存
+        assertEquals(String.valueOf(first.getId()), service.getTransaction(first.getId()).getTid());
+        assertEquals(new BigDecimal("61.00"), balance(context));
+        TransactionStatsService stats = context.getBean(TransactionStatsService.class);
+        StatsRequest today = new StatsRequest(LocalDate.now(), LocalDate.now(), List.of("day", "transactionType"), null, null, "CNY");
+        assertEquals(new BigDecimal("61.00"), stats.getStats(today).get(0).getTotalAmount());
+        assertEquals(3L, stats.rebuild());
+        assertEquals(3L, stats.getStats(today).get(0).getCount());
+
+        assertEquals(3, service.getAllTransactions(new PageRequest(1, 10)).getContent().size());
+        assertEquals(2, service.getTransactionsAfter(new CursorPageRequest(null, 2)).getContent().size());
+        assertEquals(List.of(first.getId()), service.searchTransactions(SearchRequest.builder().q("patched").size(10).build())
+                .getContent().stream().map(Transaction::getId).toList());
+        assertEquals(3, service.rebuildSearchIndex());
+        assertEquals(2, service.searchTransactions(SearchRequest.builder().minAmount(new BigDecimal("20")).size(10).build())
+                .getContent().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertDoesNotThrow(() -> assertEquals(3L, context.getBean(TransactionExporter.class).export(TransactionExporter.CSV, false, out)));
+        assertTrue(out.toString().contains(first.getId() + ",1234567890123456,DEPOSIT,11.00,"));
+
+        List<Long> ids = new ArrayList<>(dao.listId());
+        service.deleteTransaction(ids.remove(0));
+        service.deleteTransactions(ids);
+        assertEquals(0L, dao.countTotal());
+        assertEquals(new BigDecimal("0.00"), balance(context));
+        assertTrue(stats.getStats(today).isEmpty());
+
+        // 从持久化日志恢复时保留 version
+        assertEquals(1, dao.restoreBatch(List.of(first.toBuilder().version(7L).build())));
+        assertEquals(7L, dao.selectById(first.getId()).getVersion());
+        assertEquals(1, dao.deleteById(first.getId()));
+    }
+
+    private static BigDecimal balance(ConfigurableApplicationContext context) {
+        return context.getBean(AccountBalanceService.class).getBalance(ACCOUNT).getBalance();
+    }
+
+    private static void assertIndexes(ConfigurableApplicationContext context, String sql) {
+        List<String> indexes = context.getBean(JdbcTemplate.class).queryForList(sql, String.class).stream()
+                .map(String::toLowerCase)
+                .toList();
+        assertTrue(indexes.containsAll(List.of(
+                "idx_transaction_account_created", "idx_transaction_created", "idx_transaction_status")), indexes.toString());
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,12 +29,15 @@ class TransactionDaoTest {
     @Autowired
     private TransactionDao transactionDao;
 
+    @Autowired
+    private SnowflakeIdWorker idWorker;
+
     private Transaction testTransaction;
 
     @BeforeEach
     void setUp() {
         testTransaction = Transaction.builder()
-                .id(SnowflakeIdWorker.getInstance().genNextId())
+                .id(idWorker.genNextId())
                 .accountNumber("1234567890123456")
                 .transactionType("DEPOSIT")
                 .amount(new BigDecimal("1000.00"))
@@ -67,6 +71,7 @@ class TransactionDaoTest {
 
         // Then
         assertNotNull(found);
+        assertEquals(String.valueOf(id), found.getTid());
         assertEquals(testTransaction.getAccountNumber(), found.getAccountNumber());
         assertEquals(testTransaction.getTransactionType(), found.getTransactionType());
         assertEquals(testTransaction.getAmount(), found.getAmount());
@@ -97,6 +102,7 @@ class TransactionDaoTest {
                 .category("FOOD")
                 .status("COMPLETED")
                 .updatedAt(LocalDateTime.now())
+                .version(0L)
                 .build();
 
         // When
@@ -109,6 +115,9 @@ class TransactionDaoTest {
         assertEquals("WITHDRAWAL", updated.getTransactionType());
         assertEquals(new BigDecimal("500.00"), updated.getAmount());
         assertEquals("test WITHDRAWAL", updated.getDescription());
+        assertEquals(1L, updated.getVersion());
+        // 按旧版本再更新一次不生效
+        assertEquals(0, transactionDao.updTran(updateTransaction));
     }
 
     @Test
@@ -123,4 +132,31 @@ class TransactionDaoTest {
         Transaction deleted = transactionDao.selectById(id);
         assertNull(deleted);
     }
+
+    @Test
+    void testSelectByAccount() {
+        // Given 同一账户三天各一笔，另一个账户一笔
+        LocalDateTime day = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            Transaction t = testTransaction.toBuilder()
+                    .id(idWorker.genNextId())
+                    .accountNumber("8888888888888888")
+                    .createdAt(day.plusDays(i))
+                    .build();
+            transactionDao.insTran(t);
+            ids.add(t.getId());
+        }
+        transactionDao.insTran(testTransaction);
+
+        // When / Then
+        List<Transaction> all = transactionDao.selectByAccount("8888888888888888", 0L, null, null, 10);
+        assertEquals(ids, all.stream().map(Transaction::getId).toList());
+        List<Transaction> afterFirst = transactionDao.selectByAccount("8888888888888888", ids.get(0), null, null, 1);
+        assertEquals(List.of(ids.get(1)), afterFirst.stream().map(Transaction::getId).toList());
+        List<Transaction> secondDay = transactionDao.selectByAccount("8888888888888888", 0L, day.plusDays(1), day.plusDays(2), 10);
+        assertEquals(List.of(ids.get(1)), secondDay.stream().map(Transaction::getId).toList());
+        assertEquals(List.of(ids.get(0)), transactionDao.selectVersions(List.of(ids.get(0), 999L))
+                .stream().map(Transaction::getId).toList());
+    }
 }
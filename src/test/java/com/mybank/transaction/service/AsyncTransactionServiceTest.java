@@ -0,0 +1,87 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.ServerBusyException;
+import com.mybank.transaction.exception.TransactionNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 异步交易服务测试，数据库执行器 1 个线程、排队 1 个任务
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncTransactionServiceTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    private AsyncTransactionService asyncTransactionService;
+
+    @BeforeEach
+    void setUp() {
+        asyncTransactionService = new AsyncTransactionService(transactionService);
+        ReflectionTestUtils.setField(asyncTransactionService, "dbThreads", 1);
+        ReflectionTestUtils.setField(asyncTransactionService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(asyncTransactionService, "retryAfterSeconds", 3);
+        asyncTransactionService.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncTransactionService.stop();
+    }
+
+    @Test
+    void getTransaction_runsOnDbExecutor() {
+        when(transactionService.getTransaction(1L)).thenAnswer(invocation -> Transaction.builder()
+                .id(1L).description(Thread.currentThread().getName()).build());
+
+        Transaction transaction = asyncTransactionService.getTransaction(1L).join();
+        assertTrue(transaction.getDescription().startsWith("db-executor-"));
+    }
+
+    @Test
+    void serviceException_completesFutureExceptionally() {
+        when(transactionService.getTransaction(404L)).thenThrow(new TransactionNotFoundException("Transaction not found with id: 404"));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> asyncTransactionService.getTransaction(404L).join());
+        assertInstanceOf(TransactionNotFoundException.class, e.getCause());
+    }
+
+    @Test
+    void queueFull_rejectsWithRetryAfter() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(transactionService.getTransaction(1L)).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return Transaction.builder().id(1L).build();
+        });
+        when(transactionService.getTransaction(2L)).thenReturn(Transaction.builder().id(2L).build());
+
+        // 第一个任务占住唯一的线程，第二个排队，第三个被拒绝
+        CompletableFuture<Transaction> first = asyncTransactionService.getTransaction(1L);
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Transaction> queued = asyncTransactionService.getTransaction(2L);
+        ServerBusyException e = assertThrows(ServerBusyException.class, () -> asyncTransactionService.deleteTransaction(3L));
+        assertEquals(3, e.getRetryAfterSeconds());
+        verify(transactionService, never()).deleteTransaction(3L);
+
+        release.countDown();
+        assertEquals(1L, first.join().getId());
+        assertEquals(2L, queued.join().getId());
+    }
+}
@@ -0,0 +1,184 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.IdempotencyKeyDao;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.IdempotencyKeyReusedException;
+import io.micrometer.core.instrument.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.mybank.transaction.TestRequests.deposit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 幂等键测试
+ * <p>
+ * 幂等键和交易需要真正提交才能验证并发和重启后的行为，所以这里不加 @Transactional，测试结束后手动清理
+ */
+@SpringBootTest
+class IdempotencyServiceTest {
+
+    private static final String ACCOUNT = "6666666666666666";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        transactionService.deleteTransactions(created);
+    }
+
+    @Test
+    void retry_returnsOriginalTransaction() {
+        String key = UUID.randomUUID().toString();
+        double cacheHits = count("cache"), tableHits = count("table");
+        Transaction first = transactionService.createTransaction(deposit(ACCOUNT, "10.00"), key);
+        created.add(first.getId());
+        long total = transactionDao.countTotal();
+
+        // 金额写法不同但数值相同，视为同一个请求
+        Transaction retried = transactionService.createTransaction(deposit(ACCOUNT, "10.0"), key);
+        assertSame(first, retried);
+        assertEquals(cacheHits + 1, count("cache"));
+
+        // 本地缓存没有时从表里找到原交易
+        cacheManager.getCache(IdempotencyService.CACHE).clear();
+        assertEquals(first.getId(), transactionService.createTransaction(deposit(ACCOUNT, "10.00"), key).getId());
+        assertEquals(tableHits + 1, count("table"));
+        assertEquals(total, transactionDao.countTotal());
+        assertEquals(first.getId(), idempotencyKeyDao.selectByKey(key).getTransactionId());
+    }
+
+    @Test
+    void reusedKey_rejected() {
+        String key = UUID.randomUUID().toString();
+        created.add(transactionService.createTransaction(deposit(ACCOUNT, "10.00"), key).getId());
+        assertThrows(IdempotencyKeyReusedException.class, () -> transactionService.createTransaction(deposit(ACCOUNT, "11.00"), key));
+    }
+
+    @Test
+    void concurrentDuplicates_insertOnce() throws InterruptedException {
+        String key = UUID.randomUUID().toString();
+        long total = transactionDao.countTotal();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 16; ++i) {
+            executor.submit(() -> {
+                start.await();
+                return ids.add(transactionService.createTransaction(deposit(ACCOUNT, "10.00"), key).getId());
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        created.addAll(ids);
+
+        assertEquals(1, ids.size());
+        assertEquals(total + 1, transactionDao.countTotal());
+    }
+
+    @Test
+    void slowCreate_doesNotBlockOtherKeys() throws Exception {
+        // "Aa" 和 "BB" 的 hashCode 相同，两个 key 落在缓存同一个桶里
+        String prefix = UUID.randomUUID().toString();
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Transaction> slow = executor.submit(() -> idempotencyService.execute(prefix + "Aa", deposit(ACCOUNT, "10.00"), key -> {
+                creating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return Transaction.builder().id(1L).build();
+            }, id -> null));
+            assertTrue(creating.await(10, TimeUnit.SECONDS));
+
+            Transaction other = CompletableFuture.supplyAsync(() -> idempotencyService.execute(prefix + "BB", deposit(ACCOUNT, "10.00"),
+                    key -> Transaction.builder().id(2L).build(), id -> null)).get(10, TimeUnit.SECONDS);
+            assertEquals(2L, other.getId());
+            release.countDown();
+            assertEquals(1L, slow.get(10, TimeUnit.SECONDS).getId());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 等待的创建失败时，等待方收到同样的异常，不算作缓存命中
+     */
+    @Test
+    void failedInFlightCreate_notCountedAsCacheHit() throws Exception {
+        String key = UUID.randomUUID().toString();
+        double cacheHits = count("cache");
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Transaction> first = executor.submit(() -> idempotencyService.execute(key, deposit(ACCOUNT, "10.00"), k -> {
+                creating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalStateException("create failed");
+            }, id -> null));
+            assertTrue(creating.await(10, TimeUnit.SECONDS));
+            // 第二个请求等在第一个请求的创建上；万一它晚到，自己的创建也失败
+            Future<Transaction> waiting = executor.submit(() -> idempotencyService.execute(key, deposit(ACCOUNT, "10.00"), k -> {
+                throw new IllegalStateException("create failed");
+            }, id -> null));
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Transaction> f : List.of(first, waiting)) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(10, TimeUnit.SECONDS));
+                assertEquals("create failed", e.getCause().getMessage());
+            }
+            assertEquals(cacheHits, count("cache"));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static double count(String result) {
+        return Metrics.globalRegistry.get("mybank.idempotency.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,147 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.AccountBalanceDao;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.TransactionConflictException;
+import com.mybank.transaction.exception.TransactionVersionMismatchException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.mybank.transaction.TestRequests.deposit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按 version 的乐观锁更新
+ * <p>
+ * 需要多个线程各自提交，所以这里不加 @Transactional，测试结束后通过服务删除
+ */
+@SpringBootTest
+class OptimisticUpdateTest {
+
+    private static final String ACCOUNT = "7777777777777777";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private AccountBalanceDao accountBalanceDao;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        transactionService.deleteTransactions(created);
+    }
+
+    @Test
+    void staleVersion_rejected() {
+        Transaction transaction = create("10.00");
+        assertEquals(0L, transaction.getVersion());
+        LocalDateTime createdAt = transactionDao.selectById(transaction.getId()).getCreatedAt();
+
+        Transaction updated = transactionService.updateTransaction(transaction.getId(), deposit(ACCOUNT, "20.00"), 0L);
+        assertEquals(1L, updated.getVersion());
+        assertEquals(createdAt, updated.getCreatedAt());
+
+        // 按读到的旧版本再改一次，不覆盖别人的修改
+        assertThrows(TransactionVersionMismatchException.class,
+                () -> transactionService.updateTransaction(transaction.getId(), deposit(ACCOUNT, "30.00"), 0L));
+        Transaction stored = transactionDao.selectById(transaction.getId());
+        assertEquals(new BigDecimal("20.00"), stored.getAmount());
+        assertEquals(1L, stored.getVersion());
+        assertEquals(1L, transactionService.getTransaction(transaction.getId()).getVersion());
+    }
+
+    @Test
+    void concurrentConditionalUpdates_onlyOneWins() throws Exception {
+        Transaction transaction = create("10.00");
+        List<Throwable> failures = run(8, i -> transactionService.updateTransaction(transaction.getId(), deposit(ACCOUNT, i + ".00"), 0L));
+
+        assertEquals(7, failures.size());
+        failures.forEach(e -> assertInstanceOf(TransactionVersionMismatchException.class, e));
+        assertEquals(1L, transactionDao.selectById(transaction.getId()).getVersion());
+        assertBalanceMatchesRows();
+    }
+
+    @Test
+    void concurrentUpdates_keepBalanceConsistent() throws Exception {
+        Transaction transaction = create("10.00");
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Throwable> failures = run(8, i -> {
+            transactionService.updateTransaction(transaction.getId(), deposit(ACCOUNT, (i + 1) + ".00"));
+            return succeeded.incrementAndGet();
+        });
+
+        // 没有 If-Match 的更新在版本冲突时重新读取再试，重试用完才放弃
+        failures.forEach(e -> assertInstanceOf(TransactionConflictException.class, e));
+        assertEquals(succeeded.get(), transactionDao.selectById(transaction.getId()).getVersion());
+        assertBalanceMatchesRows();
+    }
+
+    private List<Throwable> run(int threads, IndexedTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                int index = i;
+                futures.add(executor.submit((Callable<Object>) () -> {
+                    start.await();
+                    return task.run(index);
+                }));
+            }
+            start.countDown();
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+            return failures;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 测试账户只有这里建的交易，余额应等于它们的金额合计
+     */
+    private void assertBalanceMatchesRows() {
+        BigDecimal expected = created.stream()
+                .map(transactionDao::selectById)
+                .map(AccountBalanceService::signedAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, expected.compareTo(accountBalanceDao.selectByAccount(ACCOUNT).getBalance()));
+    }
+
+    private Transaction create(String amount) {
+        Transaction transaction = transactionService.createTransaction(deposit(ACCOUNT, amount));
+        created.add(transaction.getId());
+        return transaction;
+    }
+
+
+    private interface IndexedTask {
+        Object run(int index) throws Exception;
+    }
+}
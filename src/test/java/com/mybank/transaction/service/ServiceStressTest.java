@@ -7,6 +7,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,6 +26,8 @@ public class ServiceStressTest {
 
     @Autowired private TransactionDao transactionDao;
 
+    @Autowired private CacheManager cacheManager;
+
     private TransactionRequest validRequest1;
 
     @BeforeEach
@@ -73,6 +76,30 @@ public class ServiceStressTest {
         close(executor);
         double getAllTransactionsReqs = nums*1000.00/(System.currentTimeMillis()-t1);
 
+        // 读写混合: 90% 分页查询, 10% 创建, 观察写入对分页缓存命中率的影响
+        var pageCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache(TransactionCache.PAGE_CACHE).getNativeCache();
+        var statsBefore = pageCache.stats();
+        executor = Executors.newFixedThreadPool(parallelDeg);
+        totalNum += nums;
+        t1 = System.currentTimeMillis();
+        for (int i = 0; i < nums; ++i) {
+            executor.submit(() -> {
+                try {
+                    if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                        transactionService.createTransaction(validRequest1);
+                    } else {
+                        PageRequest pageRequest = new PageRequest(ThreadLocalRandom.current().nextInt(1, 11), ThreadLocalRandom.current().nextInt(1, 11)*10);
+                        transactionService.getAllTransactions(pageRequest);
+                    }
+                } catch (Exception e) {
+                    atomInt.incrementAndGet();
+                }
+            });
+        }
+        close(executor);
+        double mixedReqs = nums*1000.00/(System.currentTimeMillis()-t1);
+        double mixedHitRatio = pageCache.stats().minus(statsBefore).hitRate();
+
         List<Long> idList=transactionDao.listId();
 
         executor = Executors.newFixedThreadPool(parallelDeg);
@@ -108,6 +135,8 @@ public class ServiceStressTest {
         System.out.println("total api calls: " + totalNum);
         System.out.println("createTransaction req/s: " + createTransReq);
         System.out.println("getAllTransactions req/s: " + getAllTransactionsReqs);
+        System.out.println("mixed read/create req/s: " + mixedReqs);
+        System.out.println("mixed page cache hit ratio: " + mixedHitRatio);
         System.out.println("updateTransaction req/s: " + updTransReqs);
         System.out.println("deleteTransaction req/s: " + delReqs);
     }
@@ -0,0 +1,175 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.config.IdWorkerConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 雪花算法ID生成器测试
+ */
+class SnowflakeIdWorkerTest {
+
+    private final SnowflakeIdWorker worker = new SnowflakeIdWorker();
+
+    @Test
+    void genNextId_increasingInOneThread() {
+        long prev = worker.genNextId();
+        for (int i = 0; i < 100000; ++i) {
+            long id = worker.genNextId();
+            assertTrue(id > prev);
+            prev = id;
+        }
+    }
+
+    @Test
+    void genNextId_layout() {
+        worker.init(3, 7);
+        long id = worker.genNextId();
+        assertEquals(3, (id >>> 12) & 31);
+        assertEquals(7, (id >>> 17) & 31);
+        long millis = (id >>> 22) + 1619507543519L;
+        assertTrue(Math.abs(System.currentTimeMillis() - millis) < 1000);
+    }
+
+    @Test
+    void genNextId_uniqueUnderConcurrency() throws InterruptedException {
+        assertUnique(1);
+    }
+
+    @Test
+    void genNextId_uniqueWithThreadBlocks() throws InterruptedException {
+        assertUnique(256);
+    }
+
+    @Test
+    void genNextId_reportsSequenceWaits() throws InterruptedException {
+        AtomicLong waits = new AtomicLong();
+        worker.setWaitListener((clockBackward, nanos) -> {
+            assertFalse(clockBackward);
+            assertTrue(nanos >= 0);
+            waits.incrementAndGet();
+        });
+        // 64个线程每次预留256个序列，每毫秒只够16次预留，必然出现等待下一毫秒
+        assertUnique(256);
+        assertTrue(waits.get() > 0);
+    }
+
+    @Test
+    void init_invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> worker.init(32, 0));
+        assertThrows(IllegalArgumentException.class, () -> worker.init(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> worker.init(0, 32));
+        assertThrows(IllegalArgumentException.class, () -> worker.init(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> worker.init(0, 0, 4097));
+        assertThrows(IllegalArgumentException.class, () -> worker.setClockBackwardTolerance(-1, 0));
+    }
+
+    @Test
+    void genNextId_uniqueWithClockTolerance() throws InterruptedException {
+        worker.setClockBackwardTolerance(5, 200);
+        assertUnique(1);
+    }
+
+    @Test
+    void clockBackward_withinBorrowKeepsLastTimestamp() {
+        AtomicLong now = new AtomicLong(1700000000000L);
+        SnowflakeIdWorker simulated = simulated(now::get, 5, 0);
+        AtomicLong waits = new AtomicLong();
+        simulated.setWaitListener((clockBackward, nanos) -> waits.incrementAndGet());
+        long before = simulated.genNextId();
+
+        now.addAndGet(-3);
+        long after = simulated.genNextId();
+        assertTrue(after > before);
+        assertEquals(before >>> 22, after >>> 22);
+        assertEquals(0, waits.get());
+    }
+
+    @Test
+    void clockBackward_beyondBorrowWaitsForClock() {
+        AtomicLong now = new AtomicLong(1700000000000L);
+        // 每读一次时钟走 1 毫秒，模拟等待期间时间流逝
+        SnowflakeIdWorker simulated = simulated(now::getAndIncrement, 2, 100);
+        List<Boolean> waits = new ArrayList<>();
+        simulated.setWaitListener((clockBackward, nanos) -> waits.add(clockBackward));
+        long before = simulated.genNextId();
+
+        now.addAndGet(-10);
+        long after = simulated.genNextId();
+        assertTrue(after > before);
+        assertEquals(List.of(true), waits);
+    }
+
+    @Test
+    void sequenceExhausted_withBorrowReportsSequenceWait() {
+        long start = 1700000000000L;
+        AtomicLong reads = new AtomicLong();
+        // 前 3 个毫秒的序列发完之前时钟不动，之后每读一次走 1 毫秒
+        SnowflakeIdWorker simulated = simulated(() -> start + Math.max(0, reads.getAndIncrement() - 3 * 4096), 2, 100);
+        List<Boolean> waits = new ArrayList<>();
+        simulated.setWaitListener((clockBackward, nanos) -> waits.add(clockBackward));
+        for (int i = 0; i < 3 * 4096; ++i) simulated.genNextId();
+        assertEquals(List.of(), waits);
+
+        // 借用的 2 毫秒也用完了，要等时钟走到下一毫秒，这不是时钟回拨
+        simulated.genNextId();
+        assertEquals(List.of(false), waits);
+    }
+
+    @Test
+    void clockBackward_beyondToleranceThrows() {
+        AtomicLong now = new AtomicLong(1700000000000L);
+        SnowflakeIdWorker simulated = simulated(now::get, 5, 100);
+        simulated.genNextId();
+
+        now.addAndGet(-1000);
+        assertThrows(IllegalStateException.class, simulated::genNextId);
+        // 时钟恢复后继续发号
+        now.addAndGet(1001);
+        simulated.genNextId();
+    }
+
+    @Test
+    void resolveNodeId() {
+        assertEquals(0, IdWorkerConfig.resolveNodeId(""));
+        assertEquals(0, IdWorkerConfig.resolveNodeId("app-tom-0"));
+        assertEquals(37, IdWorkerConfig.resolveNodeId("app-tom-37"));
+        long hashed = IdWorkerConfig.resolveNodeId("app-tom-5d8f7c9b4-x2k9q");
+        assertTrue(hashed >= 0 && hashed <= 1023);
+        long overflow = IdWorkerConfig.resolveNodeId("desktop-99999");
+        assertTrue(overflow >= 0 && overflow <= 1023);
+    }
+
+    private static SnowflakeIdWorker simulated(LongSupplier clock, long borrowMillis, long waitMillis) {
+        SnowflakeIdWorker simulated = new SnowflakeIdWorker(clock);
+        simulated.init(0, 0);
+        simulated.setClockBackwardTolerance(borrowMillis, waitMillis);
+        return simulated;
+    }
+
+    private void assertUnique(int blockSize) throws InterruptedException {
+        worker.init(0, 0, blockSize);
+        int threads = 64, perThread = 20000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; ++t) {
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; ++i) ids.add(worker.genNextId());
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(threads * perThread, ids.size());
+    }
+}
@@ -0,0 +1,182 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.AccountBalanceDao;
+import com.mybank.transaction.dao.IdempotencyKeyDao;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.AccountBalance;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.exception.DuplicateTransactionException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 组提交模式测试
+ */
+@SpringBootTest(properties = {
+        "mybank.create.group-commit.enabled=true",
+        "mybank.create.group-commit.batch-size=50",
+        "mybank.create.group-commit.linger-ms=5"
+})
+class TransactionBatchWriterTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private AccountBalanceDao accountBalanceDao;
+
+    @Autowired
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    @Test
+    void createTransaction_groupCommit() throws InterruptedException {
+        AccountBalance before = accountBalanceDao.selectByAccount("3333333333333333");
+        BigDecimal beforeBalance = before == null ? new BigDecimal("0.00") : before.getBalance();
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("3333333333333333")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("10.00"))
+                .currency("CNY")
+                .category("SALARY")
+                .build();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        for (int i = 0; i < 1000; ++i) {
+            executor.submit(() -> ids.add(transactionService.createTransaction(request).getId()));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        try {
+            assertEquals(1000, ids.size());
+            // future 完成时所在批次必须已经提交
+            for (Long id : ids) {
+                Transaction found = transactionDao.selectById(id);
+                assertNotNull(found);
+                assertEquals("3333333333333333", found.getAccountNumber());
+            }
+            // 余额和插入在同一批次提交
+            assertEquals(beforeBalance.add(new BigDecimal("10000.00")),
+                    accountBalanceDao.selectByAccount("3333333333333333").getBalance());
+        } finally {
+            transactionService.deleteTransactions(List.copyOf(ids));
+        }
+    }
+
+    @Test
+    void createTransaction_groupCommitWithIdempotencyKey() {
+        TransactionRequest request = TransactionRequest.builder()
+                .accountNumber("3333333333333333")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1.00"))
+                .currency("CNY")
+                .build();
+        String key = UUID.randomUUID().toString();
+        Transaction first = transactionService.createTransaction(request, key);
+        try {
+            assertEquals(first.getId(), transactionService.createTransaction(request, key).getId());
+            // 幂等键和交易在同一批次提交
+            assertEquals(first.getId(), idempotencyKeyDao.selectByKey(key).getTransactionId());
+        } finally {
+            transactionService.deleteTransaction(first.getId());
+        }
+    }
+
+    @Test
+    void rowRetry_onlyTranslatesDuplicateKeys() throws InterruptedException {
+        TransactionDao dao = mock(TransactionDao.class);
+        Transaction duplicate = Transaction.builder().id(1L).build();
+        Transaction locked = Transaction.builder().id(2L).build();
+        when(dao.insTranBatch(anyList())).thenThrow(new DuplicateKeyException("batch"));
+        when(dao.insTran(duplicate)).thenThrow(new DuplicateKeyException("id 1"));
+        when(dao.insTran(locked)).thenThrow(new CannotAcquireLockException("lock timeout"));
+        TransactionBatchWriter writer = writer(dao);
+        try {
+            CompletableFuture<Transaction> first = writer.submit(duplicate, null);
+            CompletableFuture<Transaction> second = writer.submit(locked, null);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(DuplicateTransactionException.class, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(CannotAcquireLockException.class, e.getCause());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void stop_writesQueuedAndRejectsLaterSubmits() throws Exception {
+        TransactionDao dao = mock(TransactionDao.class);
+        TransactionBatchWriter writer = writer(dao);
+        Transaction transaction = Transaction.builder().id(1L).build();
+        CompletableFuture<Transaction> queued = writer.submit(transaction, null);
+        writer.stop();
+
+        assertEquals(transaction, queued.get(10, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> writer.submit(Transaction.builder().id(2L).build(), null));
+    }
+
+    @Test
+    void stop_doesNotInterruptInFlightFlush() throws Exception {
+        TransactionDao dao = mock(TransactionDao.class);
+        CountDownLatch flushing = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        when(dao.insTranBatch(anyList())).thenAnswer(invocation -> {
+            flushing.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+            return 1;
+        });
+        TransactionBatchWriter writer = writer(dao);
+        Transaction transaction = Transaction.builder().id(1L).build();
+        CompletableFuture<Transaction> queued = writer.submit(transaction, null);
+        assertTrue(flushing.await(10, TimeUnit.SECONDS));
+        writer.stop();
+
+        assertEquals(transaction, queued.get(10, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+        verify(dao, never()).insTran(any());
+    }
+
+    /**
+     * 不经过数据库的写入器，事务管理器和余额、日汇总都是 mock
+     */
+    private static TransactionBatchWriter writer(TransactionDao dao) {
+        TransactionBatchWriter writer = new TransactionBatchWriter(dao, mock(IdempotencyKeyDao.class), mock(TransactionCounter.class),
+                mock(AccountBalanceService.class), mock(TransactionStatsService.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "batchSize", 50);
+        ReflectionTestUtils.setField(writer, "lingerMillis", 5L);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 100);
+        writer.start();
+        return writer;
+    }
+}
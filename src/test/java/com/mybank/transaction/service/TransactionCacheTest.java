@@ -0,0 +1,258 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.AccountPageRequest;
+import com.mybank.transaction.domain.CursorPageRequest;
+import com.mybank.transaction.domain.PageCursor;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.exception.TransactionNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存按id精确失效的测试
+ * <p>
+ * 失效在事务提交后执行，所以这里不加 @Transactional，测试结束后通过服务删除
+ */
+@SpringBootTest
+class TransactionCacheTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private TransactionCache transactionCache;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    private TransactionRequest request;
+
+    @BeforeEach
+    void setUp() {
+        request = TransactionRequest.builder()
+                .accountNumber("5555555555555555")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("100.00"))
+                .currency("CNY")
+                .category("SALARY")
+                .build();
+        for (int i = 0; i < 30; ++i) {
+            ids.add(transactionService.createTransaction(request).getId());
+        }
+        // 三页游标分页: ids[0..9], ids[10..19], ids[20..29]，最后一页未满
+        loadPage(ids.get(0) - 1);
+        loadPage(ids.get(9));
+        loadPage(ids.get(19));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionService.deleteTransactions(ids);
+        ids.clear();
+    }
+
+    @Test
+    void update_evictsOnlyPageContainingId() {
+        transactionService.updateTransaction(ids.get(15), request);
+
+        assertTrue(isCached(ids.get(0) - 1));
+        assertFalse(isCached(ids.get(9)));
+        assertTrue(isCached(ids.get(19)));
+    }
+
+    @Test
+    void create_evictsOnlyTrailingPage() {
+        ids.add(transactionService.createTransaction(request).getId());
+
+        assertTrue(isCached(ids.get(0) - 1));
+        assertTrue(isCached(ids.get(9)));
+        assertFalse(isCached(ids.get(19)));
+        assertTrue(transactionService.getTransactionsAfter(pageAfter(ids.get(19))).isHasNext());
+    }
+
+    @Test
+    void delete_evictsPagesFromItsPosition() {
+        Long deleted = ids.remove(12);
+        transactionService.deleteTransaction(deleted);
+
+        // 游标在被删除的id之后的页不受影响
+        assertTrue(isCached(ids.get(0) - 1));
+        assertFalse(isCached(ids.get(9)));
+        assertTrue(isCached(ids.get(18)));
+    }
+
+    @Test
+    void update_replacesCachedTransaction() {
+        Long id = ids.get(3);
+        Transaction before = transactionService.getTransaction(id);
+        assertNotNull(before.getCreatedAt());
+
+        TransactionRequest changed = TransactionRequest.builder()
+                .accountNumber(request.getAccountNumber())
+                .transactionType("WITHDRAWAL")
+                .amount(new BigDecimal("7.00"))
+                .currency("CNY")
+                .category("FOOD")
+                .status("COMPLETED")
+                .build();
+        transactionService.updateTransaction(id, changed);
+
+        Transaction cached = cacheManager.getCache(TransactionCache.ENTITY_CACHE).get(id, Transaction.class);
+        assertNotNull(cached);
+        assertEquals("WITHDRAWAL", cached.getTransactionType());
+        assertEquals(0, new BigDecimal("7.00").compareTo(cached.getAmount()));
+        assertEquals(before.getCreatedAt(), cached.getCreatedAt());
+    }
+
+    @Test
+    void getTransaction_cachesMissAndCreateOverridesIt() {
+        Cache entityCache = cacheManager.getCache(TransactionCache.ENTITY_CACHE);
+        long missing = ids.get(29) + 1;
+        assertThrows(TransactionNotFoundException.class, () -> transactionService.getTransaction(missing));
+        Cache.ValueWrapper miss = entityCache.get(missing);
+        assertNotNull(miss);
+        assertNull(miss.get());
+
+        Long deleted = ids.remove(0);
+        transactionService.deleteTransaction(deleted);
+        assertNull(entityCache.get(deleted));
+        assertThrows(TransactionNotFoundException.class, () -> transactionService.getTransaction(deleted));
+
+        Long created = transactionService.createTransaction(request).getId();
+        ids.add(created);
+        assertNotNull(entityCache.get(created, Transaction.class));
+        assertEquals(created, transactionService.getTransaction(created).getId());
+    }
+
+    @Test
+    void accountPage_evictedOnlyByWritesToThatAccount() {
+        String account = request.getAccountNumber();
+        TransactionRequest other = TransactionRequest.builder()
+                .accountNumber("5555555555555556")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("100.00"))
+                .currency("CNY")
+                .category("SALARY")
+                .build();
+        ids.add(transactionService.createTransaction(other).getId());
+        AccountPageRequest firstPage = new AccountPageRequest(null, 10, null, null);
+        assertEquals(10, transactionService.getAccountTransactions(account, firstPage).getContent().size());
+        assertEquals(1, transactionService.getAccountTransactions(other.getAccountNumber(), firstPage).getContent().size());
+
+        ids.add(transactionService.createTransaction(other).getId());
+        assertTrue(isAccountCached(account));
+        assertFalse(isAccountCached(other.getAccountNumber()));
+
+        // 换账户的更新同时失效新旧两个账户
+        transactionService.getAccountTransactions(other.getAccountNumber(), firstPage);
+        transactionService.updateTransaction(ids.get(0), other);
+        assertFalse(isAccountCached(account));
+        assertFalse(isAccountCached(other.getAccountNumber()));
+        List<Transaction> moved = transactionService.getAccountTransactions(other.getAccountNumber(), firstPage).getContent();
+        assertEquals(ids.get(0), moved.get(0).getId());
+        assertNotEquals(ids.get(0), transactionService.getAccountTransactions(account, firstPage).getContent().get(0).getId());
+
+        transactionService.deleteTransactions(List.of(ids.remove(0)));
+        assertTrue(isAccountCached(account));
+        assertFalse(isAccountCached(other.getAccountNumber()));
+    }
+
+    @Test
+    void accountPage_loadedOutsideCacheLock() throws Exception {
+        // "Aa" 和 "BB" 的 hashCode 相同，落在缓存同一个桶里
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<Transaction>> slow = CompletableFuture.supplyAsync(() -> transactionCache.getAccountPage("Aa", "k", () -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return List.of();
+        }));
+        try {
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            CompletableFuture.runAsync(() -> {
+                transactionCache.getAccountPage("BB", "k", List::of);
+                transactionCache.onCommitted(TransactionChange.created(List.of(Transaction.builder().id(1L).accountNumber("BB").build())));
+            }).get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+        assertEquals(List.of(), slow.get(10, TimeUnit.SECONDS));
+        assertFalse(isAccountCached("BB"));
+    }
+
+    @Test
+    void accountPage_notCachedWhenEvictedWhileLoading() {
+        Transaction written = Transaction.builder().id(2L).accountNumber("5555555555555557").build();
+        List<Transaction> rows = transactionCache.getAccountPage("5555555555555557", "k", () -> {
+            transactionCache.onCommitted(TransactionChange.created(List.of(written)));
+            return List.of();
+        });
+        assertEquals(List.of(), rows);
+        assertFalse(isAccountCached("5555555555555557"));
+    }
+
+    @Test
+    void page_notCachedWhenEvictedWhileLoading() {
+        long afterId = ids.get(29);
+        Transaction written = Transaction.builder().id(afterId + 1).accountNumber("5555555555555555").build();
+        List<Transaction> rows = transactionCache.getPage("after_" + afterId + "_11", afterId, 11, () -> {
+            transactionCache.onCommitted(TransactionChange.created(List.of(written)));
+            return List.of();
+        });
+        assertEquals(List.of(), rows);
+        assertFalse(isCached(afterId));
+    }
+
+    @Test
+    void entity_olderVersionNotCachedOverNewer() {
+        Long id = ids.get(0);
+        Transaction current = transactionService.getTransaction(id);
+        transactionCache.onCommitted(TransactionChange.updated(List.of(current.toBuilder().description("v3").version(3L).build()), List.of()));
+        transactionCache.onCommitted(TransactionChange.updated(List.of(current.toBuilder().description("v2").version(2L).build()), List.of()));
+
+        Transaction cached = cacheManager.getCache(TransactionCache.ENTITY_CACHE).get(id, Transaction.class);
+        assertEquals(3L, cached.getVersion());
+        assertEquals("v3", cached.getDescription());
+    }
+
+    private boolean isAccountCached(String accountNumber) {
+        com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>)
+                cacheManager.getCache(TransactionCache.ACCOUNT_PAGE_CACHE).getNativeCache();
+        return nativeCache.asMap().containsKey(accountNumber);
+    }
+
+    private void loadPage(long afterId) {
+        transactionService.getTransactionsAfter(pageAfter(afterId));
+        assertTrue(isCached(afterId));
+    }
+
+    private CursorPageRequest pageAfter(long afterId) {
+        return CursorPageRequest.builder().after(PageCursor.encode(afterId)).size(10).build();
+    }
+
+    private boolean isCached(long afterId) {
+        Cache pageCache = cacheManager.getCache(TransactionCache.PAGE_CACHE);
+        return pageCache.get("after_" + afterId + "_11") != null;
+    }
+}
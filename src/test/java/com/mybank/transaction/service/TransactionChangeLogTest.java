@@ -0,0 +1,217 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.ChangeEvent;
+import com.mybank.transaction.domain.ChangeFeed;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.ChangeOffsetExpiredException;
+import com.mybank.transaction.exception.InvalidCursorException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 变更日志测试，直接读写临时目录下的段文件，不经过数据库
+ */
+class TransactionChangeLogTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 30, 15, 123_456_000);
+
+    @TempDir
+    Path dir;
+
+    private final List<TransactionChangeLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (TransactionChangeLog changeLog : opened) changeLog.close();
+    }
+
+    @Test
+    void events_roundTripInOrder() throws IOException {
+        TransactionChangeLog changeLog = open(1 << 20, 4);
+        Transaction created = transaction(1);
+        Transaction updated = created.toBuilder().description("星巴克咖啡").status("FAILED").version(1L)
+                .updatedAt(START.plusHours(1)).build();
+        Transaction sparse = Transaction.builder().id(2L).tid("2").accountNumber("2222222222222222")
+                .transactionType("FEE").amount(new BigDecimal("5.00")).build();
+        changeLog.onCommitted(TransactionChange.created(List.of(created, sparse)));
+        changeLog.onCommitted(TransactionChange.updated(List.of(updated), List.of()));
+        changeLog.onCommitted(TransactionChange.deleted(List.of(sparse.toBuilder().version(4L).build())));
+
+        ChangeFeed feed = changeLog.read(0, 10);
+        assertEquals(List.of(ChangeEvent.CREATED, ChangeEvent.CREATED, ChangeEvent.UPDATED, ChangeEvent.DELETED),
+                feed.getEvents().stream().map(ChangeEvent::getType).toList());
+        assertEquals(created, feed.getEvents().get(0).getTransaction());
+        assertEquals(sparse, feed.getEvents().get(1).getTransaction());
+        assertEquals(updated, feed.getEvents().get(2).getTransaction());
+        assertNull(feed.getEvents().get(3).getTransaction());
+        assertEquals(2L, feed.getEvents().get(3).getTransactionId());
+        // 删除算作删除前的版本 + 1，消费方据此区分删除和迟到的更新
+        assertEquals(Arrays.asList(0L, null, 1L, 5L), feed.getEvents().stream().map(ChangeEvent::getVersion).toList());
+        assertEquals(changeLog.getEndOffset(), feed.getNextOffset());
+
+        // 每条事件的 nextOffset 是下一条的 offset，可以从中间接着读
+        ChangeFeed rest = changeLog.read(feed.getEvents().get(1).getNextOffset(), 1);
+        assertEquals(List.of(feed.getEvents().get(2)), rest.getEvents());
+        assertTrue(changeLog.read(feed.getNextOffset(), 10).getEvents().isEmpty());
+    }
+
+    @Test
+    void invalidOffsets_areRejected() throws IOException {
+        TransactionChangeLog changeLog = open(1 << 20, 4);
+        changeLog.onCommitted(TransactionChange.created(List.of(transaction(1))));
+
+        assertThrows(InvalidCursorException.class, () -> changeLog.read(-1, 10));
+        assertThrows(InvalidCursorException.class, () -> changeLog.read(changeLog.getEndOffset() + 1, 10));
+        assertThrows(InvalidCursorException.class, () -> changeLog.read(3, 10));
+    }
+
+    @Test
+    void segments_rollAndOldOnesExpire() throws IOException {
+        TransactionChangeLog changeLog = open(64 * 1024, 2);
+        for (long id = 1; id <= 2000; ++id) changeLog.onCommitted(TransactionChange.created(List.of(transaction(id))));
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+        assertThrows(ChangeOffsetExpiredException.class, () -> changeLog.read(0, 10));
+
+        // 保留的段可以跨段连续读到末尾
+        long offset = Long.parseLong(firstSegment().getFileName().toString().replace(".log", ""));
+        long last = 0;
+        for (ChangeFeed feed; !(feed = changeLog.read(offset, 100)).getEvents().isEmpty(); offset = feed.getNextOffset()) {
+            for (ChangeEvent event : feed.getEvents()) {
+                assertTrue(event.getTransactionId() > last);
+                last = event.getTransactionId();
+            }
+        }
+        assertEquals(2000, last);
+        assertEquals(changeLog.getEndOffset(), offset);
+    }
+
+    @Test
+    void reopen_dropsTornTail() throws Exception {
+        TransactionChangeLog changeLog = open(1 << 20, 4);
+        changeLog.onCommitted(TransactionChange.created(List.of(transaction(1), transaction(2))));
+        long second = changeLog.read(0, 1).getNextOffset();
+        long end = changeLog.getEndOffset();
+        changeLog.close();
+        opened.remove(changeLog);
+
+        // 模拟崩溃时第二条只写了一半
+        try (RandomAccessFile file = new RandomAccessFile(firstSegment().toFile(), "rw")) {
+            file.seek(second + 20);
+            file.write(new byte[(int) (end - second - 20)]);
+        }
+        TransactionChangeLog reopened = open(1 << 20, 4);
+        assertEquals(second, reopened.getEndOffset());
+        assertEquals(1, reopened.read(0, 10).getEvents().size());
+
+        reopened.onCommitted(TransactionChange.created(List.of(transaction(3))));
+        assertEquals(List.of(1L, 3L), reopened.read(0, 10).getEvents().stream().map(ChangeEvent::getTransactionId).toList());
+    }
+
+    @Test
+    void awaitAfter_completesOnAppendOrTimeout() throws Exception {
+        TransactionChangeLog changeLog = open(1 << 20, 4);
+        CompletableFuture<Void> timedOut = changeLog.awaitAfter(0, 50);
+        timedOut.get(5, TimeUnit.SECONDS);
+        assertTrue(changeLog.read(0, 10).getEvents().isEmpty());
+
+        CompletableFuture<Void> waiting = changeLog.awaitAfter(0, 60_000);
+        assertFalse(waiting.isDone());
+        changeLog.onCommitted(TransactionChange.deleted(List.of(transaction(1))));
+        waiting.get(5, TimeUnit.SECONDS);
+        assertTrue(changeLog.awaitAfter(0, 60_000).isDone());
+    }
+
+    @Test
+    void stream_doesNotHoldReaderWhileWaiting() throws IOException, InterruptedException {
+        TransactionChangeLog changeLog = open(1 << 20, 4);
+        TransactionChangeFeed changeFeed = new TransactionChangeFeed(changeLog);
+        changeFeed.start();
+        // 只有一个读线程，等待中的订阅者占住它时其他订阅者收不到事件
+        ((ExecutorService) ReflectionTestUtils.getField(changeFeed, "readers")).shutdown();
+        ReflectionTestUtils.setField(changeFeed, "readers", Executors.newSingleThreadExecutor());
+        try {
+            List<RecordingEmitter> emitters = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                RecordingEmitter emitter = new RecordingEmitter();
+                changeFeed.stream(0, emitter);
+                emitters.add(emitter);
+            }
+            changeLog.onCommitted(TransactionChange.created(List.of(transaction(1))));
+            // 远早于 15 秒的心跳间隔
+            for (RecordingEmitter emitter : emitters) assertTrue(emitter.sent.await(5, TimeUnit.SECONDS));
+        } finally {
+            changeFeed.stop();
+        }
+    }
+
+    private TransactionChangeLog open(int segmentBytes, int retentionSegments) throws IOException {
+        TransactionChangeLog changeLog = new TransactionChangeLog();
+        ReflectionTestUtils.setField(changeLog, "enabled", true);
+        ReflectionTestUtils.setField(changeLog, "dir", dir.toString());
+        ReflectionTestUtils.setField(changeLog, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(changeLog, "retentionSegments", retentionSegments);
+        ReflectionTestUtils.setField(changeLog, "flushIntervalMillis", 0L);
+        changeLog.open();
+        opened.add(changeLog);
+        return changeLog;
+    }
+
+    private Path firstSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().findFirst().orElseThrow();
+        }
+    }
+
+    private static Transaction transaction(long id) {
+        return Transaction.builder()
+                .id(id)
+                .tid(String.valueOf(id))
+                .accountNumber("1111111111111111")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("100.25"))
+                .currency("CNY")
+                .description("salary")
+                .category("SALARY")
+                .status("COMPLETED")
+                .createdAt(START.plusMinutes(id))
+                .version(0L)
+                .build();
+    }
+
+    /**
+     * 记录发送次数：第一次是空日志的心跳，第二次是事件
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final CountDownLatch sent = new CountDownLatch(2);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent.countDown();
+        }
+    }
+}
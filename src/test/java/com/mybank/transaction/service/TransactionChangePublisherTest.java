@@ -0,0 +1,103 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 变更分发测试，手动初始化事务同步，不经过数据库
+ */
+class TransactionChangePublisherTest {
+
+    private final List<String> calls = new ArrayList<>();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void withoutTransaction_committedImmediately() {
+        publisher(listener("a"), listener("b")).created(List.of(transaction(1)));
+
+        assertEquals(List.of("a:committed:CREATED", "b:committed:CREATED"), calls);
+    }
+
+    @Test
+    void inTransaction_oneSynchronizationDispatchesInOrder() {
+        TransactionSynchronizationManager.initSynchronization();
+        publisher(listener("a"), listener("b")).updated(List.of(transaction(1)), List.of());
+
+        assertEquals(List.of("a:written:UPDATED", "b:written:UPDATED"), calls);
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+
+        calls.clear();
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(List.of("a:committed:UPDATED", "b:committed:UPDATED"), calls);
+    }
+
+    @Test
+    void rolledBack_notCommitted() {
+        TransactionSynchronizationManager.initSynchronization();
+        publisher(listener("a")).deleted(List.of(transaction(1)));
+
+        calls.clear();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(List.of("a:rolledBack:DELETED"), calls);
+    }
+
+    @Test
+    void failingListener_doesNotStopOthers() {
+        TransactionChangeListener failing = change -> {
+            throw new IllegalStateException("disk full");
+        };
+        publisher(failing, listener("b")).created(List.of(transaction(1)));
+
+        assertEquals(List.of("b:committed:CREATED"), calls);
+    }
+
+    @Test
+    void empty_notPublished() {
+        TransactionSynchronizationManager.initSynchronization();
+        publisher(listener("a")).created(List.of());
+
+        assertTrue(calls.isEmpty());
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+    }
+
+    private static TransactionChangePublisher publisher(TransactionChangeListener... listeners) {
+        return new TransactionChangePublisher(List.of(listeners));
+    }
+
+    private TransactionChangeListener listener(String name) {
+        return new TransactionChangeListener() {
+            @Override
+            public void onWritten(TransactionChange change) {
+                calls.add(name + ":written:" + change.type());
+            }
+
+            @Override
+            public void onCommitted(TransactionChange change) {
+                calls.add(name + ":committed:" + change.type());
+            }
+
+            @Override
+            public void onRolledBack(TransactionChange change) {
+                calls.add(name + ":rolledBack:" + change.type());
+            }
+        };
+    }
+
+    private static Transaction transaction(long id) {
+        return Transaction.builder().id(id).accountNumber("5555555555555555").version(0L).build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.mybank.transaction.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式导出测试，导出在测试事务内执行，能看到本测试插入的数据
+ */
+@SpringBootTest
+@Transactional
+@Rollback
+class TransactionExporterTest {
+
+    private static final String ACCOUNT = "7777777777777777";
+
+    @Autowired
+    private TransactionExporter transactionExporter;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private SnowflakeIdWorker idWorker;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String[] descriptions = {"plain", "rent, march", "say \"hi\""};
+        for (String description : descriptions) {
+            long id = idWorker.genNextId();
+            transactionDao.insTran(Transaction.builder()
+                    .id(id)
+                    .accountNumber(ACCOUNT)
+                    .transactionType("DEPOSIT")
+                    .amount(new BigDecimal("12.50"))
+                    .currency("CNY")
+                    .description(description)
+                    .category("SALARY")
+                    .status("COMPLETED")
+                    .createdAt(LocalDateTime.now())
+                    .build());
+            ids.add(id);
+        }
+    }
+
+    @Test
+    void export_ndjson() throws Exception {
+        List<String> lines = export(TransactionExporter.NDJSON, false);
+
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : lines) {
+            JsonNode node = objectMapper.readTree(line);
+            if (ACCOUNT.equals(node.get("accountNumber").asText())) rows.add(node);
+        }
+        assertEquals(3, rows.size());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(String.valueOf(ids.get(i)), rows.get(i).get("tid").asText());
+            assertEquals(0, new BigDecimal("12.50").compareTo(rows.get(i).get("amount").decimalValue()));
+        }
+        assertEquals("rent, march", rows.get(1).get("description").asText());
+    }
+
+    @Test
+    void export_csvQuotesSpecialCharacters() throws Exception {
+        List<String> lines = export(TransactionExporter.CSV, false);
+
+        assertTrue(lines.get(0).startsWith("id,account_number,"));
+        List<String> rows = lines.stream().filter(l -> l.contains(ACCOUNT)).toList();
+        assertEquals(3, rows.size());
+        assertTrue(rows.get(0).startsWith(ids.get(0) + "," + ACCOUNT + ",DEPOSIT,12.50,CNY,plain,SALARY,COMPLETED,"));
+        assertTrue(rows.get(1).contains(",\"rent, march\","));
+        assertTrue(rows.get(2).contains(",\"say \"\"hi\"\"\","));
+    }
+
+    @Test
+    void export_idsInOrder() throws Exception {
+        List<String> lines = export(TransactionExporter.NDJSON, true);
+
+        List<String> expected = ids.stream().map(id -> "\"" + id + "\"").toList();
+        List<String> exported = lines.stream().filter(expected::contains).toList();
+        assertEquals(expected, exported);
+        // 按id顺序输出
+        List<Long> all = lines.stream().map(l -> Long.parseLong(l.replace("\"", ""))).toList();
+        for (int i = 1; i < all.size(); ++i) {
+            assertTrue(all.get(i - 1) < all.get(i));
+        }
+
+        List<String> csv = export(TransactionExporter.CSV, true);
+        assertEquals("id", csv.get(0));
+        assertEquals(lines.size() + 1, csv.size());
+    }
+
+    private List<String> export(String format, boolean idOnly) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = transactionExporter.export(format, idOnly, out);
+        List<String> lines = Arrays.asList(out.toString(StandardCharsets.UTF_8).split("\n"));
+        assertEquals(TransactionExporter.CSV.equals(format) ? rows + 1 : rows, lines.size());
+        return lines;
+    }
+}
@@ -0,0 +1,191 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热数据层的列存储测试，直接操作列数据，不经过数据库
+ */
+class TransactionHotStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 30, 15, 123_456_000);
+
+    @Test
+    void upsert_roundTripsEveryField() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(16);
+        Transaction full = transaction(1).toBuilder()
+                .description("星巴克咖啡 Starbucks")
+                .updatedAt(START.plusHours(1))
+                .version(3L)
+                .build();
+        Transaction sparse = Transaction.builder()
+                .id(2L).tid("2").accountNumber("2222222222222222").transactionType("FEE")
+                .amount(new BigDecimal("5")).build();
+        columns.upsert(full);
+        columns.upsert(sparse);
+
+        assertEquals(full, columns.get(1));
+        assertEquals(sparse.toBuilder().amount(new BigDecimal("5.00")).build(), columns.get(2));
+        assertNull(columns.get(3));
+
+        // 更新替换所有字段，字符串区里的旧值不再可见
+        Transaction updated = full.toBuilder().description(null).currency("USD").status("FAILED").version(4L).build();
+        columns.upsert(updated);
+        assertEquals(updated, columns.get(1));
+    }
+
+    @Test
+    void pages_areServedOnlyWhenFullyCovered() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(16);
+        for (long id = 1; id <= 10; ++id) columns.insert(transaction(id));
+
+        assertEquals(List.of(3L, 4L, 5L), ids(columns.getPage(2, 3)));
+        assertEquals(List.of(9L, 10L), ids(columns.getPage(8, 3)));
+        assertEquals(List.of(), ids(columns.getPage(20, 3)));
+        assertEquals(List.of(5L, 6L), ids(columns.getAfter(4, 2)));
+
+        columns.remove(5);
+        assertNull(columns.get(5));
+        assertEquals(List.of(4L, 6L, 7L), ids(columns.getPage(3, 3)));
+        assertEquals(List.of(6L, 7L), ids(columns.getAfter(4, 2)));
+    }
+
+    @Test
+    void full_dropsOldestAndTracksOlderRows() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(16);
+        for (long id = 1; id <= 16; ++id) columns.insert(transaction(id));
+        columns.remove(3);
+
+        // 第17笔触发整理：去掉删除的3，存活的15笔只留最新的14笔，1 移到热数据之外
+        columns.insert(transaction(17));
+        columns.insert(transaction(18));
+        assertNull(columns.get(1));
+        assertNull(columns.getPage(0, 5));
+        assertNull(columns.getAfter(0, 5));
+        assertEquals(List.of(2L, 4L, 5L), ids(columns.getPage(1, 3)));
+        assertEquals(List.of(2L, 4L), ids(columns.getAfter(1, 2)));
+
+        // 热数据之外的创建和删除只计数
+        columns.insert(transaction(1).toBuilder().id(0L).build());
+        assertNull(columns.getPage(1, 3));
+        assertEquals(List.of(2L, 4L, 5L), ids(columns.getPage(2, 3)));
+        columns.remove(0);
+        columns.remove(1);
+        assertEquals(List.of(2L, 4L, 5L), ids(columns.getPage(0, 3)));
+        assertEquals(List.of(2L, 4L, 5L), ids(columns.getAfter(Long.MIN_VALUE, 3)));
+    }
+
+    @Test
+    void lateWrites_keepNewerVersionsAndDeletes() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(16);
+        Transaction created = transaction(1);
+        Transaction updated = created.toBuilder().status("FAILED").version(1L).build();
+        columns.insert(created);
+        columns.upsert(updated);
+        // 等行锁的事务先执行了 afterCommit，之前版本的写入迟到
+        columns.upsert(created);
+        assertEquals(updated, columns.get(1));
+
+        columns.remove(1);
+        columns.upsert(updated.toBuilder().version(2L).build());
+        assertNull(columns.get(1));
+
+        // 删除先于创建到达
+        columns.remove(2);
+        columns.insert(transaction(2));
+        assertNull(columns.get(2));
+        assertEquals(List.of(), ids(columns.getPage(0, 10)));
+
+        // 整理去掉删除留下的空位之后仍然记得删除
+        TransactionHotStore.Columns full = new TransactionHotStore.Columns(16);
+        for (long id = 1; id <= 16; ++id) full.insert(transaction(id));
+        full.remove(16);
+        full.insert(transaction(17));
+        full.upsert(transaction(16).toBuilder().version(1L).build());
+        assertNull(full.get(16));
+        assertEquals(List.of(15L, 17L), ids(full.getAfter(14, 5)));
+    }
+
+    @Test
+    void outOfOrderIdsAndLongStrings() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(64);
+        String description = "x".repeat(500);
+        LongStream.of(10, 30, 20, 50, 40, 5).forEach(id -> columns.insert(transaction(id).toBuilder().description(description + id).build()));
+        // 反复更新，字符串区放不下时整理和扩大
+        for (int round = 0; round < 20; ++round) {
+            for (long id : new long[]{5, 10, 20, 30, 40, 50}) {
+                columns.upsert(transaction(id).toBuilder().description(description + round).version(round + 1L).build());
+            }
+        }
+
+        assertEquals(List.of(5L, 10L, 20L, 30L, 40L, 50L), ids(columns.getPage(0, 10)));
+        assertEquals(List.of(30L, 40L), ids(columns.getAfter(20, 2)));
+        assertEquals(description + 19, columns.get(40).getDescription());
+    }
+
+    /**
+     * 时间和持久化日志一样四舍五入到微秒
+     */
+    @Test
+    void upsert_roundsTimesToMicros() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(16);
+        columns.upsert(transaction(1).toBuilder()
+                .createdAt(START.withNano(123_456_789))
+                .updatedAt(START.withNano(999_999_500))
+                .build());
+
+        assertEquals(START.withNano(123_457_000), columns.get(1).getCreatedAt());
+        assertEquals(START.plusSeconds(1).withNano(0), columns.get(1).getUpdatedAt());
+    }
+
+    /**
+     * 写满后的整理在两块字符串区之间交换，不再每次分配新的堆外内存
+     */
+    @Test
+    void repeatedCompaction_reusesStringArea() {
+        TransactionHotStore.Columns columns = new TransactionHotStore.Columns(1024);
+        Set<Object> areas = Collections.newSetFromMap(new IdentityHashMap<>());
+        long id = 0;
+        // 先让字符串区扩大到够用
+        while (id < 2048) columns.insert(transaction(++id).toBuilder().description("d" + id).build());
+        while (id < 10_240) {
+            columns.insert(transaction(++id).toBuilder().description("d" + id).build());
+            areas.add(ReflectionTestUtils.getField(columns, "stringArea"));
+        }
+
+        assertEquals(2, areas.size());
+        assertEquals("d" + id, columns.get(id).getDescription());
+        assertEquals("d" + (id - 800), columns.get(id - 800).getDescription());
+    }
+
+    private static Transaction transaction(long id) {
+        return Transaction.builder()
+                .id(id)
+                .tid(String.valueOf(id))
+                .accountNumber("1111111111111111")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("100.25"))
+                .currency("CNY")
+                .description("salary")
+                .category("SALARY")
+                .status("COMPLETED")
+                .createdAt(START.plusMinutes(id))
+                .version(0L)
+                .build();
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+}
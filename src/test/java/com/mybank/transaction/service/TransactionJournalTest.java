@@ -0,0 +1,169 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.TransactionManagementApplication;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.BatchItemResult;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionPatch;
+import com.mybank.transaction.exception.JournalUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.mybank.transaction.TestRequests.deposit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 持久化日志测试：每次启动使用一个新的内存库和同一个日志目录，重启后的数据应和重启前一致
+ */
+class TransactionJournalTest {
+
+    private static final String ACCOUNT = "1234567890123456";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restart_replaysSnapshotAndJournal() throws IOException {
+        Map<Long, Transaction> before;
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal1")) {
+            TransactionService service = context.getBean(TransactionService.class);
+            Transaction first = service.createTransaction(deposit(ACCOUNT, "10.00"));
+            List<BatchItemResult<Transaction>> batch = service.createTransactions(List.of(deposit(ACCOUNT, "20.00"), deposit(ACCOUNT, "30.00")));
+            service.updateTransaction(first.getId(), deposit(ACCOUNT, "11.00"));
+            service.deleteTransaction(batch.get(0).getData().getId());
+            assertEquals(2L, context.getBean(TransactionJournal.class).snapshot());
+
+            // 快照之后的修改只在日志里
+            service.patchTransaction(first.getId(), TransactionPatch.builder().description("after snapshot").build(), 1L);
+            service.deleteTransaction(batch.get(1).getData().getId());
+            service.createTransaction(deposit(ACCOUNT, "40.00"));
+            before = rows(context);
+        }
+        assertEquals(2, before.size());
+
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal2")) {
+            assertEquals(before, rows(context));
+            assertEquals(new BigDecimal("51.00"), context.getBean(AccountBalanceService.class)
+                    .getBalance(ACCOUNT).getBalance());
+        }
+
+        // 崩溃时最后一条只写了一半
+        Path journal;
+        try (Stream<Path> files = Files.list(dir)) {
+            journal = files.filter(file -> file.getFileName().toString().startsWith("journal-")).max(Path::compareTo).orElseThrow();
+        }
+        long size = Files.size(journal);
+        Files.write(journal, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal3")) {
+            assertEquals(before, rows(context));
+            assertEquals(size, Files.size(journal));
+        }
+    }
+
+    @Test
+    void outOfOrderRecords_keepHighestVersion() {
+        Map<Long, Transaction> before;
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal6")) {
+            TransactionService service = context.getBean(TransactionService.class);
+            TransactionJournal journal = context.getBean(TransactionJournal.class);
+            Transaction updated = service.createTransaction(deposit(ACCOUNT, "10.00"));
+            Transaction deleted = service.createTransaction(deposit(ACCOUNT, "20.00"));
+            Transaction snapshotted = service.createTransaction(deposit(ACCOUNT, "30.00"));
+            service.updateTransaction(updated.getId(), deposit(ACCOUNT, "11.00"));
+            service.deleteTransaction(deleted.getId());
+            service.updateTransaction(snapshotted.getId(), deposit(ACCOUNT, "31.00"));
+            journal.snapshot();
+
+            // 模拟等行锁的事务先提交、先写日志：版本 0 的记录排在更新和删除之后，也排在已包含版本 1 的快照之后
+            journal.onCommitted(TransactionChange.updated(List.of(updated), List.of()));
+            journal.onCommitted(TransactionChange.updated(List.of(deleted), List.of()));
+            journal.onCommitted(TransactionChange.updated(List.of(snapshotted), List.of()));
+            before = rows(context);
+        }
+        assertEquals(2, before.size());
+
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal7")) {
+            assertEquals(before, rows(context));
+        }
+    }
+
+    /**
+     * 追加失败不让已提交的请求失败；之后拒绝写入、健康检查为 DOWN，快照把缺的记录补上后恢复
+     */
+    @Test
+    void appendFailure_rejectsWritesUntilSnapshotRecovers() throws IOException, InterruptedException {
+        Map<Long, Transaction> before;
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal8")) {
+            TransactionService service = context.getBean(TransactionService.class);
+            TransactionJournal journal = context.getBean(TransactionJournal.class);
+            HealthIndicator health = context.getBean(TransactionJournalHealthIndicator.class);
+            service.createTransaction(deposit(ACCOUNT, "10.00"));
+            ((FileChannel) ReflectionTestUtils.getField(journal, "journal")).close();
+
+            service.createTransaction(deposit(ACCOUNT, "20.00"));
+            assertEquals(Status.DOWN, health.health().getStatus());
+            assertThrows(JournalUnavailableException.class, () -> service.createTransaction(deposit(ACCOUNT, "30.00")));
+
+            for (int i = 0; i < 200 && journal.getFailure() != null; ++i) Thread.sleep(50);
+            assertEquals(Status.UP, health.health().getStatus());
+            service.createTransaction(deposit(ACCOUNT, "40.00"));
+            before = rows(context);
+        }
+        assertEquals(3, before.size());
+
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal9")) {
+            assertEquals(before, rows(context));
+        }
+    }
+
+    @Test
+    void nonEmptyTable_isNotReplayedIntoAndSnapshotted() throws IOException {
+        // DB_CLOSE_DELAY=-1：应用关闭后内存库仍在，第二次启动时表里已经有数据，不恢复，以库为准重新做快照
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal4;DB_CLOSE_DELAY=-1")) {
+            context.getBean(TransactionService.class).createTransaction(deposit(ACCOUNT, "10.00"));
+        }
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal4;DB_CLOSE_DELAY=-1")) {
+            context.getBean(TransactionService.class).createTransaction(deposit(ACCOUNT, "20.00"));
+            assertEquals(2L, context.getBean(TransactionDao.class).countTotal());
+        }
+        try (ConfigurableApplicationContext context = start("jdbc:h2:mem:journal5")) {
+            assertEquals(2L, context.getBean(TransactionDao.class).countTotal());
+        }
+    }
+
+    private ConfigurableApplicationContext start(String url) {
+        return new SpringApplicationBuilder(TransactionManagementApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--mybank.journal.enabled=true",
+                        "--mybank.journal.dir=" + dir,
+                        "--mybank.journal.snapshot-interval-ms=0",
+                        "--mybank.journal.replay-batch-size=2",
+                        "--logging.level.root=WARN");
+    }
+
+    private static Map<Long, Transaction> rows(ConfigurableApplicationContext context) {
+        TransactionDao dao = context.getBean(TransactionDao.class);
+        return dao.listId().stream()
+                .map(dao::selectById)
+                .collect(Collectors.toMap(Transaction::getId, Function.identity()));
+    }
+}
@@ -0,0 +1,220 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.domain.SearchRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.exception.SearchDisabledException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 搜索索引测试，直接调用索引，不经过数据库
+ */
+class TransactionSearchIndexTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String[] WORDS = {"coffee", "salary", "rent", "星巴克咖啡", "工资", "房租", "taxi"};
+    private static final String[] STATUSES = {"COMPLETED", "PENDING", "FAILED"};
+    private static final String[] CATEGORIES = {"FOOD", "SALARY", "HOUSING", "TRAVEL"};
+
+    private final TransactionSearchIndex index = new TransactionSearchIndex(null, null, true, 60_000);
+
+    @Test
+    void tokens() {
+        assertEquals(List.of("coffee", "at", "星", "星巴", "巴", "巴克", "克", "克咖", "咖", "咖啡", "啡", "no", "3"),
+                List.copyOf(TransactionSearchIndex.tokens("Coffee at 星巴克咖啡, No.3")));
+        assertEquals(List.of("巴克", "克咖", "coffee"), List.copyOf(TransactionSearchIndex.queryTokens("巴克咖 COFFEE")));
+        assertEquals(List.of("咖"), List.copyOf(TransactionSearchIndex.queryTokens("咖")));
+    }
+
+    @Test
+    void search_combinesConditions() {
+        index.onCommitted(TransactionChange.created(List.of(
+                transaction(1, "Coffee at 星巴克", "FOOD", "COMPLETED", "35.00", 0),
+                transaction(2, "coffee beans", "FOOD", "PENDING", "120.00", 1),
+                transaction(3, "三月工资", "SALARY", "COMPLETED", "9000.00", 2),
+                transaction(4, "星巴克 coffee", "FOOD", "COMPLETED", "42.50", 40))));
+
+        assertEquals(List.of(1L, 2L, 4L), search(SearchRequest.builder().q("coffee").build(), 0));
+        assertEquals(List.of(1L, 4L), search(SearchRequest.builder().q("星巴克").status("COMPLETED").build(), 0));
+        assertEquals(List.of(3L), search(SearchRequest.builder().q("工资").build(), 0));
+        assertEquals(List.of(4L), search(SearchRequest.builder().q("coffee").minAmount(new BigDecimal("40")).maxAmount(new BigDecimal("100")).build(), 0));
+        assertEquals(List.of(1L, 2L), search(SearchRequest.builder().category("FOOD").to(START.plusDays(2)).build(), 0));
+        assertEquals(List.of(), search(SearchRequest.builder().q("coffee").category("SALARY").build(), 0));
+        assertEquals(List.of(), search(SearchRequest.builder().q("tea").build(), 0));
+
+        // 更新后旧词不再命中，删除后不再返回
+        index.onCommitted(TransactionChange.updated(List.of(transaction(2, "green tea", "FOOD", "COMPLETED", "120.00", 1).toBuilder().version(1L).build()), List.of()));
+        index.onCommitted(TransactionChange.deleted(List.of(transaction(4, "星巴克 coffee", "FOOD", "COMPLETED", "42.50", 40))));
+        assertEquals(List.of(1L), search(SearchRequest.builder().q("coffee").build(), 0));
+        assertEquals(List.of(2L), search(SearchRequest.builder().q("tea").status("COMPLETED").build(), 0));
+        assertEquals(3, index.size());
+    }
+
+    /**
+     * 提交顺序和id顺序不一致、更新、大量删除触发整理时，分页结果和逐条过滤的结果一致
+     */
+    @Test
+    void search_matchesBruteForce() {
+        Random random = new Random(42);
+        Map<Long, Transaction> rows = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 20_000; ++id) ids.add(id * 3);
+        // 局部乱序，少数很晚才写入
+        for (int i = 0; i + 8 < ids.size(); i += 8) Collections.shuffle(ids.subList(i, i + 8), random);
+        for (int i = 0; i < 50; ++i) ids.add(ids.remove(random.nextInt(ids.size() / 2)));
+
+        for (long id : ids) {
+            Transaction t = randomTransaction(id, random);
+            rows.put(id, t);
+            index.onCommitted(TransactionChange.created(List.of(t)));
+        }
+        for (int i = 0; i < 3000; ++i) {
+            long id = ids.get(random.nextInt(ids.size()));
+            if (!rows.containsKey(id)) continue;
+            Transaction t = randomTransaction(id, random).toBuilder().version(rows.get(id).getVersion() + 1).build();
+            rows.put(id, t);
+            index.onCommitted(TransactionChange.updated(List.of(t), List.of()));
+        }
+        for (int i = 0; i < 12_000; ++i) {
+            long id = ids.get(random.nextInt(ids.size()));
+            Transaction removed = rows.remove(id);
+            if (removed != null) index.onCommitted(TransactionChange.deleted(List.of(removed)));
+        }
+        assertEquals(rows.size(), index.size());
+
+        List<SearchRequest> requests = List.of(
+                SearchRequest.builder().build(),
+                SearchRequest.builder().q("coffee").build(),
+                SearchRequest.builder().q("咖啡").status("PENDING").build(),
+                SearchRequest.builder().category("FOOD").minAmount(new BigDecimal("100")).maxAmount(new BigDecimal("500")).build(),
+                SearchRequest.builder().status("FAILED").from(START.plusDays(10)).to(START.plusDays(60)).build(),
+                SearchRequest.builder().q("rent taxi").build());
+        for (SearchRequest request : requests) {
+            List<Long> expected = rows.values().stream()
+                    .filter(matches(request))
+                    .map(Transaction::getId)
+                    .sorted()
+                    .toList();
+            List<Long> paged = new ArrayList<>();
+            long after = 0;
+            while (true) {
+                List<Long> page = search(request, after, 37);
+                paged.addAll(page);
+                if (page.size() < 37) break;
+                after = page.get(page.size() - 1);
+            }
+            assertEquals(expected, paged, request.toString());
+        }
+    }
+
+    /**
+     * afterCommit 不按提交顺序执行时，迟到的旧版本不覆盖新版本
+     */
+    @Test
+    void upsert_ignoresOlderVersion() {
+        index.onCommitted(TransactionChange.updated(List.of(transaction(1, "coffee v3", "FOOD", "COMPLETED", "30.00", 3).toBuilder().version(3L).build()), List.of()));
+        index.onCommitted(TransactionChange.updated(List.of(transaction(1, "tea v2", "TRAVEL", "PENDING", "20.00", 2).toBuilder().version(2L).build()), List.of()));
+
+        assertEquals(List.of(1L), search(SearchRequest.builder().q("coffee").category("FOOD").status("COMPLETED").build(), 0));
+        assertEquals(List.of(1L), search(SearchRequest.builder().minAmount(new BigDecimal("30")).from(START.plusDays(3)).build(), 0));
+        assertEquals(List.of(), search(SearchRequest.builder().q("tea").build(), 0));
+        assertEquals(List.of(), search(SearchRequest.builder().category("TRAVEL").build(), 0));
+    }
+
+    /**
+     * 删除之后迟到的更新不让交易复活
+     */
+    @Test
+    void upsert_afterDeleteIgnored() {
+        Transaction created = transaction(1, "coffee", "FOOD", "COMPLETED", "30.00", 0);
+        index.onCommitted(TransactionChange.created(List.of(created)));
+        index.onCommitted(TransactionChange.deleted(List.of(created)));
+        index.onCommitted(TransactionChange.updated(List.of(created.toBuilder().description("late update").build()), List.of()));
+        index.onCommitted(TransactionChange.updated(List.of(created.toBuilder().description("late update").version(1L).build()), List.of()));
+
+        assertEquals(0, index.size());
+        assertEquals(List.of(), search(SearchRequest.builder().build(), 0));
+        assertEquals(List.of(), search(SearchRequest.builder().q("late").build(), 0));
+    }
+
+    /**
+     * 删除记录过了保留时间后清掉，不随删除无限增长
+     */
+    @Test
+    void remove_prunesExpiredTombstones() throws InterruptedException {
+        TransactionSearchIndex shortLived = new TransactionSearchIndex(null, null, true, 1);
+        for (long id = 1; id <= 100; ++id) {
+            Transaction t = transaction(id, "coffee", "FOOD", "COMPLETED", "30.00", 0);
+            shortLived.onCommitted(TransactionChange.created(List.of(t)));
+            shortLived.onCommitted(TransactionChange.deleted(List.of(t)));
+        }
+        Thread.sleep(5);
+        Transaction last = transaction(101, "coffee", "FOOD", "COMPLETED", "30.00", 0);
+        shortLived.onCommitted(TransactionChange.deleted(List.of(last)));
+
+        assertEquals(1, shortLived.tombstones());
+        assertEquals(0, shortLived.size());
+    }
+
+    @Test
+    void disabled_ignoresWritesAndRejectsSearch() {
+        TransactionSearchIndex disabled = new TransactionSearchIndex(null, null, false, 60_000);
+        disabled.afterSingletonsInstantiated();
+        disabled.onCommitted(TransactionChange.created(List.of(transaction(1, "coffee", "FOOD", "COMPLETED", "30.00", 0))));
+
+        assertEquals(0, disabled.size());
+        assertThrows(SearchDisabledException.class, () -> disabled.search(SearchRequest.builder().build(), 0, 10));
+        assertThrows(SearchDisabledException.class, disabled::rebuild);
+    }
+
+    private List<Long> search(SearchRequest request, long afterId) {
+        return index.search(request, afterId, 100);
+    }
+
+    private List<Long> search(SearchRequest request, long afterId, int limit) {
+        return index.search(request, afterId, limit);
+    }
+
+    private static Predicate<Transaction> matches(SearchRequest r) {
+        return t -> (r.getQ() == null || TransactionSearchIndex.tokens(t.getDescription())
+                        .containsAll(TransactionSearchIndex.queryTokens(r.getQ())))
+                && (r.getCategory() == null || r.getCategory().equals(t.getCategory()))
+                && (r.getStatus() == null || r.getStatus().equals(t.getStatus()))
+                && (r.getMinAmount() == null || t.getAmount().compareTo(r.getMinAmount()) >= 0)
+                && (r.getMaxAmount() == null || t.getAmount().compareTo(r.getMaxAmount()) <= 0)
+                && (r.getFrom() == null || !t.getCreatedAt().isBefore(r.getFrom()))
+                && (r.getTo() == null || t.getCreatedAt().isBefore(r.getTo()));
+    }
+
+    private static Transaction randomTransaction(long id, Random random) {
+        String description = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+        return transaction(id, description, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                STATUSES[random.nextInt(STATUSES.length)], random.nextInt(100_000) / 100 + ".00", random.nextInt(365));
+    }
+
+    private static Transaction transaction(long id, String description, String category, String status, String amount, int day) {
+        return Transaction.builder()
+                .id(id)
+                .accountNumber("1234567890123456")
+                .transactionType("PAYMENT")
+                .amount(new BigDecimal(amount))
+                .currency("CNY")
+                .description(description)
+                .category(category)
+                .status(status)
+                .createdAt(START.plusDays(day))
+                .version(0L)
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.AccountBalanceDao;
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.BatchItemResult;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.domain.TransactionUpdateItem;
+import com.mybank.transaction.exception.BatchSizeExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量接口服务层测试
+ * <p>
+ * BATCH执行器不能和测试事务里的SIMPLE执行器混用，所以这里不加 @Transactional，测试结束后手动清理
+ */
+@SpringBootTest
+class TransactionServiceBatchTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private AccountBalanceDao accountBalanceDao;
+
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
+    private final List<Long> created = new ArrayList<>();
+
+    private TransactionRequest validRequest, invalidRequest;
+
+    @BeforeEach
+    void setUp() {
+        validRequest = TransactionRequest.builder()
+                .accountNumber("4444444444444444")
+                .transactionType("PAYMENT")
+                .amount(new BigDecimal("88.00"))
+                .currency("CNY")
+                .description("batch payment")
+                .category("FOOD")
+                .build();
+        invalidRequest = TransactionRequest.builder()
+                .accountNumber("123")
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("1.00"))
+                .currency("CNY")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // 通过服务删除，保持交易计数器和表一致
+        transactionService.deleteTransactions(created);
+    }
+
+    @Test
+    void createTransactions_partialFailure() {
+        List<BatchItemResult<Transaction>> results =
+                transactionService.createTransactions(List.of(validRequest, invalidRequest, validRequest));
+        results.stream().filter(BatchItemResult::isSuccess).forEach(r -> created.add(r.getData().getId()));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("accountNumber format error", results.get(1).getMessage());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(2, created.size());
+        created.forEach(id -> assertNotNull(transactionDao.selectById(id)));
+    }
+
+    @Test
+    void updateTransactions_reportsMissing() {
+        transactionService.createTransactions(List.of(validRequest))
+                .forEach(r -> created.add(r.getData().getId()));
+        TransactionRequest update = TransactionRequest.builder()
+                .accountNumber("4444444444444444")
+                .transactionType("PAYMENT")
+                .amount(new BigDecimal("99.00"))
+                .currency("CNY")
+                .status("PENDING")
+                .build();
+
+        List<BatchItemResult<Transaction>> results = transactionService.updateTransactions(List.of(
+                new TransactionUpdateItem(created.get(0), update),
+                new TransactionUpdateItem(999L, update)));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(new BigDecimal("99.00"), transactionDao.selectById(created.get(0)).getAmount());
+    }
+
+    @Test
+    void deleteTransactions_reportsMissing() {
+        transactionService.createTransactions(List.of(validRequest, validRequest))
+                .forEach(r -> created.add(r.getData().getId()));
+
+        List<BatchItemResult<Long>> results = transactionService.deleteTransactions(List.of(created.get(0), 999L, created.get(1)));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertNull(transactionDao.selectById(created.get(0)));
+        assertNull(transactionDao.selectById(created.get(1)));
+        created.clear();
+    }
+
+    @Test
+    void accountBalance_followsBatchWrites() {
+        String account = validRequest.getAccountNumber();
+        BigDecimal before = accountBalanceDao.selectByAccount(account) == null
+                ? new BigDecimal("0.00") : accountBalanceDao.selectByAccount(account).getBalance();
+        transactionService.createTransactions(List.of(validRequest, validRequest))
+                .forEach(r -> created.add(r.getData().getId()));
+        assertEquals(before.subtract(new BigDecimal("176.00")), accountBalanceService.getBalance(account).getBalance());
+
+        // 同一笔交易在一个批次里更新两次，余额只反映最后一次
+        TransactionRequest refund = TransactionRequest.builder()
+                .accountNumber(account)
+                .transactionType("REFUND")
+                .amount(new BigDecimal("10.00"))
+                .currency("CNY")
+                .status("COMPLETED")
+                .build();
+        TransactionRequest deposit = TransactionRequest.builder()
+                .accountNumber(account)
+                .transactionType("DEPOSIT")
+                .amount(new BigDecimal("30.00"))
+                .currency("CNY")
+                .status("COMPLETED")
+                .build();
+        Long id = created.get(0);
+        transactionService.updateTransactions(List.of(new TransactionUpdateItem(id, refund), new TransactionUpdateItem(id, deposit)));
+        assertEquals(before.subtract(new BigDecimal("58.00")), accountBalanceService.getBalance(account).getBalance());
+
+        transactionService.deleteTransactions(List.copyOf(created));
+        created.clear();
+        assertEquals(before, accountBalanceService.getBalance(account).getBalance());
+        assertEquals(before, accountBalanceDao.selectByAccount(account).getBalance());
+    }
+
+    @Test
+    void createTransactions_tooLarge() {
+        List<TransactionRequest> requests = Collections.nCopies(1001, validRequest);
+        assertThrows(BatchSizeExceededException.class, () -> transactionService.createTransactions(requests));
+    }
+}
@@ -1,11 +1,21 @@
 package com.mybank.transaction.service;
 
+import com.mybank.transaction.dao.AccountBalanceDao;
 import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.AccountBalance;
+import com.mybank.transaction.domain.BatchItemResult;
+import com.mybank.transaction.domain.CursorPageRequest;
+import com.mybank.transaction.domain.CursorPageResponse;
 import com.mybank.transaction.domain.PageRequest;
+import com.mybank.transaction.domain.PageCursor;
 import com.mybank.transaction.domain.PageResponse;
+import com.mybank.transaction.domain.StatusUpdateRequest;
 import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionPatch;
 import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.exception.InvalidCursorException;
 import com.mybank.transaction.exception.TransactionNotFoundException;
+import com.mybank.transaction.exception.TransactionVersionMismatchException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,6 +25,8 @@ import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +46,12 @@ class TransactionServiceTest {
 
     @Autowired private TransactionDao transactionDao;
 
+    @Autowired private TransactionCounter transactionCounter;
+
+    @Autowired private AccountBalanceDao accountBalanceDao;
+
+    @Autowired private AccountBalanceService accountBalanceService;
+
     private TransactionRequest validRequest1, validRequest2;
 
     @BeforeEach
@@ -112,6 +130,106 @@ class TransactionServiceTest {
         Assertions.assertThrows(TransactionNotFoundException.class, () -> transactionService.deleteTransaction(id), "TransactionNotFoundException error was expected");
     }
 
+    @Test
+    void transactionCounter_followsWrites() {
+        long before = transactionCounter.get();
+        Long id = transactionService.createTransaction(validRequest1).getId();
+        transactionService.createTransaction(validRequest2);
+        // 同一事务内能看到自己未提交的增减
+        assertEquals(before + 2, transactionCounter.get());
+        transactionService.deleteTransaction(id);
+        assertEquals(before + 1, transactionCounter.get());
+        assertEquals(transactionDao.countTotal(), transactionCounter.get());
+    }
+
+    @Test
+    void accountBalance_followsWrites() {
+        BigDecimal before1 = balance("1111111111111111"), before2 = balance("2222222222222222");
+        Long id = transactionService.createTransaction(validRequest1).getId();
+        assertEquals(before1.add(new BigDecimal("1000.00")), accountBalanceService.getBalance("1111111111111111").getBalance());
+
+        // 改到另一个账户：原账户撤销存款，新账户计入转出
+        transactionService.updateTransaction(id, validRequest2);
+        assertEquals(before1, balance("1111111111111111"));
+        assertEquals(before2.subtract(new BigDecimal("2000.00")), balance("2222222222222222"));
+
+        transactionService.deleteTransaction(id);
+        assertEquals(before2, balance("2222222222222222"));
+    }
+
+    @Test
+    void patchTransaction_writesOnlyChangedFields() {
+        Transaction created = transactionService.createTransaction(validRequest1);
+        BigDecimal before = balance("1111111111111111");
+
+        Transaction patched = transactionService.patchTransaction(created.getId(),
+                TransactionPatch.builder().status("PENDING").amount(new BigDecimal("1000.0")).build(), 0L);
+        assertEquals(1L, patched.getVersion());
+        Transaction stored = transactionDao.selectById(created.getId());
+        assertEquals("PENDING", stored.getStatus());
+        assertEquals("test deposit", stored.getDescription());
+        assertEquals(new BigDecimal("1000.00"), stored.getAmount());
+        assertEquals(before, balance("1111111111111111"));
+
+        // 没有变化的字段不算修改，不写库
+        assertEquals(1L, transactionService.patchTransaction(created.getId(),
+                TransactionPatch.builder().status("PENDING").build(), null).getVersion());
+
+        patched = transactionService.patchTransaction(created.getId(),
+                TransactionPatch.builder().amount(new BigDecimal("400.00")).build(), null);
+        assertEquals("PENDING", patched.getStatus());
+        assertEquals(2L, transactionDao.selectById(created.getId()).getVersion());
+        assertEquals(before.subtract(new BigDecimal("600.00")), balance("1111111111111111"));
+        assertThrows(TransactionVersionMismatchException.class, () -> transactionService.patchTransaction(created.getId(),
+                TransactionPatch.builder().status("COMPLETED").build(), 1L));
+    }
+
+    @Test
+    void updateStatus_singleStatement() {
+        Long pending = transactionService.createTransaction(validRequest1).getId();
+        Long completed = transactionService.createTransaction(validRequest1).getId();
+        transactionService.patchTransaction(pending, TransactionPatch.builder().status("PENDING").build(), null);
+
+        List<BatchItemResult<Long>> results = transactionService.updateStatus(
+                new StatusUpdateRequest(Arrays.asList(pending, completed, 999L, null), "PENDING", "COMPLETED"));
+        assertEquals(List.of(true, false, false, false), results.stream().map(BatchItemResult::isSuccess).toList());
+        assertEquals("transaction doesn't exist or its status isn't PENDING: 999", results.get(2).getMessage());
+        assertEquals("COMPLETED", transactionDao.selectById(pending).getStatus());
+        assertEquals(2L, transactionDao.selectById(pending).getVersion());
+        assertEquals(0L, transactionDao.selectById(completed).getVersion());
+
+        results = transactionService.updateStatus(new StatusUpdateRequest(List.of(pending, completed), null, "ARCHIVED"));
+        assertTrue(results.stream().allMatch(BatchItemResult::isSuccess));
+        assertEquals("ARCHIVED", transactionDao.selectById(completed).getStatus());
+    }
+
+    private BigDecimal balance(String accountNumber) {
+        AccountBalance balance = accountBalanceDao.selectByAccount(accountNumber);
+        return balance == null ? new BigDecimal("0.00") : balance.getBalance();
+    }
+
+    @Test
+    void getTransactionsAfter() {
+        for (int i = 0; i < 11; ++i) transactionService.createTransaction(validRequest1);
+
+        CursorPageResponse<Transaction> first = transactionService.getTransactionsAfter(new CursorPageRequest(null, 10));
+        assertEquals(10, first.getContent().size());
+        assertTrue(first.isHasNext());
+        assertNotNull(first.getNextCursor());
+
+        CursorPageResponse<Transaction> second = transactionService.getTransactionsAfter(new CursorPageRequest(first.getNextCursor(), 10));
+        assertEquals(1, second.getContent().size());
+        assertFalse(second.isHasNext());
+        assertNull(second.getNextCursor());
+        assertTrue(second.getContent().get(0).getId() > first.getContent().get(9).getId());
+    }
+
+    @Test
+    void getTransactionsAfter_invalidCursor() {
+        assertThrows(InvalidCursorException.class,
+                () -> transactionService.getTransactionsAfter(new CursorPageRequest("not-a-cursor!", 10)));
+    }
+
     @Test
     void getAllTransactions() {
         for (int i = 0; i < 11; ++i) transactionService.createTransaction(validRequest1);
@@ -129,6 +247,7 @@ class TransactionServiceTest {
         assertEquals(2, response.getTotalPages());
         assertFalse(response.isHasNext());
         assertTrue(response.isHasPrevious());
+        assertEquals(PageCursor.encode(trans.getId()), response.getNextCursor());
     }
 
 
@@ -0,0 +1,170 @@
+package com.mybank.transaction.service;
+
+import com.mybank.transaction.dao.TransactionDao;
+import com.mybank.transaction.domain.StatsRequest;
+import com.mybank.transaction.domain.Transaction;
+import com.mybank.transaction.domain.TransactionRequest;
+import com.mybank.transaction.domain.TransactionStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 交易日汇总测试
+ * <p>
+ * 重建在其他线程的连接上汇总，看不到测试事务里未提交的数据，所以这里不加 @Transactional，测试结束后手动清理
+ */
+@SpringBootTest
+class TransactionStatsServiceTest {
+
+    @Autowired
+    private TransactionStatsService transactionStatsService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        transactionService.deleteTransactions(created);
+    }
+
+    @Test
+    void stats_followWrites() {
+        LocalDate today = LocalDate.now();
+        Transaction food = transactionService.createTransaction(request("STATS_FOOD", "PAYMENT", "12.50"));
+        created.add(food.getId());
+        transactionService.createTransactions(List.of(request("STATS_FOOD", "PAYMENT", "7.50"), request("STATS_RENT", "PAYMENT", "100.00")))
+                .forEach(r -> created.add(r.getData().getId()));
+
+        assertEquals(List.of(stats("STATS_FOOD", 2, "20.00")), query(today, "STATS_FOOD"));
+
+        // 改分类：原分类减一笔，新分类加一笔
+        transactionService.updateTransaction(food.getId(), request("STATS_RENT", "PAYMENT", "50.00"));
+        assertEquals(List.of(stats("STATS_FOOD", 1, "7.50")), query(today, "STATS_FOOD"));
+        assertEquals(List.of(stats("STATS_RENT", 2, "150.00")), query(today, "STATS_RENT"));
+
+        transactionService.deleteTransactions(List.copyOf(created));
+        created.clear();
+        assertTrue(query(today, "STATS_FOOD").isEmpty());
+        assertTrue(query(today, "STATS_RENT").isEmpty());
+    }
+
+    /**
+     * 另一个事务先新建了同一汇总行但未提交，批量创建发送批次时等它提交后主键冲突，重试后两边都计入
+     */
+    @Test
+    void batchApply_retriesConcurrentNewRow() throws Exception {
+        LocalDate today = LocalDate.now();
+        Transaction other = Transaction.builder()
+                .transactionType("PAYMENT")
+                .amount(new BigDecimal("1.00"))
+                .currency("CNY")
+                .category("STATS_RACE")
+                .createdAt(LocalDateTime.now())
+                .build();
+        CompletableFuture<Void> batch = new CompletableFuture<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            transactionStatsService.apply(List.of(), List.of(other));
+            CompletableFuture.runAsync(() -> transactionService.createTransactions(List.of(request("STATS_RACE", "PAYMENT", "2.00")))
+                    .forEach(r -> created.add(r.getData().getId())))
+                    .whenComplete((v, e) -> {
+                        if (e == null) batch.complete(null);
+                        else batch.completeExceptionally(e);
+                    });
+            // 等批量创建阻塞在这一行上再提交
+            assertThrows(Exception.class, () -> batch.get(500, TimeUnit.MILLISECONDS));
+        });
+        try {
+            batch.get(10, TimeUnit.SECONDS);
+            assertEquals(List.of(stats("STATS_RACE", 2, "3.00")), query(today, "STATS_RACE"));
+        } finally {
+            transactionStatsService.apply(List.of(other), List.of());
+        }
+    }
+
+    @Test
+    void rebuild_matchesIncremental() {
+        LocalDateTime day1 = LocalDateTime.of(2001, 2, 3, 10, 0), day2 = day1.plusDays(1);
+        for (long i = 0; i < 500; ++i) {
+            Transaction transaction = Transaction.builder()
+                    .id(900_000_000L + i * 7919)
+                    .tid("stats" + i)
+                    .accountNumber("5555555555555555")
+                    .transactionType(i % 2 == 0 ? "DEPOSIT" : "FEE")
+                    .amount(new BigDecimal("1.00"))
+                    .currency("CNY")
+                    .category("STATS_REBUILD")
+                    .status("COMPLETED")
+                    .createdAt(i < 300 ? day1 : day2)
+                    .build();
+            transactionDao.insTran(transaction);
+        }
+        try {
+            transactionStatsService.rebuild();
+            StatsRequest request = StatsRequest.builder()
+                    .from(day1.toLocalDate())
+                    .to(day2.toLocalDate())
+                    .groupBy(List.of("day", "transactionType"))
+                    .category("STATS_REBUILD")
+                    .build();
+            List<TransactionStats> rows = transactionStatsService.getStats(request);
+            assertEquals(4, rows.size());
+            assertEquals(day1.toLocalDate(), rows.get(0).getDay());
+            assertEquals("DEPOSIT", rows.get(0).getTransactionType());
+            assertEquals(150, rows.get(0).getCount());
+            assertNull(rows.get(0).getCategory());
+            assertEquals(100, rows.get(3).getCount());
+
+            request.setGroupBy(List.of());
+            assertEquals(List.of(TransactionStats.builder().count(500).totalAmount(new BigDecimal("500.00")).build()),
+                    transactionStatsService.getStats(request));
+        } finally {
+            for (long i = 0; i < 500; ++i) transactionDao.deleteById(900_000_000L + i * 7919);
+            transactionStatsService.rebuild();
+        }
+    }
+
+    private List<TransactionStats> query(LocalDate day, String category) {
+        return transactionStatsService.getStats(StatsRequest.builder()
+                .from(day)
+                .to(day)
+                .groupBy(List.of("category"))
+                .category(category)
+                .build());
+    }
+
+    private static TransactionStats stats(String category, long count, String totalAmount) {
+        return TransactionStats.builder().category(category).count(count).totalAmount(new BigDecimal(totalAmount)).build();
+    }
+
+    private static TransactionRequest request(String category, String type, String amount) {
+        return TransactionRequest.builder()
+                .accountNumber("5555555555555555")
+                .transactionType(type)
+                .amount(new BigDecimal(amount))
+                .currency("CNY")
+                .category(category)
+                .build();
+    }
+}